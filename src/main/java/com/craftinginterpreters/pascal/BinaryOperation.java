@@ -0,0 +1,400 @@
+package com.craftinginterpreters.pascal;
+
+/**
+ * Binary Operation.  Applies one operator in the tree to its operands.  On first execution it specializes itself to
+ * the operand types it sees, int, double or char, so later executions skip the generic type checks.  If the types
+ * ever change, it falls back to the generic version for good.
+ */
+abstract class BinaryOperation {
+    private static final int UNINITIALIZED = 0;
+    private static final int INT = 1;
+    private static final int DOUBLE = 2;
+    private static final int CHAR = 3;
+    private static final int GENERIC = 4;
+
+    final Token operator;
+    final Interpreter interpreter;
+    private int state = UNINITIALIZED;
+
+    BinaryOperation(Token operator, Interpreter interpreter) {
+        this.operator = operator;
+        this.interpreter = interpreter;
+    }
+
+    /**
+     * Creates the operation for an operator.
+     *
+     * @param operator the operator token.
+     * @param interpreter used for type checks and string conversion.
+     * @return the operation, or null if the operator isn't a binary operator.
+     */
+    static BinaryOperation create(Token operator, Interpreter interpreter) {
+        switch (operator.type) {
+            case GREATER: return new Greater(operator, interpreter);
+            case GREATER_EQUAL: return new GreaterEqual(operator, interpreter);
+            case LESS: return new Less(operator, interpreter);
+            case LESS_EQUAL: return new LessEqual(operator, interpreter);
+            case MINUS: return new Subtract(operator, interpreter);
+            case PLUS: return new Add(operator, interpreter);
+            case SLASH: return new Divide(operator, interpreter);
+            case STAR: return new Multiply(operator, interpreter);
+            case NOT_EQUAL: return new NotEqual(operator, interpreter);
+            case EQUAL: return new Equal(operator, interpreter);
+        }
+        return null;
+    }
+
+    /**
+     * Applies the operator.
+     *
+     * @param left the left operand.
+     * @param right the right operand.
+     * @return the result.
+     */
+    final Object apply(Object left, Object right) {
+        switch (state) {
+            case INT:
+                if (left instanceof Integer a && right instanceof Integer b) return ints(a, b);
+                break;
+            case DOUBLE:
+                if (left instanceof Double a && right instanceof Double b) return doubles(a, b);
+                break;
+            case CHAR:
+                if (left instanceof Character a && right instanceof Character b) return chars(a, b);
+                break;
+            case GENERIC:
+                return generic(left, right);
+        }
+        return specialize(left, right);
+    }
+
+    private Object specialize(Object left, Object right) {
+        if (state != UNINITIALIZED) {
+            state = GENERIC;
+        }
+        else if (left instanceof Integer && right instanceof Integer) {
+            state = INT;
+        }
+        else if (left instanceof Double && right instanceof Double) {
+            state = DOUBLE;
+        }
+        else if (left instanceof Character && right instanceof Character && hasChars()) {
+            state = CHAR;
+        }
+        else {
+            state = GENERIC;
+        }
+        return generic(left, right);
+    }
+
+    // The specialized forms.  Each must give the same result as generic() for operands of its types.
+    //
+    abstract Object ints(int left, int right);
+
+    abstract Object doubles(double left, double right);
+
+    Object chars(char left, char right) {
+        throw new IllegalStateException();
+    }
+
+    boolean hasChars() {
+        return false;
+    }
+
+    abstract Object generic(Object left, Object right);
+
+    static final class Greater extends BinaryOperation {
+        Greater(Token operator, Interpreter interpreter) {
+            super(operator, interpreter);
+        }
+
+        @Override
+        Object ints(int left, int right) {
+            return left > right;
+        }
+
+        @Override
+        Object doubles(double left, double right) {
+            return left > right;
+        }
+
+        @Override
+        Object chars(char left, char right) {
+            return left >= right;
+        }
+
+        @Override
+        boolean hasChars() {
+            return true;
+        }
+
+        @Override
+        Object generic(Object left, Object right) {
+            interpreter.checkNumberOperands(operator, left, right);
+            if (left instanceof Double) return (double) left > (double) right;
+            if (left instanceof Character) return (char) left >= (char) right;
+            return (int) left > (int) right;
+        }
+    }
+
+    static final class GreaterEqual extends BinaryOperation {
+        GreaterEqual(Token operator, Interpreter interpreter) {
+            super(operator, interpreter);
+        }
+
+        @Override
+        Object ints(int left, int right) {
+            return left >= right;
+        }
+
+        @Override
+        Object doubles(double left, double right) {
+            return left >= right;
+        }
+
+        @Override
+        Object chars(char left, char right) {
+            return left >= right;
+        }
+
+        @Override
+        boolean hasChars() {
+            return true;
+        }
+
+        @Override
+        Object generic(Object left, Object right) {
+            interpreter.checkNumberOperands(operator, left, right);
+            if (left instanceof Double) return (double) left >= (double) right;
+            if (left instanceof Character) return (char) left >= (char) right;
+            return (int) left >= (int) right;
+        }
+    }
+
+    static final class Less extends BinaryOperation {
+        Less(Token operator, Interpreter interpreter) {
+            super(operator, interpreter);
+        }
+
+        @Override
+        Object ints(int left, int right) {
+            return left < right;
+        }
+
+        @Override
+        Object doubles(double left, double right) {
+            return left < right;
+        }
+
+        @Override
+        Object chars(char left, char right) {
+            return left < right;
+        }
+
+        @Override
+        boolean hasChars() {
+            return true;
+        }
+
+        @Override
+        Object generic(Object left, Object right) {
+            interpreter.checkNumberOperands(operator, left, right);
+            if (left instanceof Double) return (double) left < (double) right;
+            if (left instanceof Character) return (char) left < (char) right;
+            return (int) left < (int) right;
+        }
+    }
+
+    static final class LessEqual extends BinaryOperation {
+        LessEqual(Token operator, Interpreter interpreter) {
+            super(operator, interpreter);
+        }
+
+        @Override
+        Object ints(int left, int right) {
+            return left <= right;
+        }
+
+        @Override
+        Object doubles(double left, double right) {
+            return left <= right;
+        }
+
+        @Override
+        Object chars(char left, char right) {
+            return left <= right;
+        }
+
+        @Override
+        boolean hasChars() {
+            return true;
+        }
+
+        @Override
+        Object generic(Object left, Object right) {
+            interpreter.checkNumberOperands(operator, left, right);
+            if (left instanceof Double) return (double) left <= (double) right;
+            if (left instanceof Character) return (char) left <= (char) right;
+            return (int) left <= (int) right;
+        }
+    }
+
+    static final class Subtract extends BinaryOperation {
+        Subtract(Token operator, Interpreter interpreter) {
+            super(operator, interpreter);
+        }
+
+        @Override
+        Object ints(int left, int right) {
+            return left - right;
+        }
+
+        @Override
+        Object doubles(double left, double right) {
+            return left - right;
+        }
+
+        @Override
+        Object generic(Object left, Object right) {
+            interpreter.checkNumberOperands(operator, left, right);
+            if (left instanceof Double) return (double) left - (double) right;
+            return (int) left - (int) right;
+        }
+    }
+
+    static final class Add extends BinaryOperation {
+        Add(Token operator, Interpreter interpreter) {
+            super(operator, interpreter);
+        }
+
+        @Override
+        Object ints(int left, int right) {
+            return left + right;
+        }
+
+        @Override
+        Object doubles(double left, double right) {
+            return left + right;
+        }
+
+        @Override
+        Object generic(Object left, Object right) {
+            if (left instanceof Double && right instanceof Double) return (double) left + (double) right;
+            if (left instanceof Integer && right instanceof Integer) return (int) left + (int) right;
+            if (left instanceof String || right instanceof String) {
+                return interpreter.stringify(left) + interpreter.stringify(right);
+            }
+            throw new RuntimeError(operator, "Operands must be two numbers, or two strings.");
+        }
+    }
+
+    static final class Divide extends BinaryOperation {
+        Divide(Token operator, Interpreter interpreter) {
+            super(operator, interpreter);
+        }
+
+        @Override
+        Object ints(int left, int right) {
+            return left / right;
+        }
+
+        @Override
+        Object doubles(double left, double right) {
+            return left / right;
+        }
+
+        @Override
+        Object generic(Object left, Object right) {
+            interpreter.checkNumberOperands(operator, left, right);
+            if (left instanceof Double) return (double) left / (double) right;
+            return (int) left / (int) right;
+        }
+    }
+
+    static final class Multiply extends BinaryOperation {
+        Multiply(Token operator, Interpreter interpreter) {
+            super(operator, interpreter);
+        }
+
+        @Override
+        Object ints(int left, int right) {
+            return left * right;
+        }
+
+        @Override
+        Object doubles(double left, double right) {
+            return left * right;
+        }
+
+        @Override
+        Object generic(Object left, Object right) {
+            interpreter.checkNumberOperands(operator, left, right);
+            if (left instanceof Double) return (double) left * (double) right;
+            return (int) left * (int) right;
+        }
+    }
+
+    // Double.equals() compares bits, so NaN equals itself and 0.0 doesn't equal -0.0.
+    //
+    static final class Equal extends BinaryOperation {
+        Equal(Token operator, Interpreter interpreter) {
+            super(operator, interpreter);
+        }
+
+        @Override
+        Object ints(int left, int right) {
+            return left == right;
+        }
+
+        @Override
+        Object doubles(double left, double right) {
+            return Double.doubleToLongBits(left) == Double.doubleToLongBits(right);
+        }
+
+        @Override
+        Object chars(char left, char right) {
+            return left == right;
+        }
+
+        @Override
+        boolean hasChars() {
+            return true;
+        }
+
+        @Override
+        Object generic(Object left, Object right) {
+            return interpreter.isEqual(left, right);
+        }
+    }
+
+    static final class NotEqual extends BinaryOperation {
+        NotEqual(Token operator, Interpreter interpreter) {
+            super(operator, interpreter);
+        }
+
+        @Override
+        Object ints(int left, int right) {
+            return left != right;
+        }
+
+        @Override
+        Object doubles(double left, double right) {
+            return Double.doubleToLongBits(left) != Double.doubleToLongBits(right);
+        }
+
+        @Override
+        Object chars(char left, char right) {
+            return left != right;
+        }
+
+        @Override
+        boolean hasChars() {
+            return true;
+        }
+
+        @Override
+        Object generic(Object left, Object right) {
+            return !interpreter.isEqual(left, right);
+        }
+    }
+}
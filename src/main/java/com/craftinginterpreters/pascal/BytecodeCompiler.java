@@ -0,0 +1,736 @@
+package com.craftinginterpreters.pascal;
+
+import com.craftinginterpreters.pascal.vm.CompiledFunction;
+import com.craftinginterpreters.pascal.vm.OpCode;
+import com.craftinginterpreters.pascal.vm.Program;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Bytecode Compiler.  Compiles resolved statements into a Program for the VM.  It lives beside the Resolver because
+ * it reads the syntax tree; the vm package only ever sees the compiled Program.
+ *
+ * Locals get stack slots at compile time, and everything else is a global.  A function that reads a local of a
+ * function around it captures it as an upvalue, the way clox does, and is made into a closure when it's declared.
+ */
+class BytecodeCompiler implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
+    private static class Local {
+        final String name;
+        final int depth;
+        boolean isCaptured = false;
+
+        Local(String name, int depth) {
+            this.name = name;
+            this.depth = depth;
+        }
+    }
+
+    // A captured variable: a slot of the enclosing function, or one of its upvalues.
+    private record Upvalue(int index, boolean isLocal) {
+    }
+
+    private static class Loop {
+        final int locals;
+        final int tries;
+        final List<Integer> breaks = new ArrayList<>();
+
+        Loop(int locals, int tries) {
+            this.locals = locals;
+            this.tries = tries;
+        }
+    }
+
+    // State of the function being compiled.  Slot 0 holds the callee, or 'this' in a method.
+    //
+    private static class FunctionState {
+        final FunctionState enclosing;
+        final CompiledFunction function;
+        final boolean isMethod;
+        final List<Local> locals = new ArrayList<>();
+        final List<Upvalue> upvalues = new ArrayList<>();
+        final List<Loop> loops = new ArrayList<>();
+        int scopeDepth = 0;
+        int tries = 0;
+
+        FunctionState(FunctionState enclosing, CompiledFunction function, boolean isMethod) {
+            this.enclosing = enclosing;
+            this.function = function;
+            this.isMethod = isMethod;
+            locals.add(new Local(isMethod ? "this" : "", 0));
+        }
+    }
+
+    private final Map<String, Integer> globals = new LinkedHashMap<>();
+    private final List<Program.TestCase> tests = new ArrayList<>();
+    private FunctionState current;
+
+    // Where the code being emitted came from: the file, the line, the offset on the line and the length of the token.
+    private String file = null;
+    private int line = 0;
+    private int column = 0;
+    private int width = 0;
+
+    /**
+     * Compiles a whole program.
+     *
+     * @param statements the resolved statements.
+     * @return the program.
+     */
+    Program compile(List<Stmt> statements) {
+        return compile(statements, statements);
+    }
+
+    /**
+     * Compiles a program the way Interpreter.runTests() runs it: only the declarations run at the top level, and
+     * every top-level function is a test case.
+     *
+     * @param statements the resolved statements.
+     * @return the program.
+     */
+    Program compileTests(List<Stmt> statements) {
+        List<Stmt> declarations = new ArrayList<>();
+        for (var statement : statements) {
+            if (statement instanceof Stmt.Function || statement instanceof Stmt.Class ||
+                    statement instanceof Stmt.Enum || statement instanceof Stmt.Var) {
+                declarations.add(statement);
+            }
+        }
+        return compile(declarations, statements);
+    }
+
+    private Program compile(List<Stmt> statements, List<Stmt> source) {
+        var fileName = statements.isEmpty() ? "REPL" : fileName(statements.get(0));
+        current = new FunctionState(null, new CompiledFunction("script", fileName, new String[0], false), false);
+
+        for (var statement : statements) {
+            compile(statement);
+        }
+        emit(OpCode.NIL);
+        emit(OpCode.RETURN);
+        current.function.finish();
+
+        return new Program(current.function, globals.keySet().toArray(new String[0]), tests, source.size());
+    }
+
+    private static String fileName(Stmt statement) {
+        if (statement instanceof Stmt.Function function) return function.name.fileName;
+        if (statement instanceof Stmt.Class klass) return klass.name.fileName;
+        if (statement instanceof Stmt.Enum enumeration) return enumeration.name.fileName;
+        if (statement instanceof Stmt.Var var) return var.name.fileName;
+
+        return "REPL";
+    }
+
+    private void compile(Stmt stmt) {
+        stmt.accept(this);
+    }
+
+    private void compile(Expr expr) {
+        expr.accept(this);
+    }
+
+    // Emitting code.
+    //
+    private void at(Token token) {
+        file = token.fileName;
+        line = token.line;
+        column = token.offset;
+        width = token.lexeme == null ? 0 : token.lexeme.length();
+    }
+
+    private void emit(byte op) {
+        current.function.emit(op, file, line, column, width);
+    }
+
+    private void emit(byte op, int operand) {
+        current.function.emit(op, file, line, column, width);
+        current.function.emit(operand, file, line, column, width);
+    }
+
+    private void emitShort(byte op, int operand) {
+        current.function.emit(op, file, line, column, width);
+        current.function.emitShort(operand, file, line, column, width);
+    }
+
+    // Emits a jump and returns the offset of its target, to be patched.
+    //
+    private int emitJump(byte op) {
+        current.function.emit(op, file, line, column, width);
+        return current.function.emitShort(0, file, line, column, width);
+    }
+
+    private void patchJump(int offset) {
+        patch(offset, current.function.size());
+    }
+
+    private void patch(int offset, int target) {
+        if (target > 0xffff) {
+            throw new RuntimeError(token(), "Too much code to jump over.");
+        }
+        current.function.patchShort(offset, target);
+    }
+
+    private int constant(Object value) {
+        var index = current.function.addConstant(value);
+        if (index > 0xffff) {
+            throw new RuntimeError(token(), "Too many constants in one function.");
+        }
+        return index;
+    }
+
+    private int global(String name) {
+        var index = globals.get(name);
+        if (index == null) {
+            index = globals.size();
+            if (index > 0xffff) {
+                throw new RuntimeError(token(), "Too many global variables.");
+            }
+            globals.put(name, index);
+        }
+        return index;
+    }
+
+    private Token token() {
+        return new Token(TokenType.IDENTIFIER, "", null, line, 0, current.function.fileName);
+    }
+
+    // Scopes and variables.
+    //
+    private void beginScope() {
+        current.scopeDepth++;
+    }
+
+    private void endScope() {
+        current.scopeDepth--;
+
+        var locals = current.locals;
+        while (locals.size() > 1 && locals.get(locals.size() - 1).depth > current.scopeDepth) {
+            emit(locals.get(locals.size() - 1).isCaptured ? OpCode.CLOSE_UPVALUE : OpCode.POP);
+            locals.remove(locals.size() - 1);
+        }
+    }
+
+    private boolean isGlobalScope() {
+        return current.enclosing == null && current.scopeDepth == 0;
+    }
+
+    // Defines a variable whose value is on top of the stack.
+    //
+    private void define(Token name) {
+        at(name);
+        if (isGlobalScope()) {
+            emitShort(OpCode.DEFINE_GLOBAL, global(name.lexeme));
+            return;
+        }
+        declare(name);
+    }
+
+    // Gives a local the next slot, which is where its value gets pushed.
+    //
+    private void declare(Token name) {
+        if (current.locals.size() == 256) {
+            throw new RuntimeError(name, "Too many local variables in function.");
+        }
+        current.locals.add(new Local(name.lexeme, current.scopeDepth));
+    }
+
+    private static int resolveLocal(FunctionState state, String name) {
+        for (int i = state.locals.size() - 1; i >= 0; i--) {
+            if (state.locals.get(i).name.equals(name)) return i;
+        }
+        return -1;
+    }
+
+    // Finds a local of an enclosing function, adding it to the upvalues of every function in between.  Returns the
+    // upvalue, or -1 if no enclosing function has such a local.
+    //
+    private static int resolveUpvalue(FunctionState state, Token name) {
+        if (state.enclosing == null) return -1;
+
+        var slot = resolveLocal(state.enclosing, name.lexeme);
+        if (slot >= 0) {
+            state.enclosing.locals.get(slot).isCaptured = true;
+            return addUpvalue(state, name, slot, true);
+        }
+        var upvalue = resolveUpvalue(state.enclosing, name);
+        if (upvalue >= 0) {
+            return addUpvalue(state, name, upvalue, false);
+        }
+        return -1;
+    }
+
+    private static int addUpvalue(FunctionState state, Token name, int index, boolean isLocal) {
+        var upvalue = new Upvalue(index, isLocal);
+        var existing = state.upvalues.indexOf(upvalue);
+        if (existing >= 0) return existing;
+
+        if (state.upvalues.size() == 256) {
+            throw new RuntimeError(name, "Too many closure variables in function.");
+        }
+        state.upvalues.add(upvalue);
+        return state.upvalues.size() - 1;
+    }
+
+    // Emits the read of a variable: a local, an upvalue, or else a global or a member of 'this'.
+    //
+    private void getVariable(Token name) {
+        at(name);
+        var slot = resolveLocal(current, name.lexeme);
+        if (slot >= 0) {
+            emit(OpCode.GET_LOCAL, slot);
+            return;
+        }
+        var upvalue = resolveUpvalue(current, name);
+        if (upvalue >= 0) {
+            emit(OpCode.GET_UPVALUE, upvalue);
+            return;
+        }
+        emitShort(current.isMethod ? OpCode.GET_NAME : OpCode.GET_GLOBAL, global(name.lexeme));
+    }
+
+    // Emits the write of the value on top of the stack to a variable, leaving the value there.
+    //
+    private void setVariable(Token name) {
+        at(name);
+        var slot = resolveLocal(current, name.lexeme);
+        if (slot >= 0) {
+            emit(OpCode.SET_LOCAL, slot);
+            return;
+        }
+        var upvalue = resolveUpvalue(current, name);
+        if (upvalue >= 0) {
+            emit(OpCode.SET_UPVALUE, upvalue);
+            return;
+        }
+        emitShort(current.isMethod ? OpCode.SET_NAME : OpCode.SET_GLOBAL, global(name.lexeme));
+    }
+
+    // Compiles a function and pushes it, as a closure if it captures anything.
+    //
+    private void function(Stmt.Function stmt, boolean isMethod) {
+        String[] types = new String[stmt.types.size()];
+        for (int i = 0; i < types.length; i++) {
+            types[i] = stmt.types.get(i).lexeme;
+        }
+        var isInitializer = isMethod && stmt.name.lexeme.equals("Init");
+        var function = new CompiledFunction(stmt.name.lexeme, stmt.name.fileName, types, isInitializer);
+
+        current = new FunctionState(current, function, isMethod);
+        current.scopeDepth = 1;
+        for (var param : stmt.params) {
+            define(param);
+        }
+        for (var statement : stmt.body) {
+            compile(statement);
+        }
+        emit(OpCode.NIL);
+        emit(OpCode.RETURN);
+        function.finish();
+        function.upvalueCount = current.upvalues.size();
+
+        var upvalues = current.upvalues;
+        current = current.enclosing;
+
+        at(stmt.name);
+        if (upvalues.isEmpty()) {
+            emitShort(OpCode.CONSTANT, constant(function));
+            return;
+        }
+        emitShort(OpCode.CLOSURE, constant(function));
+        for (var upvalue : upvalues) {
+            emit((byte) (upvalue.isLocal() ? 1 : 0));
+            emit((byte) upvalue.index());
+        }
+    }
+
+    @Override
+    public Void visitAssignExpr(Expr.Assign expr) {
+        compile(expr.value);
+        setVariable(expr.name);
+        return null;
+    }
+
+    @Override
+    public Void visitBinaryExpr(Expr.Binary expr) {
+        compile(expr.left);
+        compile(expr.right);
+
+        at(expr.operator);
+        switch (expr.operator.type) {
+            case GREATER: emit(OpCode.GREATER); break;
+            case GREATER_EQUAL: emit(OpCode.GREATER_EQUAL); break;
+            case LESS: emit(OpCode.LESS); break;
+            case LESS_EQUAL: emit(OpCode.LESS_EQUAL); break;
+            case MINUS: emit(OpCode.SUBTRACT); break;
+            case PLUS: emit(OpCode.ADD); break;
+            case SLASH: emit(OpCode.DIVIDE); break;
+            case STAR: emit(OpCode.MULTIPLY); break;
+            case NOT_EQUAL: emit(OpCode.NOT_EQUAL); break;
+            case EQUAL: emit(OpCode.EQUAL); break;
+            default:
+                throw new RuntimeError(expr.operator, "Unknown operator.");
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitCallExpr(Expr.Call expr) {
+        if (expr.callee instanceof Expr.Get get) {
+            compile(get.object);
+            for (var argument : expr.arguments) {
+                compile(argument);
+            }
+            at(expr.paren);
+            emitShort(OpCode.INVOKE, constant(get.name.lexeme));
+            current.function.emit(expr.arguments.size(), file, line, column, width);
+            return null;
+        }
+
+        compile(expr.callee);
+        for (var argument : expr.arguments) {
+            compile(argument);
+        }
+        at(expr.paren);
+        emit(OpCode.CALL, expr.arguments.size());
+        return null;
+    }
+
+    @Override
+    public Void visitGetExpr(Expr.Get expr) {
+        compile(expr.object);
+
+        at(expr.name);
+        emitShort(OpCode.GET_PROPERTY, constant(expr.name.lexeme));
+        return null;
+    }
+
+    @Override
+    public Void visitGroupingExpr(Expr.Grouping expr) {
+        compile(expr.expression);
+        return null;
+    }
+
+    @Override
+    public Void visitLiteralExpr(Expr.Literal expr) {
+        if (expr.value == null) {
+            emit(OpCode.NIL);
+        }
+        else if (expr.value instanceof Boolean b) {
+            emit(b ? OpCode.TRUE : OpCode.FALSE);
+        }
+        else {
+            emitShort(OpCode.CONSTANT, constant(expr.value));
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitMapExpr(Expr.Map expr) {
+        if (expr.value.size() > 255) {
+            throw new RuntimeError(token(), "Too many entries in map literal.");
+        }
+        for (var entry : expr.value.entrySet()) {
+            compile(entry.getKey());
+            compile(entry.getValue());
+        }
+        emit(OpCode.MAP, expr.value.size());
+        return null;
+    }
+
+    @Override
+    public Void visitLogicalExpr(Expr.Logical expr) {
+        compile(expr.left);
+
+        at(expr.operator);
+        var jump = emitJump(expr.operator.type == TokenType.OR ? OpCode.JUMP_IF_TRUE_OR_POP : OpCode.JUMP_IF_FALSE_OR_POP);
+        compile(expr.right);
+        patchJump(jump);
+        return null;
+    }
+
+    @Override
+    public Void visitVariableExpr(Expr.Variable expr) {
+        getVariable(expr.name);
+        return null;
+    }
+
+    @Override
+    public Void visitSetExpr(Expr.Set expr) {
+        return set(expr.object, expr.name, expr.value);
+    }
+
+    @Override
+    public Void visitClassVarExpr(Expr.ClassVar expr) {
+        return set(expr.object, expr.name, expr.value);
+    }
+
+    private Void set(Expr object, Token name, Expr value) {
+        compile(object);
+        compile(value);
+
+        at(name);
+        emitShort(OpCode.SET_PROPERTY, constant(name.lexeme));
+        return null;
+    }
+
+    @Override
+    public Void visitSuperExpr(Expr.Super expr) {
+        at(expr.method);
+        emitShort(OpCode.GET_SUPER, constant(expr.method.lexeme));
+        return null;
+    }
+
+    @Override
+    public Void visitSubscriptExpr(Expr.Subscript expr) {
+        compile(expr.expr);
+        compile(expr.index);
+
+        at(expr.token);
+        emit(OpCode.SUBSCRIPT);
+        return null;
+    }
+
+    @Override
+    public Void visitThisExpr(Expr.This expr) {
+        at(expr.keyword);
+        if (current.isMethod) {
+            emit(OpCode.GET_LOCAL, 0);
+            return null;
+        }
+        // Read from a function inside a method, where 'this' is the method's slot 0.
+        var name = new Token(TokenType.THIS, "this", null, expr.keyword.line, expr.keyword.offset, expr.keyword.fileName);
+        var upvalue = resolveUpvalue(current, name);
+        if (upvalue < 0) {
+            throw new RuntimeError(expr.keyword, "Can't use 'this' outside of a class.");
+        }
+        emit(OpCode.GET_UPVALUE, upvalue);
+        return null;
+    }
+
+    @Override
+    public Void visitUnaryExpr(Expr.Unary expr) {
+        compile(expr.right);
+
+        at(expr.operator);
+        emit(expr.operator.type == TokenType.NOT ? OpCode.NOT : OpCode.NEGATE);
+        return null;
+    }
+
+    @Override
+    public Void visitBlockStmt(Stmt.Block stmt) {
+        beginScope();
+        for (var statement : stmt.statements) {
+            compile(statement);
+        }
+        endScope();
+        return null;
+    }
+
+    @Override
+    public Void visitClassStmt(Stmt.Class stmt) {
+        at(stmt.name);
+        emitShort(OpCode.CLASS, constant(stmt.name.lexeme));
+
+        if (stmt.superclass != null) {
+            compile(stmt.superclass);
+            emit(OpCode.INHERIT);
+        }
+        for (var method : stmt.methods) {
+            function(method, true);
+            emit(OpCode.METHOD);
+        }
+        define(stmt.name);
+        return null;
+    }
+
+    @Override
+    public Void visitEnumStmt(Stmt.Enum stmt) {
+        int ordinal = 0;
+        for (var value : stmt.values) {
+            at(value);
+            emitShort(OpCode.ENUM, constant(stmt.name.lexeme));
+            current.function.emitShort(constant(value.lexeme), file, line, column, width);
+            current.function.emitShort(ordinal++, file, line, column, width);
+            define(value);
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitExpressionStmt(Stmt.Expression stmt) {
+        compile(stmt.expression);
+        emit(OpCode.POP);
+        return null;
+    }
+
+    @Override
+    public Void visitFunctionStmt(Stmt.Function stmt) {
+        var isTopLevel = isGlobalScope();
+        if (!isTopLevel) {
+            // Declared before the body is compiled, so a nested function can call itself.
+            declare(stmt.name);
+        }
+        function(stmt, false);
+
+        if (isTopLevel) {
+            define(stmt.name);
+            var name = stmt.name.literal != null ? stmt.name.literal.toString() : null;
+            tests.add(new Program.TestCase(stmt.name.fileName, name, global(stmt.name.lexeme)));
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitIfStmt(Stmt.If stmt) {
+        compile(stmt.condition);
+
+        var elseJump = emitJump(OpCode.JUMP_IF_FALSE);
+        compile(stmt.thenBranch);
+        if (stmt.elseBranch == null) {
+            patchJump(elseJump);
+            return null;
+        }
+        var endJump = emitJump(OpCode.JUMP);
+        patchJump(elseJump);
+        compile(stmt.elseBranch);
+        patchJump(endJump);
+        return null;
+    }
+
+    // The handler finds the raised value on the stack, and matches it against each typed clause before falling
+    // back to the default one.  Each clause reads the value through its own variable.
+    //
+    @Override
+    public Void visitTryStmt(Stmt.Try stmt) {
+        var handlerJump = emitJump(OpCode.TRY);
+        current.tries++;
+        compile(stmt.tryBlock);
+        current.tries--;
+        emit(OpCode.END_TRY);
+        var endJump = emitJump(OpCode.JUMP);
+
+        patchJump(handlerJump);
+        beginScope();
+        current.locals.add(new Local("", current.scopeDepth));
+        var value = current.locals.size() - 1;
+
+        List<Integer> doneJumps = new ArrayList<>();
+        for (var entry : stmt.exceptMap.entrySet()) {
+            var type = entry.getKey();
+            if (type == null || type.equals("default")) continue;
+
+            emitShort(OpCode.IS_TYPE, constant(type));
+            var nextJump = emitJump(OpCode.JUMP_IF_FALSE);
+            except(entry.getValue(), value);
+            doneJumps.add(emitJump(OpCode.JUMP));
+            patchJump(nextJump);
+        }
+        var otherwise = stmt.exceptMap.get("default");
+        if (otherwise != null) {
+            except(otherwise, value);
+        }
+        for (var jump : doneJumps) {
+            patchJump(jump);
+        }
+        endScope();
+        patchJump(endJump);
+        return null;
+    }
+
+    private void except(Stmt.Except except, int value) {
+        beginScope();
+        emit(OpCode.GET_LOCAL, value);
+        current.locals.add(new Local(except.name, current.scopeDepth));
+        compile(except.stmt);
+        endScope();
+    }
+
+    @Override
+    public Void visitPrintStmt(Stmt.Print stmt) {
+        compile(stmt.expression);
+        emit(OpCode.PRINT);
+        return null;
+    }
+
+    @Override
+    public Void visitReturnStmt(Stmt.Return stmt) {
+        at(stmt.keyword);
+        if (current.enclosing == null) {
+            throw new RuntimeError(stmt.keyword, "Can't return from top-level code.");
+        }
+        if (stmt.value != null) {
+            compile(stmt.value);
+        }
+        else {
+            emit(OpCode.NIL);
+        }
+        emit(OpCode.RETURN);
+        return null;
+    }
+
+    @Override
+    public Void visitRaiseStmt(Stmt.Raise stmt) {
+        if (stmt.value != null) {
+            compile(stmt.value);
+        }
+        else {
+            emit(OpCode.NIL);
+        }
+        at(stmt.keyword);
+        emit(OpCode.RAISE);
+        return null;
+    }
+
+    @Override
+    public Void visitWhileStmt(Stmt.While stmt) {
+        var start = current.function.size();
+        compile(stmt.condition);
+        var exitJump = emitJump(OpCode.JUMP_IF_FALSE);
+
+        var loop = new Loop(current.locals.size(), current.tries);
+        current.loops.add(loop);
+        compile(stmt.body);
+        current.loops.remove(current.loops.size() - 1);
+
+        var backJump = emitJump(OpCode.JUMP);
+        patch(backJump, start);
+        patchJump(exitJump);
+        for (var jump : loop.breaks) {
+            patchJump(jump);
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitVarStmt(Stmt.Var stmt) {
+        if (stmt.initializer != null) {
+            compile(stmt.initializer);
+        }
+        else {
+            emit(OpCode.NIL);
+        }
+        define(stmt.name);
+        return null;
+    }
+
+    // Leaves any try blocks and scopes inside the loop before jumping out of it.
+    //
+    @Override
+    public Void visitBreakStmt(Stmt.Break stmt) {
+        if (current.loops.isEmpty()) {
+            throw new RuntimeError(token(), "Can't break outside of a loop.");
+        }
+        var loop = current.loops.get(current.loops.size() - 1);
+        for (int i = loop.tries; i < current.tries; i++) {
+            emit(OpCode.END_TRY);
+        }
+        for (int i = current.locals.size() - 1; i >= loop.locals; i--) {
+            emit(current.locals.get(i).isCaptured ? OpCode.CLOSE_UPVALUE : OpCode.POP);
+        }
+        loop.breaks.add(emitJump(OpCode.JUMP));
+        return null;
+    }
+}
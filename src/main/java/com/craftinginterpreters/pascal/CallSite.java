@@ -0,0 +1,119 @@
+package com.craftinginterpreters.pascal;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Call Site.  An inline cache for one call expression.  It remembers which function each call resolved to, keyed
+ * by the declaration called and the type names of the arguments, so repeated calls with the same types skip
+ * overload matching.  It holds one entry while the site is monomorphic, and up to MAX_ENTRIES while polymorphic.
+ * Past that the site is megamorphic, and every call goes through the full lookup.
+ *
+ * Only lookups that depend on nothing but the callee and the argument types are cached: the callee matching
+ * itself or one of its overloads, or a method found in the class of the instance it's bound to.  Lookups that walk
+ * the environment are not.  An overload is remembered by its position in the callee's overloads, which are only ever
+ * appended to, along with its declaration to check it against.
+ */
+final class CallSite {
+    private static final int MAX_ENTRIES = 4;
+    private static final Entry[] EMPTY = new Entry[0];
+
+    private record Entry(Stmt.Function declaration, String[] types, int overload, Stmt.Function target,
+                         PascalClass klass, PascalFunction method) {
+        boolean matches(Interpreter interpreter, PascalFunction callee, List<Object> arguments) {
+            if (declaration != callee.declaration || types.length != arguments.size()) return false;
+
+            for (int i = 0; i < types.length; i++) {
+                if (!types[i].equals(interpreter.type(arguments.get(i)))) return false;
+            }
+            return true;
+        }
+    }
+
+    private Entry[] entries = EMPTY;
+    private boolean megamorphic = false;
+
+    /**
+     * Finds the function a call resolved to before.
+     *
+     * @param interpreter the interpreter, for type names.
+     * @param callee the function called.
+     * @param arguments the arguments.
+     * @return the function to call, or null if nothing is cached for these types.
+     */
+    PascalFunction lookup(Interpreter interpreter, PascalFunction callee, List<Object> arguments) {
+        for (var entry : entries) {
+            if (!entry.matches(interpreter, callee, arguments)) continue;
+            if (entry.target != null) {
+                if (entry.overload < 0) return callee;
+
+                if (entry.overload < callee.overloads.size()) {
+                    var overload = callee.overloads.get(entry.overload);
+                    if (overload.declaration == entry.target) return overload;
+                }
+                continue;
+            }
+
+            var parent = callee.getParent();
+            if (parent != null && parent.klass == entry.klass) {
+                return entry.method.bind(parent);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Remembers that the callee matched itself for these types.
+     *
+     * @param callee the function called.
+     * @param types type names of the arguments.
+     */
+    void addSelf(PascalFunction callee, List<String> types) {
+        add(callee, types, -1, callee.declaration, null, null);
+    }
+
+    /**
+     * Remembers that, for these types, the callee matched one of its overloads.
+     *
+     * @param callee the function called.
+     * @param types type names of the arguments.
+     * @param overload the overload it matched.
+     */
+    void addOverload(PascalFunction callee, List<String> types, PascalFunction overload) {
+        var index = callee.overloads.indexOf(overload);
+        if (index >= 0) {
+            add(callee, types, index, overload.declaration, null, null);
+        }
+    }
+
+    /**
+     * Remembers that, for these types, the call resolved to a method of the class of the instance the callee is bound
+     * to.
+     *
+     * @param callee the function called.
+     * @param types type names of the arguments.
+     * @param klass the class of the instance.
+     * @param method the unbound method.
+     */
+    void addMethod(PascalFunction callee, List<String> types, PascalClass klass, PascalFunction method) {
+        add(callee, types, -1, null, klass, method);
+    }
+
+    boolean isMegamorphic() {
+        return megamorphic;
+    }
+
+    private void add(PascalFunction callee, List<String> types, int overload, Stmt.Function target,
+                     PascalClass klass, PascalFunction method) {
+        if (megamorphic) return;
+
+        if (entries.length == MAX_ENTRIES) {
+            megamorphic = true;
+            entries = EMPTY;
+            return;
+        }
+        entries = Arrays.copyOf(entries, entries.length + 1);
+        entries[entries.length - 1] = new Entry(callee.declaration, types.toArray(new String[0]), overload, target,
+                klass, method);
+    }
+}
@@ -0,0 +1,1153 @@
+package com.craftinginterpreters.pascal;
+
+import com.craftinginterpreters.pascal.nativefunction.PascalList;
+import com.craftinginterpreters.pascal.nativefunction.PascalMap;
+import com.craftinginterpreters.pascal.nativefunction.PascalStack;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Closure Compiler.  Walks a resolved tree once and turns it into a tree of pre-linked nodes.  Operators are
+ * dispatched and resolved slots are looked up at compile time, so running a node is a direct call with no
+ * visitor double dispatch.  Runs under a ClosureInterpreter, and behaves the same as the Interpreter.
+ *
+ * Locals declared Integer or Double are kept unboxed, and arithmetic and comparisons on them compile to typed nodes
+ * that pass ints, doubles and booleans around without boxing.  Values are only boxed where they leave typed code,
+ * such as arguments, return values and collections.
+ */
+class ClosureCompiler implements Expr.Visitor<ClosureCompiler.ExprNode>, Stmt.Visitor<ClosureCompiler.StmtNode> {
+    interface ExprNode {
+        Object evaluate(Environment environment);
+    }
+
+    // Returns null if the statement completed normally, or the signal for an 'exit' or 'break'.
+    //
+    interface StmtNode {
+        Interpreter.Completion execute(Environment environment);
+    }
+
+    // Typed nodes.  The typed method throws Environment.WrongType if a variable doesn't hold the primitive its type
+    // says, such as one that hasn't been assigned yet.  Callers then start over with evaluate(), which behaves the
+    // same as the untyped node.  Typed nodes have no side effects, so evaluating twice is safe.
+    //
+    abstract static class IntNode implements ExprNode {
+        final ExprNode generic;
+
+        IntNode(ExprNode generic) {
+            this.generic = generic;
+        }
+
+        abstract int evaluateInt(Environment environment);
+
+        @Override
+        public Object evaluate(Environment environment) {
+            try {
+                return evaluateInt(environment);
+            }
+            catch (Environment.WrongType e) {
+                return generic.evaluate(environment);
+            }
+        }
+    }
+
+    abstract static class DoubleNode implements ExprNode {
+        final ExprNode generic;
+
+        DoubleNode(ExprNode generic) {
+            this.generic = generic;
+        }
+
+        abstract double evaluateDouble(Environment environment);
+
+        @Override
+        public Object evaluate(Environment environment) {
+            try {
+                return evaluateDouble(environment);
+            }
+            catch (Environment.WrongType e) {
+                return generic.evaluate(environment);
+            }
+        }
+    }
+
+    abstract static class BooleanNode implements ExprNode {
+        final ExprNode generic;
+
+        BooleanNode(ExprNode generic) {
+            this.generic = generic;
+        }
+
+        abstract boolean evaluateBoolean(Environment environment);
+
+        @Override
+        public Object evaluate(Environment environment) {
+            try {
+                return evaluateBoolean(environment);
+            }
+            catch (Environment.WrongType e) {
+                return generic.evaluate(environment);
+            }
+        }
+    }
+
+    interface Condition {
+        boolean test(Environment environment);
+    }
+
+    private final Interpreter interpreter;
+
+    ClosureCompiler(Interpreter interpreter) {
+        this.interpreter = interpreter;
+    }
+
+    ExprNode compile(Expr expr) {
+        return expr.accept(this);
+    }
+
+    StmtNode compile(Stmt stmt) {
+        return stmt.accept(this);
+    }
+
+    // Compiles statements that run one after another in the same environment, such as a function body.
+    //
+    StmtNode compile(List<Stmt> statements) {
+        var nodes = compileAll(statements);
+        if (nodes.length == 1) return nodes[0];
+
+        return environment -> {
+            for (var node : nodes) {
+                var completion = node.execute(environment);
+                if (completion != null) return completion;
+            }
+            return null;
+        };
+    }
+
+    private StmtNode[] compileAll(List<Stmt> statements) {
+        var nodes = new StmtNode[statements.size()];
+        for (int i = 0; i < nodes.length; i++) {
+            nodes[i] = compile(statements.get(i));
+        }
+        return nodes;
+    }
+
+    private ExprNode[] compileAllExprs(List<Expr> exprs) {
+        var nodes = new ExprNode[exprs.size()];
+        for (int i = 0; i < nodes.length; i++) {
+            nodes[i] = compile(exprs.get(i));
+        }
+        return nodes;
+    }
+
+    @Override
+    public ExprNode visitAssignExpr(Expr.Assign expr) {
+        if (expr.appended != null) {
+            var assign = assign(expr);
+            var operands = expr.appended.stream().map(this::compile).toArray(ExprNode[]::new);
+            int depth = expr.depth;
+            int slot = expr.slot;
+            return environment -> {
+                if (!(environment.getAt(depth, slot) instanceof StringBuilder builder)) {
+                    return assign.evaluate(environment);
+                }
+                var values = new Object[operands.length];
+                for (int i = 0; i < values.length; i++) {
+                    values[i] = operands[i].evaluate(environment);
+                }
+                interpreter.append(builder, values);
+                return null;
+            };
+        }
+        return assign(expr);
+    }
+
+    private ExprNode assign(Expr.Assign expr) {
+        var value = withElementType(compile(expr.value), expr.elementType);
+        if (expr.self != null) {
+            var self = compile(expr.self);
+            var name = expr.name;
+            var cache = new FieldCache();
+            return environment -> {
+                var result = value.evaluate(environment);
+                ((PascalInstance) self.evaluate(environment)).set(name, result, cache);
+                return result;
+            };
+        }
+        var store = typedAssign(expr, value);
+        if (store != null) {
+            int depth = expr.depth;
+            int slot = expr.slot;
+            return environment -> {
+                store.execute(environment);
+                return environment.getAt(depth, slot);
+            };
+        }
+
+        if (expr.depth >= 0) {
+            int depth = expr.depth;
+            int slot = expr.slot;
+            return environment -> {
+                var result = value.evaluate(environment);
+                environment.assignAt(depth, slot, result);
+                return result;
+            };
+        }
+
+        return environment -> {
+            var result = value.evaluate(environment);
+            interpreter.assignGlobal(expr, result);
+            return result;
+        };
+    }
+
+    // Assigns an unboxed local from a typed node, or returns null if the assignment isn't typed.
+    //
+    private StmtNode typedAssign(Expr.Assign expr, ExprNode value) {
+        if (expr.depth < 0) return null;
+
+        int depth = expr.depth;
+        int slot = expr.slot;
+        if (isType(expr.localType, "Integer") && value instanceof IntNode typed) {
+            return environment -> {
+                int result;
+                try {
+                    result = typed.evaluateInt(environment);
+                }
+                catch (Environment.WrongType e) {
+                    environment.assignAt(depth, slot, typed.generic.evaluate(environment));
+                    return null;
+                }
+                environment.assignInt(depth, slot, result);
+                return null;
+            };
+        }
+        if (isType(expr.localType, "Double") && value instanceof DoubleNode typed) {
+            return environment -> {
+                double result;
+                try {
+                    result = typed.evaluateDouble(environment);
+                }
+                catch (Environment.WrongType e) {
+                    environment.assignAt(depth, slot, typed.generic.evaluate(environment));
+                    return null;
+                }
+                environment.assignDouble(depth, slot, result);
+                return null;
+            };
+        }
+        return null;
+    }
+
+    // Operands that are both typed ints or doubles get a typed node, which keeps the generic one to fall back on.
+    //
+    @Override
+    public ExprNode visitBinaryExpr(Expr.Binary expr) {
+        var left = compile(expr.left);
+        var right = compile(expr.right);
+        var generic = genericBinary(expr.operator, left, right);
+
+        if (left instanceof IntNode a && right instanceof IntNode b) {
+            return intBinary(expr.operator.type, a, b, generic);
+        }
+        if (left instanceof DoubleNode a && right instanceof DoubleNode b) {
+            return doubleBinary(expr.operator.type, a, b, generic);
+        }
+        return generic;
+    }
+
+    private ExprNode intBinary(TokenType type, IntNode left, IntNode right, ExprNode generic) {
+        switch (type) {
+            case PLUS: return new IntNode(generic) {
+                @Override
+                int evaluateInt(Environment environment) {
+                    return left.evaluateInt(environment) + right.evaluateInt(environment);
+                }
+            };
+            case MINUS: return new IntNode(generic) {
+                @Override
+                int evaluateInt(Environment environment) {
+                    return left.evaluateInt(environment) - right.evaluateInt(environment);
+                }
+            };
+            case STAR: return new IntNode(generic) {
+                @Override
+                int evaluateInt(Environment environment) {
+                    return left.evaluateInt(environment) * right.evaluateInt(environment);
+                }
+            };
+            case SLASH: return new IntNode(generic) {
+                @Override
+                int evaluateInt(Environment environment) {
+                    return left.evaluateInt(environment) / right.evaluateInt(environment);
+                }
+            };
+            case GREATER: return new BooleanNode(generic) {
+                @Override
+                boolean evaluateBoolean(Environment environment) {
+                    return left.evaluateInt(environment) > right.evaluateInt(environment);
+                }
+            };
+            case GREATER_EQUAL: return new BooleanNode(generic) {
+                @Override
+                boolean evaluateBoolean(Environment environment) {
+                    return left.evaluateInt(environment) >= right.evaluateInt(environment);
+                }
+            };
+            case LESS: return new BooleanNode(generic) {
+                @Override
+                boolean evaluateBoolean(Environment environment) {
+                    return left.evaluateInt(environment) < right.evaluateInt(environment);
+                }
+            };
+            case LESS_EQUAL: return new BooleanNode(generic) {
+                @Override
+                boolean evaluateBoolean(Environment environment) {
+                    return left.evaluateInt(environment) <= right.evaluateInt(environment);
+                }
+            };
+            case EQUAL: return new BooleanNode(generic) {
+                @Override
+                boolean evaluateBoolean(Environment environment) {
+                    return left.evaluateInt(environment) == right.evaluateInt(environment);
+                }
+            };
+            case NOT_EQUAL: return new BooleanNode(generic) {
+                @Override
+                boolean evaluateBoolean(Environment environment) {
+                    return left.evaluateInt(environment) != right.evaluateInt(environment);
+                }
+            };
+        }
+        return generic;
+    }
+
+    // Equality compares bits, the same as Double.equals().
+    //
+    private ExprNode doubleBinary(TokenType type, DoubleNode left, DoubleNode right, ExprNode generic) {
+        switch (type) {
+            case PLUS: return new DoubleNode(generic) {
+                @Override
+                double evaluateDouble(Environment environment) {
+                    return left.evaluateDouble(environment) + right.evaluateDouble(environment);
+                }
+            };
+            case MINUS: return new DoubleNode(generic) {
+                @Override
+                double evaluateDouble(Environment environment) {
+                    return left.evaluateDouble(environment) - right.evaluateDouble(environment);
+                }
+            };
+            case STAR: return new DoubleNode(generic) {
+                @Override
+                double evaluateDouble(Environment environment) {
+                    return left.evaluateDouble(environment) * right.evaluateDouble(environment);
+                }
+            };
+            case SLASH: return new DoubleNode(generic) {
+                @Override
+                double evaluateDouble(Environment environment) {
+                    return left.evaluateDouble(environment) / right.evaluateDouble(environment);
+                }
+            };
+            case GREATER: return new BooleanNode(generic) {
+                @Override
+                boolean evaluateBoolean(Environment environment) {
+                    return left.evaluateDouble(environment) > right.evaluateDouble(environment);
+                }
+            };
+            case GREATER_EQUAL: return new BooleanNode(generic) {
+                @Override
+                boolean evaluateBoolean(Environment environment) {
+                    return left.evaluateDouble(environment) >= right.evaluateDouble(environment);
+                }
+            };
+            case LESS: return new BooleanNode(generic) {
+                @Override
+                boolean evaluateBoolean(Environment environment) {
+                    return left.evaluateDouble(environment) < right.evaluateDouble(environment);
+                }
+            };
+            case LESS_EQUAL: return new BooleanNode(generic) {
+                @Override
+                boolean evaluateBoolean(Environment environment) {
+                    return left.evaluateDouble(environment) <= right.evaluateDouble(environment);
+                }
+            };
+            case EQUAL: return new BooleanNode(generic) {
+                @Override
+                boolean evaluateBoolean(Environment environment) {
+                    return Double.doubleToLongBits(left.evaluateDouble(environment))
+                            == Double.doubleToLongBits(right.evaluateDouble(environment));
+                }
+            };
+            case NOT_EQUAL: return new BooleanNode(generic) {
+                @Override
+                boolean evaluateBoolean(Environment environment) {
+                    return Double.doubleToLongBits(left.evaluateDouble(environment))
+                            != Double.doubleToLongBits(right.evaluateDouble(environment));
+                }
+            };
+        }
+        return generic;
+    }
+
+    // Each operator gets its own node, holding its own operation, so the calls inside stay monomorphic.
+    //
+    private ExprNode genericBinary(Token operator, ExprNode left, ExprNode right) {
+        switch (operator.type) {
+            case GREATER: {
+                var operation = new BinaryOperation.Greater(operator, interpreter);
+                return environment -> operation.apply(left.evaluate(environment), right.evaluate(environment));
+            }
+            case GREATER_EQUAL: {
+                var operation = new BinaryOperation.GreaterEqual(operator, interpreter);
+                return environment -> operation.apply(left.evaluate(environment), right.evaluate(environment));
+            }
+            case LESS: {
+                var operation = new BinaryOperation.Less(operator, interpreter);
+                return environment -> operation.apply(left.evaluate(environment), right.evaluate(environment));
+            }
+            case LESS_EQUAL: {
+                var operation = new BinaryOperation.LessEqual(operator, interpreter);
+                return environment -> operation.apply(left.evaluate(environment), right.evaluate(environment));
+            }
+            case MINUS: {
+                var operation = new BinaryOperation.Subtract(operator, interpreter);
+                return environment -> operation.apply(left.evaluate(environment), right.evaluate(environment));
+            }
+            case PLUS: {
+                var operation = new BinaryOperation.Add(operator, interpreter);
+                return environment -> operation.apply(left.evaluate(environment), right.evaluate(environment));
+            }
+            case SLASH: {
+                var operation = new BinaryOperation.Divide(operator, interpreter);
+                return environment -> operation.apply(left.evaluate(environment), right.evaluate(environment));
+            }
+            case STAR: {
+                var operation = new BinaryOperation.Multiply(operator, interpreter);
+                return environment -> operation.apply(left.evaluate(environment), right.evaluate(environment));
+            }
+            case NOT_EQUAL: {
+                var operation = new BinaryOperation.NotEqual(operator, interpreter);
+                return environment -> operation.apply(left.evaluate(environment), right.evaluate(environment));
+            }
+            case EQUAL: {
+                var operation = new BinaryOperation.Equal(operator, interpreter);
+                return environment -> operation.apply(left.evaluate(environment), right.evaluate(environment));
+            }
+        }
+        // unreachable
+        return environment -> {
+            left.evaluate(environment);
+            right.evaluate(environment);
+            return null;
+        };
+    }
+
+    @Override
+    public ExprNode visitCallExpr(Expr.Call expr) {
+        if (expr.callee instanceof Expr.Get get) {
+            return invoke(expr, instance(get.object, get.name), get.name);
+        }
+        if (expr.callee instanceof Expr.Variable variable && variable.self != null) {
+            return invoke(expr, compile(variable.self), variable.name);
+        }
+        var callee = compile(expr.callee);
+        var arguments = compileAllExprs(expr.arguments);
+
+        return environment -> {
+            var function = callee.evaluate(environment);
+            List<Object> values = new ArrayList<>(arguments.length);
+            for (var argument : arguments) {
+                values.add(argument.evaluate(environment));
+            }
+            return interpreter.call(expr, function, values, environment);
+        };
+    }
+
+    // Compiles the object of a property access, checking that it's an instance.
+    //
+    private ExprNode instance(Expr objectExpr, Token name) {
+        var object = compile(objectExpr);
+
+        return environment -> {
+            var value = object.evaluate(environment);
+            if (!(value instanceof PascalInstance)) {
+                throw new RuntimeError(name, "Only instances have properties.");
+            }
+            return value;
+        };
+    }
+
+    // Fuses obj.Method(...) into one node, which calls the method on the instance without binding it first.
+    //
+    private ExprNode invoke(Expr.Call expr, ExprNode receiver, Token name) {
+        var arguments = compileAllExprs(expr.arguments);
+        var cache = new FieldCache();
+
+        return environment -> {
+            var instance = (PascalInstance) receiver.evaluate(environment);
+            var method = instance.findMethod(name.lexeme);
+            var intrinsic = method == null && interpreter.isIntrinsic(expr, instance);
+            var callee = method != null || intrinsic ? method : instance.get(name, cache);
+
+            List<Object> values = new ArrayList<>(arguments.length);
+            for (var argument : arguments) {
+                values.add(argument.evaluate(environment));
+            }
+            if (method != null) {
+                return interpreter.invoke(expr, instance, method, values, environment);
+            }
+            if (intrinsic) {
+                var result = instance.intrinsic(expr.intrinsic, values);
+                if (result != Intrinsic.UNSUPPORTED) return result;
+
+                callee = instance.get(name, cache);
+            }
+            return interpreter.call(expr, callee, values, environment);
+        };
+    }
+
+    @Override
+    public ExprNode visitGetExpr(Expr.Get expr) {
+        var object = compile(expr.object);
+        var name = expr.name;
+        var cache = new FieldCache();
+
+        var intrinsic = expr.intrinsic;
+
+        return environment -> {
+            var value = object.evaluate(environment);
+            if (value instanceof PascalInstance instance) {
+                if (intrinsic != null) {
+                    var result = instance.intrinsic(intrinsic, List.of());
+                    if (result != Intrinsic.UNSUPPORTED) return result;
+                }
+                return instance.get(name, cache);
+            }
+            throw new RuntimeError(name, "Only instances have properties.");
+        };
+    }
+
+    @Override
+    public ExprNode visitGroupingExpr(Expr.Grouping expr) {
+        return compile(expr.expression);
+    }
+
+    @Override
+    public ExprNode visitLiteralExpr(Expr.Literal expr) {
+        var value = expr.value;
+        ExprNode generic = environment -> value;
+
+        if (value instanceof Integer i) {
+            int constant = i;
+            return new IntNode(generic) {
+                @Override
+                int evaluateInt(Environment environment) {
+                    return constant;
+                }
+
+                @Override
+                public Object evaluate(Environment environment) {
+                    return value;
+                }
+            };
+        }
+        if (value instanceof Double d) {
+            double constant = d;
+            return new DoubleNode(generic) {
+                @Override
+                double evaluateDouble(Environment environment) {
+                    return constant;
+                }
+
+                @Override
+                public Object evaluate(Environment environment) {
+                    return value;
+                }
+            };
+        }
+        if (value instanceof Boolean b) {
+            boolean constant = b;
+            return new BooleanNode(generic) {
+                @Override
+                boolean evaluateBoolean(Environment environment) {
+                    return constant;
+                }
+
+                @Override
+                public Object evaluate(Environment environment) {
+                    return value;
+                }
+            };
+        }
+        return generic;
+    }
+
+    @Override
+    public ExprNode visitMapExpr(Expr.Map expr) {
+        var entries = new ArrayList<Map.Entry<ExprNode, ExprNode>>();
+        for (var entry : expr.value.entrySet()) {
+            entries.add(Map.entry(compile(entry.getKey()), compile(entry.getValue())));
+        }
+
+        return environment -> {
+            var map = new HashMap<>();
+            for (var entry : entries) {
+                var key = entry.getKey().evaluate(environment);
+                var value = entry.getValue().evaluate(environment);
+
+                map.put(key, value);
+            }
+            return new PascalMap(map);
+        };
+    }
+
+    @Override
+    public ExprNode visitLogicalExpr(Expr.Logical expr) {
+        var left = compile(expr.left);
+        var right = compile(expr.right);
+
+        if (expr.operator.type == TokenType.OR) {
+            return environment -> {
+                var value = left.evaluate(environment);
+                if (interpreter.isTruthy(value)) return value;
+                return right.evaluate(environment);
+            };
+        }
+        return environment -> {
+            var value = left.evaluate(environment);
+            if (!interpreter.isTruthy(value)) return value;
+            return right.evaluate(environment);
+        };
+    }
+
+    @Override
+    public ExprNode visitVariableExpr(Expr.Variable expr) {
+        if (expr.self != null) {
+            var self = compile(expr.self);
+            var name = expr.name;
+            var cache = new FieldCache();
+            return environment -> ((PascalInstance) self.evaluate(environment)).get(name, cache);
+        }
+        if (expr.depth >= 0) {
+            return typedLocal(expr.localType, expr.depth, expr.slot);
+        }
+
+        var name = expr.name;
+        if (expr.slot >= 0) {
+            return environment -> interpreter.lookupGlobal(expr, environment);
+        }
+        return environment -> {
+            try {
+                return environment.get(name);
+            }
+            catch (Exception e) {
+                return interpreter.globals.get(name);
+            }
+        };
+    }
+
+    @Override
+    public ExprNode visitSetExpr(Expr.Set expr) {
+        return set(expr.object, expr.name, expr.value, expr.elementType);
+    }
+
+    @Override
+    public ExprNode visitClassVarExpr(Expr.ClassVar expr) {
+        return set(expr.object, expr.name, expr.value, null);
+    }
+
+    private ExprNode set(Expr objectExpr, Token name, Expr valueExpr, String elementType) {
+        var object = compile(objectExpr);
+        var value = withElementType(compile(valueExpr), elementType);
+        var cache = new FieldCache();
+
+        return environment -> {
+            var target = object.evaluate(environment);
+            if (!(target instanceof PascalInstance instance)) {
+                throw new RuntimeError(name, "Only instances have fields.");
+            }
+            var result = value.evaluate(environment);
+            instance.set(name, result, cache);
+            return result;
+        };
+    }
+
+    @Override
+    public ExprNode visitSuperExpr(Expr.Super expr) {
+        int distance = expr.depth;
+        int slot = expr.slot;
+        var method = expr.method;
+
+        return environment -> {
+            var superclass = (PascalClass) environment.getAt(distance, slot);
+
+            // 'this' is always the first slot of the method's frame, just inside 'super'.
+            var object = (PascalInstance) environment.getAt(distance - 1, 0);
+            var function = superclass.findMethod(method.lexeme);
+            if (function == null) {
+                throw new RuntimeError(method, "Undefined property '" + method.lexeme + "'.");
+            }
+            return function.bind(object);
+        };
+    }
+
+    @Override
+    public ExprNode visitSubscriptExpr(Expr.Subscript expr) {
+        var target = compile(expr.expr);
+        var index = compile(expr.index);
+        var token = expr.token;
+
+        return environment -> {
+            var value = target.evaluate(environment);
+            if (value instanceof String s) {
+                int i = (int) Double.parseDouble(index.evaluate(environment).toString());
+                return s.charAt(i);
+            }
+            else if (value instanceof PascalList list) {
+                int i = Integer.parseInt(index.evaluate(environment).toString());
+                try {
+                    return list.list.get(i);
+                }
+                catch (RuntimeException e) {
+                    throw new RuntimeError(token, e.getMessage());
+                }
+            }
+            else if (value instanceof PascalStack stack) {
+                int i = Integer.parseInt(index.evaluate(environment).toString());
+                try {
+                    return stack.stack.get(i);
+                }
+                catch (RuntimeException e) {
+                    throw new RuntimeError(token, e.getMessage());
+                }
+            }
+            throw new RuntimeError(token, "Subscript target should be an ordinal.");
+        };
+    }
+
+    @Override
+    public ExprNode visitThisExpr(Expr.This expr) {
+        if (expr.depth >= 0) {
+            return local(expr.depth, expr.slot);
+        }
+        var keyword = expr.keyword;
+        return environment -> {
+            try {
+                return environment.get(keyword);
+            }
+            catch (Exception e) {
+                return interpreter.globals.get(keyword);
+            }
+        };
+    }
+
+    @Override
+    public ExprNode visitUnaryExpr(Expr.Unary expr) {
+        var right = compile(expr.right);
+
+        var operation = new UnaryOperation(expr.operator, interpreter);
+        ExprNode generic = environment -> operation.apply(right.evaluate(environment));
+
+        if (expr.operator.type == TokenType.MINUS && right instanceof IntNode typed) {
+            return new IntNode(generic) {
+                @Override
+                int evaluateInt(Environment environment) {
+                    return -typed.evaluateInt(environment);
+                }
+            };
+        }
+        if (expr.operator.type == TokenType.MINUS && right instanceof DoubleNode typed) {
+            return new DoubleNode(generic) {
+                @Override
+                double evaluateDouble(Environment environment) {
+                    return -typed.evaluateDouble(environment);
+                }
+            };
+        }
+        if (expr.operator.type == TokenType.NOT && right instanceof BooleanNode typed) {
+            return new BooleanNode(generic) {
+                @Override
+                boolean evaluateBoolean(Environment environment) {
+                    return !typed.evaluateBoolean(environment);
+                }
+            };
+        }
+        return generic;
+    }
+
+    // Reads a local through a typed node if it was declared Integer, Double or Boolean.  Reading it generically
+    // just boxes it.
+    //
+    private ExprNode typedLocal(String type, int depth, int slot) {
+        var generic = local(depth, slot);
+
+        if (isType(type, "Integer")) {
+            return new IntNode(generic) {
+                @Override
+                int evaluateInt(Environment environment) {
+                    return environment.getInt(depth, slot);
+                }
+
+                @Override
+                public Object evaluate(Environment environment) {
+                    return environment.getAt(depth, slot);
+                }
+            };
+        }
+        if (isType(type, "Double")) {
+            return new DoubleNode(generic) {
+                @Override
+                double evaluateDouble(Environment environment) {
+                    return environment.getDouble(depth, slot);
+                }
+
+                @Override
+                public Object evaluate(Environment environment) {
+                    return environment.getAt(depth, slot);
+                }
+            };
+        }
+        if (isType(type, "Boolean")) {
+            return new BooleanNode(generic) {
+                @Override
+                boolean evaluateBoolean(Environment environment) {
+                    if (environment.getAt(depth, slot) instanceof Boolean value) return value;
+
+                    throw Environment.WRONG_TYPE;
+                }
+
+                @Override
+                public Object evaluate(Environment environment) {
+                    return environment.getAt(depth, slot);
+                }
+            };
+        }
+        return generic;
+    }
+
+    // Wraps a value stored in a variable or field declared with an element type, so a collection stored there can
+    // specialize.
+    //
+    private ExprNode withElementType(ExprNode value, String elementType) {
+        if (elementType == null || isType(elementType, "Any")) return value;
+
+        return environment -> interpreter.withElementType(value.evaluate(environment), elementType);
+    }
+
+    private static boolean isType(String type, String name) {
+        return name.equalsIgnoreCase(type);
+    }
+
+    // Compiles a condition, testing a typed node without boxing the result.
+    //
+    private Condition condition(Expr expr) {
+        var node = compile(expr);
+        if (node instanceof BooleanNode typed) {
+            return environment -> {
+                try {
+                    return typed.evaluateBoolean(environment);
+                }
+                catch (Environment.WrongType e) {
+                    return interpreter.isTruthy(typed.generic.evaluate(environment));
+                }
+            };
+        }
+        return environment -> interpreter.isTruthy(node.evaluate(environment));
+    }
+
+    private ExprNode local(int depth, int slot) {
+        if (depth == 0) return environment -> environment.getAt(0, slot);
+
+        return environment -> environment.getAt(depth, slot);
+    }
+
+    @Override
+    public StmtNode visitBlockStmt(Stmt.Block stmt) {
+        var statements = compileAll(stmt.statements);
+        var locals = stmt.locals;
+
+        return environment -> {
+            var frame = new Environment(environment, locals);
+            for (var statement : statements) {
+                var completion = statement.execute(frame);
+                if (completion != null) return completion;
+            }
+            return null;
+        };
+    }
+
+    @Override
+    public StmtNode visitClassStmt(Stmt.Class stmt) {
+        var superclassNode = stmt.superclass != null ? compile(stmt.superclass) : null;
+        var bodies = new StmtNode[stmt.methods.size()];
+        for (int i = 0; i < bodies.length; i++) {
+            bodies[i] = compile(stmt.methods.get(i).body);
+        }
+        var lookup = Context.current().lookup;
+
+        return environment -> {
+            Object superclass = null;
+            if (superclassNode != null) {
+                superclass = superclassNode.evaluate(environment);
+                if (!(superclass instanceof PascalClass)) {
+                    throw new RuntimeError(stmt.superclass.name, "Superclass must be a class.");
+                }
+            }
+            environment.define(stmt.name.lexeme, null);
+
+            var scope = environment;
+            if (superclass != null) {
+                scope = new Environment(environment, PascalFunction.SUPER_LAYOUT);
+                scope.define("super", superclass);
+            }
+            Map<String, PascalFunction> methods = new HashMap<>();
+            for (int i = 0; i < bodies.length; i++) {
+                var method = stmt.methods.get(i);
+                var function = new PascalFunction(method, scope, method.name.lexeme.equals("Init"), bodies[i], lookup);
+                if (methods.containsKey(method.name.lexeme)) {
+                    methods.get(method.name.lexeme).overloads.add(function);
+                }
+                else {
+                    methods.put(method.name.lexeme, function);
+                }
+            }
+            var klass = new PascalClass(stmt.name.lexeme, (PascalClass) superclass, methods, PascalClass.fields(stmt));
+            environment.assign(stmt.name, klass);
+            return null;
+        };
+    }
+
+    @Override
+    public StmtNode visitEnumStmt(Stmt.Enum stmt) {
+        return environment -> {
+            int count = 0;
+            for (var value : stmt.values) {
+                environment.define(value.lexeme, new PascalEnum(stmt.name.lexeme, value.lexeme, count++));
+            }
+            return null;
+        };
+    }
+
+    @Override
+    public StmtNode visitExpressionStmt(Stmt.Expression stmt) {
+        if (stmt.expression instanceof Expr.Assign assign) {
+            var store = typedAssign(assign, compile(assign.value));
+            if (store != null) return store;
+        }
+        var expression = compile(stmt.expression);
+        return environment -> {
+            expression.evaluate(environment);
+            return null;
+        };
+    }
+
+    @Override
+    public StmtNode visitFunctionStmt(Stmt.Function stmt) {
+        var body = compile(stmt.body);
+        var lookup = Context.current().lookup;
+
+        return environment -> {
+            var function = new PascalFunction(stmt, environment, false, body, lookup);
+
+            if (environment.contains(stmt.name.lexeme)) {
+                var value = environment.get(stmt.name);
+
+                throw new RuntimeError(stmt.name, "Variable already exists!" + value.getClass());
+            }
+            environment.define(stmt.name.lexeme, function);
+            return null;
+        };
+    }
+
+    @Override
+    public StmtNode visitIfStmt(Stmt.If stmt) {
+        var condition = condition(stmt.condition);
+        var thenBranch = compile(stmt.thenBranch);
+
+        if (stmt.elseBranch == null) {
+            return environment -> {
+                if (condition.test(environment)) {
+                    return thenBranch.execute(environment);
+                }
+                return null;
+            };
+        }
+        var elseBranch = compile(stmt.elseBranch);
+        return environment -> {
+            if (condition.test(environment)) {
+                return thenBranch.execute(environment);
+            }
+            return elseBranch.execute(environment);
+        };
+    }
+
+    @Override
+    public StmtNode visitTryStmt(Stmt.Try stmt) {
+        var tryBlock = compile(stmt.tryBlock);
+        Map<String, StmtNode> handlers = new HashMap<>();
+        for (var entry : stmt.exceptMap.entrySet()) {
+            handlers.put(entry.getKey(), compile(entry.getValue().stmt));
+        }
+
+        return environment -> {
+            try {
+                return tryBlock.execute(environment);
+            }
+            catch (RuntimeError e) {
+                Object value = e.value;
+                if (value == null) {
+                    value = e.getMessage();
+                }
+
+                String name;
+                if (value instanceof PascalInstance pi) {
+                    name = pi.klass.name;
+                }
+                else {
+                    name = value.getClass().getSimpleName();
+                }
+                var except = stmt.exceptMap.get(name);
+                if (except == null) {
+                    name = "default";
+                    except = stmt.exceptMap.get(name);
+                }
+                var handler = new Environment(environment);
+                handler.define(except.name, value);
+                return handlers.get(name).execute(handler);
+            }
+        };
+    }
+
+    @Override
+    public StmtNode visitPrintStmt(Stmt.Print stmt) {
+        var expression = compile(stmt.expression);
+        return environment -> {
+            System.out.println(interpreter.stringify(expression.evaluate(environment)));
+            return null;
+        };
+    }
+
+    @Override
+    public StmtNode visitReturnStmt(Stmt.Return stmt) {
+        if (stmt.value == null) {
+            return environment -> {
+                interpreter.returnValue = null;
+                return Interpreter.Completion.RETURN;
+            };
+        }
+        var value = compile(stmt.value);
+        return environment -> {
+            interpreter.returnValue = value.evaluate(environment);
+            return Interpreter.Completion.RETURN;
+        };
+    }
+
+    @Override
+    public StmtNode visitRaiseStmt(Stmt.Raise stmt) {
+        var value = stmt.value != null ? compile(stmt.value) : null;
+        var keyword = stmt.keyword;
+
+        return environment -> {
+            Object result = null;
+            if (value != null) result = value.evaluate(environment);
+
+            var ex = new RuntimeError(keyword, result.toString());
+            ex.value = result;
+
+            throw ex;
+        };
+    }
+
+    @Override
+    public StmtNode visitWhileStmt(Stmt.While stmt) {
+        var condition = condition(stmt.condition);
+        var body = compile(stmt.body);
+
+        StmtNode loop = environment -> {
+            try {
+                while (condition.test(environment)) {
+                    var completion = body.execute(environment);
+                    if (completion == Interpreter.Completion.BREAK) break;
+                    if (completion != null) return completion;
+                }
+            }
+            catch (Interpreter.BreakException ex) {
+                // A 'break' that escaped a function declared inside the loop.
+            }
+            return null;
+        };
+        if (stmt.accumulated == null) return loop;
+
+        return environment -> {
+            var builders = interpreter.beginAccumulating(stmt, environment);
+            try {
+                return loop.execute(environment);
+            }
+            finally {
+                interpreter.endAccumulating(stmt, environment, builders);
+            }
+        };
+    }
+
+    @Override
+    public StmtNode visitVarStmt(Stmt.Var stmt) {
+        var name = stmt.name.lexeme;
+        if (stmt.initializer == null) {
+            return environment -> {
+                environment.define(name, null);
+                return null;
+            };
+        }
+        var initializer = compile(stmt.initializer);
+
+        if (isType(stmt.type, "Integer") && initializer instanceof IntNode typed) {
+            return environment -> {
+                int value;
+                try {
+                    value = typed.evaluateInt(environment);
+                }
+                catch (Environment.WrongType e) {
+                    environment.define(name, typed.generic.evaluate(environment));
+                    return null;
+                }
+                environment.defineInt(name, value);
+                return null;
+            };
+        }
+        if (isType(stmt.type, "Double") && initializer instanceof DoubleNode typed) {
+            return environment -> {
+                double value;
+                try {
+                    value = typed.evaluateDouble(environment);
+                }
+                catch (Environment.WrongType e) {
+                    environment.define(name, typed.generic.evaluate(environment));
+                    return null;
+                }
+                environment.defineDouble(name, value);
+                return null;
+            };
+        }
+        if (!isType(stmt.generic, "Any")) {
+            var elementType = stmt.generic;
+            return environment -> {
+                environment.define(name, interpreter.withElementType(initializer.evaluate(environment), elementType));
+                return null;
+            };
+        }
+        return environment -> {
+            environment.define(name, initializer.evaluate(environment));
+            return null;
+        };
+    }
+
+    @Override
+    public StmtNode visitBreakStmt(Stmt.Break stmt) {
+        return environment -> Interpreter.Completion.BREAK;
+    }
+}
@@ -0,0 +1,29 @@
+package com.craftinginterpreters.pascal;
+
+import java.util.List;
+
+/**
+ * Closure Interpreter.  Runs programs through the ClosureCompiler instead of walking the tree with visitors.  Each
+ * top-level statement is compiled once, after resolution, and functions carry their compiled bodies with them.
+ */
+class ClosureInterpreter extends Interpreter {
+    private final ClosureCompiler compiler = new ClosureCompiler(this);
+
+    ClosureInterpreter(ErrorHandler errorHandler) {
+        super(errorHandler);
+    }
+
+    ClosureInterpreter() {
+        this(new ErrorHandlerImpl());
+    }
+
+    @Override
+    Completion execute(Stmt stmt) {
+        return compiler.compile(stmt).execute(environment);
+    }
+
+    @Override
+    Completion executeBlock(List<Stmt> statements, Environment environment) {
+        return compiler.compile(statements).execute(environment);
+    }
+}
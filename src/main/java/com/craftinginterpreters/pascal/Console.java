@@ -69,7 +69,7 @@ public class Console {
     public static void error(RuntimeError err) {
         var line = err.token.line;
         var file = err.token.fileName;
-        var text = SourceCode.INSTANCE.getLine(file, line);
+        var text = Context.current().sourceCode.getLine(file, line);
 
         var lineLength = String.valueOf(line).length();
         write(ANSI_WHITE + "[" + ANSI_RED + "ERROR" + ANSI_WHITE + "] " + ANSI_RESET + err.token.fileName + ": " + err.getMessage());
@@ -0,0 +1,85 @@
+package com.craftinginterpreters.pascal;
+
+import java.io.IOException;
+
+/**
+ * Context.  Everything a program needs while it's built and run: the interpreter that runs it, the types the
+ * TypeChecker has found, the units it has loaded, its source code for error messages, and whether it has failed.
+ * Each thread works in one context at a time, its current one, so programs in separate contexts can be built and run
+ * at the same time on separate threads.  A thread that hasn't been given a context gets its own the first time it
+ * asks for one.
+ */
+public final class Context {
+    private static final ThreadLocal<Context> CURRENT = new ThreadLocal<>();
+
+    final TypeLookup lookup = new TypeLookup();
+    final SourceCode sourceCode = new SourceCode();
+    final UnitLoader units = new UnitLoader(this);
+
+    // Root of the shapes of the program's instances.
+    final Shape shapes = Shape.root();
+
+    // Runs the program.  Set by '--engine=tree|closure'.
+    Interpreter interpreter = new Interpreter();
+
+    // Set by '--engine=vm'.  The interpreter is still used to resolve the program.
+    boolean useVm = false;
+
+    // Set by '--compile'.  Where to write the bytecode, instead of running it.
+    String bytecodeFile = null;
+
+    boolean hadError = false;
+    boolean hadRuntimeError = false;
+    String lastError;
+
+    /**
+     * Gets the current thread's context, creating one if it has none.
+     *
+     * @return the context.
+     */
+    public static Context current() {
+        var context = CURRENT.get();
+        if (context == null) {
+            context = new Context();
+            CURRENT.set(context);
+        }
+        return context;
+    }
+
+    /**
+     * Builds a program file and runs its tests in this context, on the calling thread.
+     *
+     * @param path the program file.
+     * @return 0 if it passed, 65 if it didn't build, or 70 if it failed while running.
+     * @throws IOException if a file couldn't be read.
+     */
+    public int runFile(String path) throws IOException {
+        var previous = enter();
+        try {
+            Pascal.runFile(path);
+        }
+        finally {
+            leave(previous);
+        }
+        return hadError ? 65 : hadRuntimeError ? 70 : 0;
+    }
+
+    // Makes this the current thread's context, returning the one it replaces so it can be put back.
+    //
+    Context enter() {
+        var previous = CURRENT.get();
+        CURRENT.set(this);
+        return previous;
+    }
+
+    // Puts back the context enter() replaced.
+    //
+    static void leave(Context previous) {
+        if (previous == null) {
+            CURRENT.remove();
+        }
+        else {
+            CURRENT.set(previous);
+        }
+    }
+}
@@ -1,39 +1,213 @@
 package com.craftinginterpreters.pascal;
 
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
+/**
+ * Environment.  Every environment keeps its values in an array of slots.  In a frame, slots are in the order values
+ * were defined, which is the order the Resolver declared them in.  Resolved references read and write frames by
+ * (distance, slot); names are only kept so unresolved references can still walk the chain.
+ *
+ * The global environment maps each name to a fixed slot instead.  The Resolver reserves a slot for every global
+ * name it sees, before it's defined, so references to globals read and write that slot directly.  A reserved slot
+ * holds UNDEFINED until the global is defined.
+ *
+ * A slot can also hold an int or double unboxed.  The slot then holds a Primitive marker, and the bits live in a
+ * parallel array.  Only typed reads and writes use the bits directly; everything else sees a boxed value.
+ */
 public class Environment {
+    private static final String[] NO_NAMES = new String[0];
+
+    /**
+     * Marks a slot whose value is unboxed.
+     */
+    enum Primitive {
+        INT {
+            @Override
+            Object box(long bits) {
+                return (int) bits;
+            }
+        },
+        DOUBLE {
+            @Override
+            Object box(long bits) {
+                return Double.longBitsToDouble(bits);
+            }
+        };
+
+        abstract Object box(long bits);
+    }
+
+    /**
+     * Thrown by typed reads when a slot doesn't hold the expected primitive, such as a typed variable that hasn't
+     * been assigned yet.  The caller falls back to the generic path.  Shared, and without a stack trace, since it
+     * is only used for control flow.
+     */
+    static final class WrongType extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        private WrongType() {
+            super(null, null, false, false);
+        }
+    }
+
+    static final WrongType WRONG_TYPE = new WrongType();
+
+    private static final Object UNDEFINED = new Object();
+
     final Environment enclosing;
-    public final Map<String, Object> values = new HashMap<>();
 
+    // Slot of each global by name.  Null in a frame.
+    private final Map<String, Integer> globals;
+
+    private String[] names;
+    private Object[] slots;
+    private long[] primitives;
+    private int count = 0;
+    private boolean sharedNames;
+
+    /**
+     * Creates the global environment.
+     */
     public Environment() {
-        enclosing = null;
+        this.enclosing = null;
+        this.globals = new HashMap<>();
+        this.names = NO_NAMES;
+        this.slots = new Object[16];
     }
 
+    /**
+     * Creates a frame with no known layout.
+     *
+     * @param enclosing the enclosing environment.
+     */
     public Environment(Environment enclosing) {
+        this(enclosing, NO_NAMES);
+    }
+
+    /**
+     * Creates a frame laid out by the Resolver.  The layout is shared, not copied, as long as values are defined
+     * in the same order.
+     *
+     * @param enclosing the enclosing environment.
+     * @param layout names of the locals, in slot order.
+     */
+    public Environment(Environment enclosing, String[] layout) {
         this.enclosing = enclosing;
+        this.globals = null;
+        this.names = layout;
+        this.slots = new Object[Math.max(layout.length, 2)];
+        this.sharedNames = true;
     }
 
-   public Object get(Token name) {
-        if (values.containsKey(name.lexeme)) {
-            return values.get(name.lexeme);
+    public Object get(Token name) {
+        var index = indexOf(name.lexeme);
+        if (index >= 0) {
+            return load(index);
         }
         if (enclosing != null) return enclosing.get(name);
 
         throw new RuntimeError(name, "Undefined variable '" + name.lexeme + "'.");
     }
 
-   public  void define(String name, Object value) {
-        if (values.containsKey(name)) {
-            var existing = values.get(name);
-            if (existing instanceof PascalFunction && value instanceof PascalFunction) {
+    public void define(String name, Object value) {
+        if (globals != null) {
+            var index = reserve(name);
+            var existing = slots[index];
+            if (existing != UNDEFINED) {
+                if (existing instanceof PascalFunction && value instanceof PascalFunction) {
+                    return;
+                }
+                throw new RuntimeException("Redefined: " + name);
+            }
+            slots[index] = value;
+            return;
+        }
+
+        // Fast path: the next slot in the Resolver's layout.
+        if (count < names.length && name.equals(names[count])) {
+            slots[count++] = value;
+            return;
+        }
+
+        var index = indexOf(name);
+        if (index >= 0) {
+            if (slots[index] instanceof PascalFunction && value instanceof PascalFunction) {
                 return;
             }
             throw new RuntimeException("Redefined: " + name);
         }
-        values.put(name, value);
+        if (sharedNames || count == names.length) {
+            names = Arrays.copyOf(names, Math.max(count * 2, 4));
+            sharedNames = false;
+        }
+        if (count == slots.length) {
+            slots = Arrays.copyOf(slots, names.length);
+        }
+        names[count] = name;
+        slots[count++] = value;
+    }
+
+    /**
+     * Checks whether a name is defined in this environment, ignoring enclosing ones.
+     *
+     * @param name the name.
+     * @return true if defined here.
+     */
+    public boolean contains(String name) {
+        return indexOf(name) >= 0;
+    }
+
+    /**
+     * Finds the slot of a global, reserving one if the name hasn't been seen.  Only for the global environment.
+     *
+     * @param name the name.
+     * @return the slot.
+     */
+    int reserve(String name) {
+        var index = globals.get(name);
+        if (index == null) {
+            index = count;
+            if (count == slots.length) {
+                slots = Arrays.copyOf(slots, count * 2);
+            }
+            slots[count++] = UNDEFINED;
+            globals.put(name, index);
+        }
+        return index;
+    }
+
+    /**
+     * Reads a global through the slot the Resolver reserved for it.
+     *
+     * @param index the slot.
+     * @param name the name, for the error.
+     * @return the value.
+     * @throws RuntimeError if the global hasn't been defined.
+     */
+    Object getGlobal(int index, Token name) {
+        var value = slots[index];
+        if (value == UNDEFINED) {
+            throw new RuntimeError(name, "Undefined variable '" + name.lexeme + "'.");
+        }
+        return value;
+    }
+
+    /**
+     * Assigns a global through the slot the Resolver reserved for it.
+     *
+     * @param index the slot.
+     * @param name the name, for the error.
+     * @param value the value.
+     * @throws RuntimeError if the global hasn't been defined.
+     */
+    void assignGlobal(int index, Token name, Object value) {
+        if (slots[index] == UNDEFINED) {
+            throw new RuntimeError(name, "Undefined variable '" + name.lexeme + "'.");
+        }
+        slots[index] = value;
     }
 
     public Environment ancestor(int distance) {
@@ -46,12 +220,79 @@ public class Environment {
     }
 
     public Object getAt(int distance, String name) {
-        return ancestor(distance).values.get(name);
+        var environment = ancestor(distance);
+        var index = environment.indexOf(name);
+        return index >= 0 ? environment.load(index) : null;
+    }
+
+    public Object getAt(int distance, int slot) {
+        return ancestor(distance).load(slot);
+    }
+
+    /**
+     * Reads a slot that should hold an int.
+     *
+     * @param distance scopes up from this one.
+     * @param slot the slot.
+     * @return the value.
+     * @throws WrongType if the slot doesn't hold an int.
+     */
+    int getInt(int distance, int slot) {
+        var frame = ancestor(distance);
+        var value = frame.slots[slot];
+        if (value == Primitive.INT) return (int) frame.primitives[slot];
+        if (value instanceof Integer i) return i;
+
+        throw WRONG_TYPE;
+    }
+
+    /**
+     * Reads a slot that should hold a double.
+     *
+     * @param distance scopes up from this one.
+     * @param slot the slot.
+     * @return the value.
+     * @throws WrongType if the slot doesn't hold a double.
+     */
+    double getDouble(int distance, int slot) {
+        var frame = ancestor(distance);
+        var value = frame.slots[slot];
+        if (value == Primitive.DOUBLE) return Double.longBitsToDouble(frame.primitives[slot]);
+        if (value instanceof Double d) return d;
+
+        throw WRONG_TYPE;
+    }
+
+    void assignInt(int distance, int slot, int value) {
+        ancestor(distance).store(slot, Primitive.INT, value);
+    }
+
+    void assignDouble(int distance, int slot, double value) {
+        ancestor(distance).store(slot, Primitive.DOUBLE, Double.doubleToRawLongBits(value));
+    }
+
+    void defineInt(String name, int value) {
+        if (globals != null) {
+            define(name, value);
+            return;
+        }
+        define(name, Primitive.INT);
+        store(count - 1, Primitive.INT, value);
+    }
+
+    void defineDouble(String name, double value) {
+        if (globals != null) {
+            define(name, value);
+            return;
+        }
+        define(name, Primitive.DOUBLE);
+        store(count - 1, Primitive.DOUBLE, Double.doubleToRawLongBits(value));
     }
 
     public void assign(Token name, Object value) {
-        if (values.containsKey(name.lexeme)) {
-            values.put(name.lexeme, value);
+        var index = indexOf(name.lexeme);
+        if (index >= 0) {
+            slots[index] = value;
             return;
         }
         if (enclosing != null) {
@@ -61,8 +302,8 @@ public class Environment {
         throw new RuntimeError(name, "Undefined variable '" + name.lexeme + "'.");
     }
 
-    public void assignAt(int distance, Token name, Object value) {
-        ancestor(distance).values.put(name.lexeme, value);
+    public void assignAt(int distance, int slot, Object value) {
+        ancestor(distance).slots[slot] = value;
     }
 
     public PascalFunction findFunction(Token name, List<String> types) {
@@ -82,4 +323,33 @@ public class Environment {
         }
         return null;
     }
-}
\ No newline at end of file
+
+    private Object load(int index) {
+        var value = slots[index];
+        if (value instanceof Primitive primitive) {
+            return primitive.box(primitives[index]);
+        }
+        return value;
+    }
+
+    private void store(int index, Primitive type, long bits) {
+        if (primitives == null || primitives.length < slots.length) {
+            primitives = primitives == null ? new long[slots.length] : Arrays.copyOf(primitives, slots.length);
+        }
+        slots[index] = type;
+        primitives[index] = bits;
+    }
+
+    // The slot of a defined name, or -1.
+    //
+    private int indexOf(String name) {
+        if (globals != null) {
+            var index = globals.get(name);
+            return index != null && slots[index] != UNDEFINED ? index : -1;
+        }
+        for (int i = 0; i < count; i++) {
+            if (name.equals(names[i])) return i;
+        }
+        return -1;
+    }
+}
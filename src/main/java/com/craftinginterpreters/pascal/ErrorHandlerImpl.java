@@ -0,0 +1,11 @@
+package com.craftinginterpreters.pascal;
+
+/**
+ * Error handler for running programs.  Records the error, so the exit code shows there was one.
+ */
+class ErrorHandlerImpl implements ErrorHandler {
+    @Override
+    public void runtimeError(RuntimeError error) {
+        Pascal.runtimeError(error);
+    }
+}
@@ -35,6 +35,12 @@ public abstract class Expr {
 
         final Token name;
         final Expr value;
+
+        // For 's := s + a + b' in a loop that holds 's' in a builder, the operands appended to it.  Null otherwise.
+        List<Expr> appended;
+
+        // The element type the variable was declared with, for a collection assigned to it.  Set by the TypeChecker.
+        String elementType;
     }
 
     static class Binary extends Expr {
@@ -53,6 +59,9 @@ public abstract class Expr {
         final Token operator;
         final Expr right;
 
+        // Specializes to the operand types seen at run time.  Created by the Interpreter on first execution.
+        BinaryOperation operation;
+
         public String reduce(TypeLookup lookup) {
             if (cast != null)  return cast;
 
@@ -101,6 +110,17 @@ public abstract class Expr {
         public final Token paren;
         final List<Expr> arguments;
 
+        // Remembers how calls made here resolved their overloads.  Created by the Interpreter on first call.
+        CallSite site;
+
+        // The collection operation the method name stands for, if any.  Set by the Resolver.
+        Intrinsic intrinsic;
+
+        // The overload the TypeChecker chose, and the static argument types it chose it for.  Null if the types
+        // weren't known.
+        Stmt.Function target;
+        String[] targetTypes;
+
         public String reduce(TypeLookup lookup) {
             if (cast != null)  return cast;
 
@@ -173,12 +193,18 @@ public abstract class Expr {
         final Expr object;
         final Token name;
 
+        // Remembers the shape of the last instance accessed here.
+        final FieldCache cache = new FieldCache();
+
+        // Intrinsic.LENGTH if this reads a collection's length.  Set by the Resolver.
+        Intrinsic intrinsic;
+
         public String reduce(TypeLookup lookup) {
             if (cast != null)  return cast;
 
             var klass = object.reduce(lookup);
 
-            if ("any".equalsIgnoreCase(klass)) {
+            if ("any".equalsIgnoreCase(klass) && lookup.inferred != null) {
                 klass = object.reduce(lookup.inferred);
             }
 
@@ -322,6 +348,9 @@ public abstract class Expr {
                 else if ("Map".equalsIgnoreCase(name.lexeme)) {
                     return "Map";
                 }
+                else if ("StringBuilder".equalsIgnoreCase(name.lexeme)) {
+                    return "StringBuilder";
+                }
 
                 return "Any";
                 //throw new RuntimeException(name.lexeme + " " + name.fileName + name.line);
@@ -345,6 +374,12 @@ public abstract class Expr {
         final Expr object;
         final Token name;
         final Expr value;
+
+        // Remembers the shape of the last instance accessed here.
+        final FieldCache cache = new FieldCache();
+
+        // The element type the field was declared with, for a collection assigned to it.  Set by the TypeChecker.
+        String elementType;
     }
 
     static class ClassVar extends Expr {
@@ -366,6 +401,9 @@ public abstract class Expr {
         final String type;
         final String generic;
         final Expr value;
+
+        // Remembers the shape of the last instance accessed here.
+        final FieldCache cache = new FieldCache();
     }
 
     static class Super extends Expr {
@@ -410,6 +448,9 @@ public abstract class Expr {
         final Token operator;
         final Expr right;
 
+        // Specializes to the operand type seen at run time.  Created by the Interpreter on first execution.
+        UnaryOperation operation;
+
         public String reduce(TypeLookup lookup) {
             if (cast != null)  return cast;
 
@@ -425,4 +466,18 @@ public abstract class Expr {
     }
 
     public String cast;
+
+    // Where the Resolver found a local: scopes up from the current one, and slot within that frame.  A depth of
+    // -1 means the name was not found in any local scope, and the slot, if any, is the one reserved for it among the
+    // globals.
+    int depth = -1;
+    int slot = -1;
+
+    // The declared type of the local the Resolver found, or null if it wasn't a local.
+    String localType;
+
+    // For a bare name in a method that the Resolver found to be a field or method of the class, the 'this' to access
+    // it through and a cache for the access.  Null otherwise.
+    Expr.This self;
+    FieldCache memberCache;
 }
@@ -0,0 +1,12 @@
+package com.craftinginterpreters.pascal;
+
+/**
+ * Field Cache.  An inline cache for one field access in the program.  It remembers the shape of the last instance
+ * accessed and the slot the field was in, so the next access to an instance of that shape goes straight to the
+ * slot.  For a set that added the field, it also remembers the shape the instance moved to.
+ */
+final class FieldCache {
+    Shape shape;
+    int index;
+    Shape next;
+}
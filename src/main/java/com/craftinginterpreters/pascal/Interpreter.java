@@ -4,14 +4,40 @@ import com.craftinginterpreters.pascal.nativefunction.*;
 
 import java.util.*;
 
-public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
+public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Interpreter.Completion> {
+    // Type names of the built-in value classes, for overload matching.
+    private static final Map<Class<?>, String> TYPE_NAMES = Map.of(
+            String.class, "String",
+            Integer.class, "Integer",
+            Boolean.class, "Boolean",
+            Character.class, "Char",
+            Double.class, "Double",
+            PascalList.class, "List",
+            PascalStack.class, "Stack");
+
     final Environment globals = new Environment();
-    private Environment environment = globals;
-    private final Map<Expr, Integer> locals = new HashMap<>();
+    Environment environment = globals;
 
     private final ErrorHandler errorHandler;
 
-    private static class BreakException extends RuntimeException {}
+    // Only thrown for a 'break' that escapes the function it's in, which can happen when the function is declared
+    // inside a loop.  Every other 'break' is a completion signal.
+    static class BreakException extends RuntimeException {
+        BreakException() {
+            super(null, null, false, false);
+        }
+    }
+
+    // How a statement completed.  Statements return null when they complete normally.  'exit' and 'break' return
+    // a signal instead of throwing, and each enclosing statement passes it up until the function or loop that
+    // handles it.  The value of an 'exit' waits in returnValue until the function picks it up.
+    //
+    enum Completion {
+        BREAK,
+        RETURN
+    }
+
+    Object returnValue;
 
     Interpreter(ErrorHandler errorHandler) {
         this.errorHandler = errorHandler;
@@ -31,7 +57,7 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
     void interpret(List<Stmt> statements) {
         try {
             for (Stmt statement : statements) {
-                execute(statement);
+                escape(execute(statement));
             }
         }
         catch (RuntimeError error) {
@@ -40,6 +66,19 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
         }
     }
 
+    // An 'exit' or 'break' at the top level has nothing to complete, so it's thrown out of the interpreter.
+    //
+    void escape(Completion completion) {
+        if (completion == Completion.RETURN) {
+            var value = returnValue;
+            returnValue = null;
+            throw new Return(value);
+        }
+        if (completion == Completion.BREAK) {
+            throw new BreakException();
+        }
+    }
+
     void runTests(List<Stmt> statements) {
         try {
             AssertionInvoker.register(globals, Assertions.class);
@@ -103,34 +142,24 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
 
     @Override
     public Object visitAssignExpr(Expr.Assign expr) {
-        var value = evaluate(expr.value);
-
-        var distance = locals.get(expr);
-        if (distance != null) {
-            try {
-                environment.assignAt(distance, expr.name, value);
-            }
-            catch (Exception e) {
-                try {
-                    var object = (PascalInstance) environment.get(new Token(TokenType.THIS, "this", null, expr.name.line, 0, null));
-                    object.set(new Token(TokenType.IDENTIFIER, expr.name.lexeme, null, expr.name.line, 0, null), value);
-                } catch (Exception e2) {
-                    throw e;
-                }
+        if (expr.appended != null && environment.getAt(expr.depth, expr.slot) instanceof StringBuilder builder) {
+            var values = new Object[expr.appended.size()];
+            for (int i = 0; i < values.length; i++) {
+                values[i] = evaluate(expr.appended.get(i));
             }
+            append(builder, values);
+            return null;
+        }
+        var value = withElementType(evaluate(expr.value), expr.elementType);
+
+        if (expr.self != null) {
+            ((PascalInstance) evaluate(expr.self)).set(expr.name, value, expr.memberCache);
+        }
+        else if (expr.depth >= 0) {
+            environment.assignAt(expr.depth, expr.slot, value);
         }
         else {
-            try {
-                globals.assign(expr.name, value);
-            }
-            catch (Exception e) {
-                try {
-                    var object = (PascalInstance) environment.get(new Token(TokenType.THIS, "this", null, expr.name.line, 0, null));
-                    object.set(new Token(TokenType.IDENTIFIER, expr.name.lexeme, null, expr.name.line, 0, null), value);
-                } catch (Exception e2) {
-                    throw e;
-                }
-            }
+            assignGlobal(expr, value);
         }
         return value;
     }
@@ -140,123 +169,14 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
         var left = evaluate(expr.left);
         var right = evaluate(expr.right);
 
-
-        switch (expr.operator.type) {
-            case GREATER:
-                checkNumberOperands(expr.operator, left, right);
-                if (left instanceof Double) {
-                    return (double) left > (double) right;
-                }
-                else if (left instanceof Character) {
-                    return (char) left >= (char) right;
-                }
-                else {
-                    return (int) left > (int) right;
-                }
-
-            case GREATER_EQUAL:
-                checkNumberOperands(expr.operator, left, right);
-                if (left instanceof Double) {
-                    return (double) left >= (double) right;
-                }
-                else if (left instanceof Character) {
-                    return (char) left >= (char) right;
-                }
-                else {
-                    return (int) left >= (int) right;
-                }
-
-            case LESS:
-                checkNumberOperands(expr.operator, left, right);
-                if (left instanceof Double) {
-                    return (double) left < (double) right;
-                }
-                else if (left instanceof Character) {
-                    return (char) left < (char) right;
-                }
-                else {
-                    return (int) left < (int) right;
-                }
-
-            case LESS_EQUAL:
-                checkNumberOperands(expr.operator, left, right);
-                if (left instanceof Double) {
-                    return (double) left <= (double) right;
-                }
-                else if (left instanceof Character) {
-                    return (char) left <= (char) right;
-                }
-                else {
-                    return (int) left <= (int) right;
-                }
-
-            case MINUS:
-                checkNumberOperands(expr.operator, left, right);
-                if (left instanceof Double) {
-                    return (double) left - (double) right;
-                }
-                else {
-                    return (int) left - (int) right;
-                }
-
-            case PLUS:
-                if (left instanceof Double && right instanceof Double) {
-                    return (double) left + (double) right;
-                }
-                if (left instanceof Integer && right instanceof Integer) {
-                    return (int) left + (int) right;
-                }
-                if (left instanceof String || right instanceof String) {
-                    return stringify(left) + stringify(right);
-                }
-                throw new RuntimeError(expr.operator, "Operands must be two numbers, or two strings.");
-            case SLASH:
-                checkNumberOperands(expr.operator, left, right);
-                if (left instanceof Double) {
-                    return (double) left / (double) right;
-                }
-                else {
-                    return (int) left / (int) right;
-                }
-
-            case STAR:
-                checkNumberOperands(expr.operator, left, right);
-                if (left instanceof Double) {
-                    return (double) left * (double) right;
-                }
-                else {
-                    return (int) left * (int) right;
-                }
-
-            case NOT_EQUAL:
-                return !isEqual(left, right);
-            case EQUAL:
-                return isEqual(left, right);
-        }
-        // unreachable
-        return null;
-    }
-
-    private Object lookupCallInternal(Expr expr) {
-        try {
-            return evaluate(expr);
-        }
-        catch (Exception e) {
-            if (expr instanceof Expr.Variable variable) {
-                try {
-                    var object = environment.get(new Token(TokenType.THIS, "this", null, variable.name.line, 0, null));
-                    return ((PascalInstance) object).get(new Token(TokenType.IDENTIFIER, variable.name.lexeme, null, variable.name.line, 0, null));
-
-                } catch (Exception e2) {
-                    throw e;
-                }
+        if (expr.operation == null) {
+            expr.operation = BinaryOperation.create(expr.operator, this);
+            if (expr.operation == null) {
+                // unreachable
+                return null;
             }
-            throw e;
         }
-    }
-
-    private Object lookupCall(Expr expr) {
-        return lookupCallInternal(expr);
+        return expr.operation.apply(left, right);
     }
 
     public String type(Object obj) {
@@ -264,17 +184,9 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
             return "Nil";
         }
 
-        var map = new HashMap<Class, String>();
-        map.put(String.class, "String");
-        map.put(Integer.class, "Integer");
-        map.put(Boolean.class, "Boolean");
-        map.put(Character.class, "Char");
-        map.put(Double.class, "Double");
-        map.put(PascalList.class, "List");
-        map.put(PascalStack.class, "Stack");
-
-        if (map.containsKey(obj.getClass()))  {
-            return map.get(obj.getClass());
+        var name = TYPE_NAMES.get(obj.getClass());
+        if (name != null)  {
+            return name;
         }
 
         if (obj instanceof PascalEnum e) {
@@ -289,16 +201,58 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
 
     @Override
     public Object visitCallExpr(Expr.Call expr) {
-        var callee = lookupCall(expr.callee);
-        List<Object> arguments = new ArrayList<>();
+        if (expr.callee instanceof Expr.Get get) {
+            var object = evaluate(get.object);
+            if (!(object instanceof PascalInstance instance)) {
+                throw new RuntimeError(get.name, "Only instances have properties.");
+            }
+            return callMember(expr, instance, get.name, get.cache);
+        }
+        if (expr.callee instanceof Expr.Variable variable && variable.self != null) {
+            return callMember(expr, (PascalInstance) evaluate(variable.self), variable.name, variable.memberCache);
+        }
+
+        var callee = evaluate(expr.callee);
+        List<Object> arguments = new ArrayList<>(expr.arguments.size());
         for (Expr argument : expr.arguments) {
             arguments.add(evaluate(argument));
         }
-        List<String> types = new ArrayList<>();
-        for (var arg : arguments) {
-            types.add(type(arg));
+        return call(expr, callee, arguments, environment);
+    }
+
+    // Calls a member of an instance, without binding it if it's a method.
+    //
+    private Object callMember(Expr.Call expr, PascalInstance instance, Token name, FieldCache cache) {
+        var method = instance.findMethod(name.lexeme);
+        var intrinsic = method == null && isIntrinsic(expr, instance);
+        var callee = method != null || intrinsic ? method : instance.get(name, cache);
+
+        List<Object> arguments = new ArrayList<>(expr.arguments.size());
+        for (Expr argument : expr.arguments) {
+            arguments.add(evaluate(argument));
+        }
+        if (method != null) {
+            return invoke(expr, instance, method, arguments, environment);
         }
+        if (intrinsic) {
+            var result = instance.intrinsic(expr.intrinsic, arguments);
+            if (result != Intrinsic.UNSUPPORTED) return result;
+
+            callee = instance.get(name, cache);
+        }
+        return call(expr, callee, arguments, environment);
+    }
 
+    // Whether a call might be run as a collection operation.  Only the natives have them, and they have no class.
+    // Shared by both engines.
+    //
+    boolean isIntrinsic(Expr.Call expr, PascalInstance instance) {
+        return expr.intrinsic != null && instance.klass == null && expr.arguments.size() == expr.intrinsic.arity;
+    }
+
+    // Picks the overload matching the arguments, then calls it.  Shared by both engines.
+    //
+    Object call(Expr.Call expr, Object callee, List<Object> arguments, Environment environment) {
         if (!(callee instanceof PascalCallable)) {
             throw new RuntimeError(expr.paren, "Can only call functions and classes.");
         }
@@ -306,31 +260,7 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
         var function = (PascalCallable) callee;
 
         if (function instanceof PascalFunction fun) {
-            // look in overloads
-            function = fun.match(types);
-
-            if (function == null) {
-                var parent = fun.getParent();
-                if (parent != null) {
-                    function = parent.klass.findMethod(fun.declaration.name.lexeme, types);
-                    if (function != null) {
-                        function = ((PascalFunction)function).bind(parent);
-                    }
-                }
-            }
-
-            // walk up environments...
-            if (function == null ) {
-                function = environment.findFunction(fun.declaration.name, types);
-            }
-
-            // check in globals
-            if (function == null ) {
-                function = globals.findFunction(fun.declaration.name, types);
-            }
-            if (function == null) {
-                throw new RuntimeError(expr.paren, "No matching signature for function.");
-            }
+            function = resolve(expr, fun, arguments, environment);
         }
 
         if (function instanceof Assertion) {
@@ -348,11 +278,146 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
         }
     }
 
+    // Calls a method on an instance without binding it, picking the overload the same way call() would.  Anything
+    // other than the method or one of its overloads goes back through call() with the bound method.  Shared by both
+    // engines.
+    //
+    Object invoke(Expr.Call expr, PascalInstance receiver, PascalFunction method, List<Object> arguments, Environment environment) {
+        if (expr.site == null) {
+            expr.site = new CallSite();
+        }
+        var function = chosenOverload(expr, method, arguments);
+        if (function == null) {
+            function = expr.site.lookup(this, method, arguments);
+        }
+        if (function == null) {
+            List<String> types = new ArrayList<>(arguments.size());
+            for (var arg : arguments) {
+                types.add(type(arg));
+            }
+            function = method.match(types);
+            if (function == method) {
+                expr.site.addSelf(method, types);
+            }
+            else if (function != null) {
+                expr.site.addOverload(method, types, function);
+            }
+        }
+        if (function == null) {
+            return call(expr, method.bind(receiver), arguments, environment);
+        }
+
+        if (arguments.size() != function.arity()) {
+            throw new RuntimeError(expr.paren, "Expected " + function.arity() + " arguments but got " + arguments.size() + ".");
+        }
+        return function.invoke(this, receiver, arguments);
+    }
+
+    // Finds the overload the TypeChecker chose among the function's own, if the arguments have the types it chose
+    // it for.
+    //
+    private PascalFunction chosenOverload(Expr.Call expr, PascalFunction fun, List<Object> arguments) {
+        if (expr.target == null || expr.targetTypes.length != arguments.size()) return null;
+
+        for (int i = 0; i < arguments.size(); i++) {
+            if (!expr.targetTypes[i].equals(type(arguments.get(i)))) return null;
+        }
+
+        if (fun.declaration == expr.target) return fun;
+        for (var overload : fun.overloads) {
+            if (overload.declaration == expr.target) return overload;
+        }
+        return null;
+    }
+
+    // Finds the overload the TypeChecker chose, if the arguments have the types it chose it for.  The overloads
+    // are the same ones the runtime lookup would search, so it would have picked the same one.
+    //
+    private PascalFunction checkedTarget(Expr.Call expr, PascalFunction fun, List<Object> arguments) {
+        if (expr.target == null || expr.targetTypes.length != arguments.size()) return null;
+
+        var chosen = chosenOverload(expr, fun, arguments);
+        if (chosen != null) return chosen;
+
+        if (fun.overloads.isEmpty()) {
+            var parent = fun.getParent();
+            if (parent != null) {
+                var method = parent.klass.findMethod(fun.declaration.name.lexeme, expr.target);
+                if (method != null) return method.bind(parent);
+            }
+        }
+        return null;
+    }
+
+    // Finds the overload to call, through the call site's cache if the same types were seen there before.
+    //
+    private PascalFunction resolve(Expr.Call expr, PascalFunction fun, List<Object> arguments, Environment environment) {
+        if (expr.site == null) {
+            expr.site = new CallSite();
+        }
+        var site = expr.site;
+
+        var chosen = checkedTarget(expr, fun, arguments);
+        if (chosen != null) {
+            return chosen;
+        }
+
+        var cached = site.lookup(this, fun, arguments);
+        if (cached != null) {
+            return cached;
+        }
+
+        List<String> types = new ArrayList<>(arguments.size());
+        for (var arg : arguments) {
+            types.add(type(arg));
+        }
+
+        // look in overloads
+        var function = fun.match(types);
+        if (function == fun) {
+            site.addSelf(fun, types);
+            return fun;
+        }
+        if (function != null) {
+            site.addOverload(fun, types, function);
+            return function;
+        }
+
+        if (function == null) {
+            var parent = fun.getParent();
+            if (parent != null) {
+                var method = parent.klass.findMethod(fun.declaration.name.lexeme, types);
+                if (method != null) {
+                    site.addMethod(fun, types, parent.klass, method);
+                    function = method.bind(parent);
+                }
+            }
+        }
+
+        // walk up environments...
+        if (function == null ) {
+            function = environment.findFunction(fun.declaration.name, types);
+        }
+
+        // check in globals
+        if (function == null ) {
+            function = globals.findFunction(fun.declaration.name, types);
+        }
+        if (function == null) {
+            throw new RuntimeError(expr.paren, "No matching signature for function.");
+        }
+        return function;
+    }
+
     @Override
     public Object visitGetExpr(Expr.Get expr) {
         var object = evaluate(expr.object);
-        if (object instanceof PascalInstance) {
-            return ((PascalInstance) object).get(expr.name);
+        if (object instanceof PascalInstance instance) {
+            if (expr.intrinsic != null) {
+                var result = instance.intrinsic(expr.intrinsic, List.of());
+                if (result != Intrinsic.UNSUPPORTED) return result;
+            }
+            return instance.get(expr.name, expr.cache);
         }
         throw new RuntimeError(expr.name, "Only instances have properties.");
     }
@@ -366,21 +431,30 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
         return expr.accept(this);
     }
 
-    private void execute(Stmt stmt) {
-        stmt.accept(this);
+    Completion execute(Stmt stmt) {
+        return stmt.accept(this);
+    }
+
+    void resolve(Expr expr, int depth, int slot) {
+        expr.depth = depth;
+        expr.slot = slot;
     }
 
-    void resolve(Expr expr, int depth) {
-        locals.put(expr, depth);
+    // Reserves a slot among the globals for a name that isn't a local.
+    //
+    void resolveGlobal(Expr expr, Token name) {
+        expr.slot = globals.reserve(name.lexeme);
     }
 
-    void executeBlock(List<Stmt> statements, Environment environment) {
+    Completion executeBlock(List<Stmt> statements, Environment environment) {
         var previous = this.environment;
         try {
             this.environment = environment;
             for (Stmt stmt : statements) {
-                execute(stmt);
+                var completion = execute(stmt);
+                if (completion != null) return completion;
             }
+            return null;
         }
         finally {
             this.environment = previous;
@@ -420,20 +494,10 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
 
     @Override
     public Object visitVariableExpr(Expr.Variable expr) {
-        try {
-            return lookupVariable(expr.name, expr);
-        }
-        catch (Exception e) {
-            try {
-                var object = environment.get(new Token(TokenType.THIS, "this", null, expr.name.line, 0, null));
-
-                return ((PascalInstance) object).get(new Token(TokenType.IDENTIFIER, expr.name.lexeme, null, expr.name.line, 0, null));
-            }
-            catch (Exception e2) {
-                System.out.println(e2.getMessage());
-                throw e;
-            }
+        if (expr.self != null) {
+            return ((PascalInstance) evaluate(expr.self)).get(expr.name, expr.memberCache);
         }
+        return lookupVariable(expr.name, expr);
     }
 
     @Override
@@ -443,8 +507,8 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
         if (!(object instanceof PascalInstance)) {
             throw new RuntimeError(expr.name, "Only instances have fields.");
         }
-        var value = evaluate(expr.value);
-        ((PascalInstance)object).set(expr.name, value);
+        var value = withElementType(evaluate(expr.value), expr.elementType);
+        ((PascalInstance)object).set(expr.name, value, expr.cache);
         return value;
     }
 
@@ -456,16 +520,17 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
             throw new RuntimeError(expr.name, "Only instances have fields.");
         }
         var value = evaluate(expr.value);
-        ((PascalInstance)object).set(expr.name, value);
+        ((PascalInstance)object).set(expr.name, value, expr.cache);
         return value;
     }
 
     @Override
     public Object visitSuperExpr(Expr.Super expr) {
-        int distance = locals.get(expr);
-        var superclass = (PascalClass) environment.getAt(distance, "super");
+        int distance = expr.depth;
+        var superclass = (PascalClass) environment.getAt(distance, expr.slot);
 
-        var object = (PascalInstance) environment.getAt(distance - 1, "this");
+        // 'this' is always the first slot of the method's frame, just inside 'super'.
+        var object = (PascalInstance) environment.getAt(distance - 1, 0);
         var method = superclass.findMethod(expr.method.lexeme);
         if (method == null) {
             throw new RuntimeError(expr.method, "Undefined property '" + expr.method.lexeme + "'.");
@@ -479,9 +544,11 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
     }
 
     private Object lookupVariable(Token name, Expr expr) {
-        var distance = locals.get(expr);
-        if (distance != null) {
-            return environment.getAt(distance, name.lexeme);
+        if (expr != null && expr.depth >= 0) {
+            return environment.getAt(expr.depth, expr.slot);
+        }
+        else if (expr != null && expr.slot >= 0) {
+            return lookupGlobal(expr, environment);
         }
         else {
             try {
@@ -493,23 +560,46 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
         }
     }
 
+    // Reads a global through its reserved slot.  If it hasn't been defined there, looks the name up through the
+    // environments as before.  Shared by both engines.
+    //
+    Object lookupGlobal(Expr expr, Environment environment) {
+        var name = expr instanceof Expr.Variable variable ? variable.name : ((Expr.Assign) expr).name;
+        try {
+            return globals.getGlobal(expr.slot, name);
+        }
+        catch (RuntimeError e) {
+            try {
+                return environment.get(name);
+            }
+            catch (Exception e2) {
+                throw e;
+            }
+        }
+    }
+
+    // Assigns a global through its reserved slot.  Shared by both engines.
+    //
+    void assignGlobal(Expr.Assign expr, Object value) {
+        if (expr.slot >= 0) {
+            globals.assignGlobal(expr.slot, expr.name, value);
+        }
+        else {
+            globals.assign(expr.name, value);
+        }
+    }
+
     @Override
     public Object visitUnaryExpr(Expr.Unary expr) {
         Object right = evaluate(expr.right);
 
-        switch (expr.operator.type) {
-            case NOT:
-                return !isTruthy(right);
-            case MINUS:
-                checkNumberOperand(expr.operator, right);
-                if (right instanceof Integer) return  -(int)right;
-                else return -(double)right;
+        if (expr.operation == null) {
+            expr.operation = new UnaryOperation(expr.operator, this);
         }
-        // unreachable
-        return null;
+        return expr.operation.apply(right);
     }
 
-    private void checkNumberOperand(Token operator, Object operand) {
+    void checkNumberOperand(Token operator, Object operand) {
         if (operand instanceof Double) return;
         if (operand instanceof Integer) return;
         if (operand instanceof Character) return;
@@ -517,7 +607,7 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
         throw new RuntimeError(operator, "Operand must be a number.");
     }
 
-    private void checkNumberOperands(Token operator, Object left, Object right) {
+    void checkNumberOperands(Token operator, Object left, Object right) {
         if (left instanceof Double && right instanceof Double) return;
         if (left instanceof Integer && right instanceof Integer) return;
         if (left instanceof Character && right instanceof Character) return;
@@ -526,7 +616,7 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
         throw new RuntimeError(operator, "Operands must be numbers.");
     }
 
-    private boolean isTruthy(Object object) {
+    boolean isTruthy(Object object) {
         if (object == null) return false;
         if (object instanceof Boolean) return (boolean)object;
         if (object instanceof Integer) return ((int)object != 0);
@@ -535,13 +625,13 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
         return true;
     }
 
-    private boolean isEqual(Object a, Object b) {
+    boolean isEqual(Object a, Object b) {
         if (a == null && b == null) return true;
         if (a == null) return false;
         return a.equals(b);
     }
 
-    private String stringify(Object object) {
+    String stringify(Object object) {
         if (object == null) return "nil";
 
         if (object instanceof Double) {
@@ -555,13 +645,12 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
     }
 
     @Override
-    public Void visitBlockStmt(Stmt.Block stmt) {
-        executeBlock(stmt.statements, new Environment(environment));
-        return null;
+    public Completion visitBlockStmt(Stmt.Block stmt) {
+        return executeBlock(stmt.statements, new Environment(environment, stmt.locals));
     }
 
     @Override
-    public Void visitClassStmt(Stmt.Class stmt) {
+    public Completion visitClassStmt(Stmt.Class stmt) {
         Object superclass = null;
         if (stmt.superclass != null) {
             superclass = evaluate(stmt.superclass);
@@ -572,12 +661,13 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
         environment.define(stmt.name.lexeme, null);
 
         if (stmt.superclass != null) {
-            environment = new Environment(environment);
+            environment = new Environment(environment, PascalFunction.SUPER_LAYOUT);
             environment.define("super", superclass);
         }
+        var lookup = Context.current().lookup;
         Map<String, PascalFunction> methods = new HashMap<>();
         for (Stmt.Function method : stmt.methods) {
-            var function = new PascalFunction(method, environment, method.name.lexeme.equals("Init"));
+            var function = new PascalFunction(method, environment, method.name.lexeme.equals("Init"), lookup);
             if (methods.containsKey(method.name.lexeme)) {
                 var first = methods.get(method.name.lexeme);
                 first.overloads.add(function);
@@ -586,7 +676,7 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
                 methods.put(method.name.lexeme, function);
             }
         }
-        var klass = new PascalClass(stmt.name.lexeme, (PascalClass) superclass, methods);
+        var klass = new PascalClass(stmt.name.lexeme, (PascalClass) superclass, methods, PascalClass.fields(stmt));
 
         if (superclass != null) {
             environment = environment.enclosing;
@@ -596,7 +686,7 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
     }
 
     @Override
-    public Void visitEnumStmt(Stmt.Enum stmt) {
+    public Completion visitEnumStmt(Stmt.Enum stmt) {
         int  count = 0;
         for (var value : stmt.values) {
             environment.define(value.lexeme, new PascalEnum(stmt.name.lexeme, value.lexeme, count++));
@@ -636,17 +726,17 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
     }
 
     @Override
-    public Void visitExpressionStmt(Stmt.Expression stmt) {
+    public Completion visitExpressionStmt(Stmt.Expression stmt) {
         evaluate(stmt.expression);
         return null;
     }
 
     @Override
-    public Void visitFunctionStmt(Stmt.Function stmt) {
-        var function = new PascalFunction(stmt, environment, false);
+    public Completion visitFunctionStmt(Stmt.Function stmt) {
+        var function = new PascalFunction(stmt, environment, false, Context.current().lookup);
 
-        if (environment.values.containsKey(stmt.name.lexeme)) {
-            var value = environment.values.get(stmt.name.lexeme);
+        if (environment.contains(stmt.name.lexeme)) {
+            var value = environment.get(stmt.name);
 
             throw new RuntimeError(stmt.name, "Variable already exists!" + value.getClass());
         }
@@ -656,23 +746,20 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
     }
 
     @Override
-    public Void visitIfStmt(Stmt.If stmt) {
+    public Completion visitIfStmt(Stmt.If stmt) {
         if (isTruthy(evaluate(stmt.condition))) {
-            execute(stmt.thenBranch);
+            return execute(stmt.thenBranch);
         }
         else if (stmt.elseBranch != null) {
-            execute(stmt.elseBranch);
+            return execute(stmt.elseBranch);
         }
         return null;
     }
 
     @Override
-    public Void visitTryStmt(Stmt.Try stmt) {
+    public Completion visitTryStmt(Stmt.Try stmt) {
         try {
-            execute(stmt.tryBlock);
-        }
-        catch (Return e) {
-            throw e;
+            return execute(stmt.tryBlock);
         }
         catch (RuntimeError e) {
             //Console.error(e);
@@ -697,14 +784,14 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
             if (except == null) {
                 stmt.exceptMap.get("default");
             }
-            environment.define(except.name, value);
-            execute(except.stmt) ;
+            var handler = new Environment(environment);
+            handler.define(except.name, value);
+            return executeBlock(List.of(except.stmt), handler);
         }
-        return null;
     }
 
     @Override
-    public Void visitPrintStmt(Stmt.Print stmt) {
+    public Completion visitPrintStmt(Stmt.Print stmt) {
         Object value = evaluate(stmt.expression);
         System.out.println(stringify(value));
 
@@ -712,20 +799,21 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
     }
 
     @Override
-    public Void visitReturnStmt(Stmt.Return stmt) {
+    public Completion visitReturnStmt(Stmt.Return stmt) {
         Object value = null;
         if (stmt.value != null) value = evaluate(stmt.value);
 
-        throw new Return(value);
+        returnValue = value;
+        return Completion.RETURN;
     }
 
     @Override
-    public Void visitBreakStmt(Stmt.Break stmt) {
-        throw new BreakException();
+    public Completion visitBreakStmt(Stmt.Break stmt) {
+        return Completion.BREAK;
     }
 
     @Override
-    public Void visitRaiseStmt(Stmt.Raise stmt) {
+    public Completion visitRaiseStmt(Stmt.Raise stmt) {
         Object value = null;
         if (stmt.value != null) value = evaluate(stmt.value);
 
@@ -736,25 +824,83 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
     }
 
     @Override
-    public Void visitWhileStmt(Stmt.While stmt) {
+    public Completion visitWhileStmt(Stmt.While stmt) {
+        if (stmt.accumulated == null) return loop(stmt);
+
+        var builders = beginAccumulating(stmt, environment);
+        try {
+            return loop(stmt);
+        }
+        finally {
+            endAccumulating(stmt, environment, builders);
+        }
+    }
+
+    private Completion loop(Stmt.While stmt) {
         try {
             while (isTruthy(evaluate(stmt.condition))) {
-                execute(stmt.body);
+                var completion = execute(stmt.body);
+                if (completion == Completion.BREAK) break;
+                if (completion != null) return completion;
             }
         }
         catch (BreakException ex) {
-            // Do nothing.
+            // A 'break' that escaped a function declared inside the loop.
         }
         return null;
     }
 
     @Override
-    public Void visitVarStmt(Stmt.Var stmt) {
+    public Completion visitVarStmt(Stmt.Var stmt) {
         Object value = null;
         if (stmt.initializer != null) {
-            value = evaluate(stmt.initializer);
+            value = withElementType(evaluate(stmt.initializer), stmt.generic);
         }
         environment.define(stmt.name.lexeme, value);
         return null;
     }
+
+    // Swaps the strings a loop only appends to for builders, before it runs, so each append doesn't copy the whole
+    // string.  Returns the builders, with null for any variable that didn't hold a string.  Shared by both engines.
+    //
+    StringBuilder[] beginAccumulating(Stmt.While stmt, Environment environment) {
+        var builders = new StringBuilder[stmt.accumulated.size()];
+        for (int i = 0; i < builders.length; i++) {
+            var variable = stmt.accumulated.get(i);
+            if (environment.getAt(variable.depth, variable.slot) instanceof String text) {
+                builders[i] = new StringBuilder(text);
+                environment.assignAt(variable.depth, variable.slot, builders[i]);
+            }
+        }
+        return builders;
+    }
+
+    // Puts back the strings built by a loop, however it ended.
+    //
+    void endAccumulating(Stmt.While stmt, Environment environment, StringBuilder[] builders) {
+        for (int i = 0; i < builders.length; i++) {
+            if (builders[i] != null) {
+                var variable = stmt.accumulated.get(i);
+                environment.assignAt(variable.depth, variable.slot, builders[i].toString());
+            }
+        }
+    }
+
+    // Appends the operands of 's := s + a + b' to the builder holding 's', as '+' would have written them.
+    //
+    void append(StringBuilder builder, Object[] values) {
+        for (var value : values) {
+            builder.append(stringify(value));
+        }
+    }
+
+    // Lets a collection a variable or field is initialized or assigned with store its elements unboxed, if it was
+    // declared with a primitive element type.  Shared by both engines.
+    //
+    Object withElementType(Object value, String elementType) {
+        if (value instanceof TypedCollection collection && elementType != null) {
+            collection.specialize(elementType);
+        }
+        return value;
+    }
 }
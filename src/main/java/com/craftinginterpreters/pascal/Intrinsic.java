@@ -0,0 +1,54 @@
+package com.craftinginterpreters.pascal;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Intrinsic.  A built-in operation of the native collections.  The Resolver tags calls and property reads whose
+ * name is one of these, and the interpreter runs them directly on a collection's backing structure, rather than
+ * looking the member up by name and calling the callable it returns.
+ */
+public enum Intrinsic {
+    GET(1),
+    SET(2),
+    ADD(1),
+    PUT(2),
+    CONTAINS(1),
+    PUSH(1),
+    POP(0),
+    PEEK(0),
+    ISEMPTY(0),
+    LENGTH(0),
+    APPEND(1),
+    TOSTRING(0);
+
+    /**
+     * Returned by an instance that doesn't have the operation.
+     */
+    public static final Object UNSUPPORTED = new Object();
+
+    private static final Map<String, Intrinsic> BY_NAME = new HashMap<>();
+
+    static {
+        for (var intrinsic : values()) {
+            BY_NAME.put(intrinsic.name().toLowerCase(Locale.ROOT), intrinsic);
+        }
+    }
+
+    final int arity;
+
+    Intrinsic(int arity) {
+        this.arity = arity;
+    }
+
+    /**
+     * Finds the intrinsic a method name stands for.  Names are case-insensitive, like the natives' own lookup.
+     *
+     * @param name the name.
+     * @return the intrinsic, or null if none.
+     */
+    static Intrinsic find(String name) {
+        return BY_NAME.get(name.toLowerCase(Locale.ROOT));
+    }
+}
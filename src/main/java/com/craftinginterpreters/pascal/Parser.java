@@ -1,8 +1,6 @@
 package com.craftinginterpreters.pascal;
 
-import java.nio.charset.Charset;
-import java.nio.file.Files;
-import java.nio.file.Paths;
+import java.nio.file.Path;
 import java.util.*;
 
 import static com.craftinginterpreters.pascal.TokenType.*;
@@ -15,7 +13,8 @@ public class Parser {
     private final boolean synchronize;
     private int loopDepth = 0;
 
-    private static final Set<String> uses = new HashSet<>();
+    // Loads the units this program uses.  The current context's, so each program includes its units once.
+    private final UnitLoader units = Context.current().units;
     private final List<ParseError> errors = new ArrayList<>();
 
     static class ParseError extends RuntimeException {
@@ -27,16 +26,38 @@ public class Parser {
         }
     }
 
-    private final List<Token> tokens;
+    private final TokenBuffer tokens;
     private int current = 0;
 
+    // The unit being parsed, if this parser is the UnitLoader's.  Null for a program.
+    private final UnitLoader.Unit unit;
+
     Parser(List<Token> tokens)  {
         this(tokens, true);
     }
 
     Parser(List<Token> tokens, boolean synchronize)  {
-        this.tokens = tokens;
+        this.tokens = TokenBuffer.of(tokens);
         this.synchronize = synchronize;
+        this.unit = null;
+        units.prefetch(this.tokens);
+    }
+
+    // Creates the parser for a unit, which notes its 'uses' statements rather than including the units.
+    //
+    Parser(TokenBuffer tokens, UnitLoader.Unit unit) {
+        this.tokens = tokens;
+        this.synchronize = true;
+        this.unit = unit;
+    }
+
+    /**
+     * Sets where parsed units are kept between runs.
+     *
+     * @param directory the directory, or null to parse every unit.
+     */
+    static void cacheUnits(Path directory) {
+        Context.current().units.cache(directory == null ? null : new UnitCache(directory));
     }
 
     public List<Stmt> parse() {
@@ -44,15 +65,16 @@ public class Parser {
             List<Stmt> statements = new ArrayList<>();
             while (!isAtEnd()) {
                 if (match(USES)) {
-                    statements.addAll(usesStatement());
+                    usesStatement(statements);
                 }
                 else if (check(IDENTIFIER, "test") && checkNext(STRING)) {
                     // context-based keyword "test"
-                    var type = advance();
+                    advance();
+                    var type = previous();
 
                     var name = consume(STRING, "Expect test case name.");
-                    consume(SEMICOLON, "Expect ';'");
-                    consume(BEGIN, "Expect 'begin' before test body.");
+                    expect(SEMICOLON, "Expect ';'");
+                    expect(BEGIN, "Expect 'begin' before test body.");
 
                     List<Stmt> body = new ArrayList<>();
                     body.addAll(block());
@@ -112,39 +134,18 @@ public class Parser {
         return null;
     }
 
-    private List<Stmt> usesStatement() {
+    private void usesStatement(List<Stmt> statements) {
         try {
             var name = consume(IDENTIFIER, "Expected identifier.");
             var fileName = name.lexeme;
-            consume(SEMICOLON, "Expected ';'");
+            expect(SEMICOLON, "Expected ';'");
 
-            if  (!uses.contains(fileName)) {
-                uses.add(fileName);
-                var source = Files.readAllBytes(Paths.get(fileName + ".pas"));
-
-                var scanner = new Scanner(fileName + ".pas", new String(source, Charset.defaultCharset()));
-                var tokens = scanner.scanTokens();
-
-                var parser = new Parser(tokens);
-
-                List<Stmt> result = new ArrayList<>();
-                try {
-                    result = parser.parse();
-                }
-                catch (ParseError e) {}
-
-                if (parser.errors.isEmpty()) {
-                    Console.success(fileName + ".pas");
-                }
-                else {
-                    Console.fail(fileName + ".pas");
-                    for (var error : parser.errors) {
-                       Console.error(new RuntimeError(error.token, error.getMessage()));
-                    }
-                }
-                return result;
+            if (unit != null) {
+                unit.uses(fileName, statements.size());
+            }
+            else {
+                statements.addAll(units.include(fileName));
             }
-            return new ArrayList<>();
         }
         catch (Exception e) {
             throw new RuntimeError(previous(), e.getMessage());
@@ -156,11 +157,11 @@ public class Parser {
 
         Expr.Variable superclass = null;
         if (match(LEFT_PAREN)) {
-            consume(IDENTIFIER, "Expect superclass name.");
+            expect(IDENTIFIER, "Expect superclass name.");
             superclass = new Expr.Variable(previous());
-            consume(RIGHT_PAREN, "Expect ')' after superclass name.");
+            expect(RIGHT_PAREN, "Expect ')' after superclass name.");
         }
-        consume(SEMICOLON, "Expect ';' after class declaration.");
+        expect(SEMICOLON, "Expect ';' after class declaration.");
 
         List<Expr> initializers = new ArrayList<>();
         List<Stmt> body = new ArrayList<>();
@@ -183,7 +184,7 @@ public class Parser {
            }
        }
 
-        consume(BEGIN, "Expect 'begin' before class body.");
+        expect(BEGIN, "Expect 'begin' before class body.");
 
         List<Stmt.Function> methods = new ArrayList<>();
         while (!check(END) && !isAtEnd()) {
@@ -191,7 +192,7 @@ public class Parser {
 
             methods.add(function(previous(), "method"));
         }
-        consume(END, "Expect 'end' after class body.");
+        expect(END, "Expect 'end' after class body.");
 
         return new Stmt.Class(name, superclass, initializers, methods);
     }
@@ -199,8 +200,8 @@ public class Parser {
     private Stmt typeDeclaration() {
         var name = consume(IDENTIFIER, "Expect enum name.");
 
-        consume(EQUAL, "Expect '=' after enum declaration.");
-        consume(LEFT_PAREN, "Expect '('");
+        expect(EQUAL, "Expect '=' after enum declaration.");
+        expect(LEFT_PAREN, "Expect '('");
 
         List<Token> parameters = new ArrayList<>();
         do {
@@ -208,8 +209,8 @@ public class Parser {
             parameters.add(param);
         }
         while (match(COMMA));
-        consume(RIGHT_PAREN, "Expect ')'");
-        consume(SEMICOLON, "Expect ';'");
+        expect(RIGHT_PAREN, "Expect ')'");
+        expect(SEMICOLON, "Expect ';'");
 
         return new Stmt.Enum(name, parameters);
     }
@@ -245,13 +246,13 @@ public class Parser {
         if (!check(SEMICOLON)) {
             condition = expression();
         }
-        consume(SEMICOLON, "Expect ';' after loop condition");
+        expect(SEMICOLON, "Expect ';' after loop condition");
 
         Expr increment = null;
         if (!check(SEMICOLON)) {
             increment = expression();
         }
-        consume(DO, "Expect 'do' after for clauses.");
+        expect(DO, "Expect 'do' after for clauses.");
 
         try {
             loopDepth++;
@@ -278,13 +279,13 @@ public class Parser {
         if (loopDepth == 0) {
             error(previous(), "Must be inside a loop to use 'break'.");
         }
-        consume(SEMICOLON, "Expect ';' after 'break'.");
+        expect(SEMICOLON, "Expect ';' after 'break'.");
         return new Stmt.Break();
     }
 
     private Stmt ifStatement() {
         var condition = expression();
-        consume(THEN, "Expect 'then' after if condition.");
+        expect(THEN, "Expect 'then' after if condition.");
 
         var thenBranch = statement();
         Stmt elseBranch = null;
@@ -304,16 +305,16 @@ public class Parser {
 
         Map<String, Stmt.Except> exceptMap = new HashMap<>();
 
-        consume(EXCEPT, "Expect 'except' after try block.");
+        expect(EXCEPT, "Expect 'except' after try block.");
         while (check(IDENTIFIER, "on")) {
-            consume(IDENTIFIER, "Expected 'on'");
+            expect(IDENTIFIER, "Expected 'on'");
 
             var variable = consume(IDENTIFIER, "Expected variable name.");
             String type = null;
             if (match(COLON)) {
                 type = consume(IDENTIFIER, "Expected type.").lexeme;
             }
-            consume(DO, "Expected 'do'.");
+            expect(DO, "Expected 'do'.");
             var stmt = statement();
             exceptMap.put(type, new Stmt.Except(variable.lexeme, stmt));
         }
@@ -324,13 +325,13 @@ public class Parser {
         }
         var exceptBlock = new Stmt.Block(exceptStmts);
         exceptMap.put("default", new Stmt.Except("Any", exceptBlock));
-        consume(END, "Expect 'end' after except block.");
+        expect(END, "Expect 'end' after except block.");
         return new Stmt.Try(tryBlock, exceptMap);
     }
 
     private Stmt caseStatement() {
         var left = expression();
-        consume(OF, "Expect 'of' after case condition.");
+        expect(OF, "Expect 'of' after case condition.");
         Stmt.If top = null;
         Stmt.If current = null;
 
@@ -344,7 +345,7 @@ public class Parser {
                 condition = new Expr.Logical(condition, new Token(OR, null, null, previous().line, previous().offset, previous().fileName), additional);
             }
 
-            consume(COLON, "Expect ':' after condition.");
+            expect(COLON, "Expect ':' after condition.");
 
              var stmt = statement();
 
@@ -359,9 +360,9 @@ public class Parser {
         }
         while (!match(ELSE, END));
 
-        if (previous().type == ELSE) {
+        if (tokens.type(this.current - 1) == ELSE) {
             current.elseBranch = statement();
-            consume(END, "Expected 'end'.");
+            expect(END, "Expected 'end'.");
         }
         return top;
     }
@@ -369,7 +370,7 @@ public class Parser {
     private Stmt printStatement() {
         Expr value = expression();
 
-        consume(SEMICOLON, "Expect ';' after value.");
+        expect(SEMICOLON, "Expect ';' after value.");
 
         return new Stmt.Print(value);
     }
@@ -381,7 +382,7 @@ public class Parser {
             value = expression();
         }
 
-        consume(SEMICOLON, "Expect ';' after exit value.");
+        expect(SEMICOLON, "Expect ';' after exit value.");
         return new Stmt.Return(keyword, value);
     }
 
@@ -392,7 +393,7 @@ public class Parser {
             value = expression();
         }
 
-        consume(SEMICOLON, "Expect ';' after exit value.");
+        expect(SEMICOLON, "Expect ';' after exit value.");
         return new Stmt.Raise(keyword, value);
     }
 
@@ -403,7 +404,7 @@ public class Parser {
         if (match(COLON)) {
             var token = consume(IDENTIFIER, "Expected type.");
             type = token.lexeme;
-            if ("list".equalsIgnoreCase(type)) {
+            if (isCollection(type)) {
                 if (match(OF)) {
                     generic = consume(IDENTIFIER, "Expect generic type.").lexeme;
                 }
@@ -415,14 +416,20 @@ public class Parser {
             initializer = expression();
         }
 
-        consume(SEMICOLON, "Expect ';' after variable declaration.");
+        expect(SEMICOLON, "Expect ';' after variable declaration.");
 
         return new Stmt.Var(name, type, generic, initializer);
     }
 
+    // Types that can be declared with an element type, as in 'List of Integer'.
+    //
+    private boolean isCollection(String type) {
+        return "list".equalsIgnoreCase(type) || "stack".equalsIgnoreCase(type) || "array".equalsIgnoreCase(type);
+    }
+
     private Stmt whileStatement() {
         var condition = expression();
-        consume(DO, "Expect 'do' after condition.");
+        expect(DO, "Expect 'do' after condition.");
 
         try {
             loopDepth++;
@@ -438,7 +445,7 @@ public class Parser {
     private Stmt expressionStatement() {
         var value = expression();
 
-        consume(SEMICOLON, "Expect ';' after value.");
+        expect(SEMICOLON, "Expect ';' after value.");
 
         return new Stmt.Expression(value);
     }
@@ -465,7 +472,7 @@ public class Parser {
                }
                while (match(COMMA));
            }
-           consume(RIGHT_PAREN, "Expect ') after parameters.");
+           expect(RIGHT_PAREN, "Expect ') after parameters.");
        }
 
        var returnType = "Any";
@@ -477,7 +484,7 @@ public class Parser {
            returnType = token.lexeme;
        }
 
-       consume(SEMICOLON, "Expect ';'");
+       expect(SEMICOLON, "Expect ';'");
        var body = new ArrayList<Stmt>();
 
        while (isDeclarationSection()) {
@@ -490,7 +497,7 @@ public class Parser {
                body.addAll(variableSection());
            }
        }
-       consume(BEGIN, "Expect 'begin' before " + kind + " body.");
+       expect(BEGIN, "Expect 'begin' before " + kind + " body.");
        body.addAll(block());
 
        return new Stmt.Function(name, type, returnType, parameters, parameterTypes, body);
@@ -520,7 +527,7 @@ public class Parser {
             if (match(COLON)) {
                 var token = consume(IDENTIFIER, "Expected type.");
                 type = token.lexeme;
-                if ("list".equalsIgnoreCase(type)) {
+                if (isCollection(type)) {
                     if (match(OF)) {
                         generic = consume(IDENTIFIER, "Expect generic type.").lexeme;
                     }
@@ -531,7 +538,7 @@ public class Parser {
             if (match(ASSIGN)) {
                 initializer = expression();
             }
-            consume(SEMICOLON, "Expect ';' after variable declaration.");
+            expect(SEMICOLON, "Expect ';' after variable declaration.");
 
             for (var name : names) {
                 stmts.add(new Stmt.Var(name, type, generic, initializer));
@@ -548,7 +555,7 @@ public class Parser {
            statements.add(declaration());
        }
 
-       consume(END, "Expect 'end' after block.");
+       expect(END, "Expect 'end' after block.");
        return statements;
     }
 
@@ -685,7 +692,7 @@ public class Parser {
             }
             else if (match(LEFT_BRACKET)) {
                 var subscript = expression();
-                consume(RIGHT_BRACKET, "Expect ']' after subscript.");
+                expect(RIGHT_BRACKET, "Expect ']' after subscript.");
 
                 expr = new Expr.Subscript(previous(), expr, subscript);
             }
@@ -713,7 +720,7 @@ public class Parser {
 
         if (match(SUPER)) {
            Token keyword = previous();
-           consume(DOT, "Expect '.' after 'super'.");
+           expect(DOT, "Expect '.' after 'super'.");
            Token method = consume(IDENTIFIER, "Expect superclass method name");
 
            return new Expr.Super(keyword, method);
@@ -729,19 +736,19 @@ public class Parser {
             var map = new HashMap<Expr, Expr>();
             do {
                 var key = expression();
-                consume(TokenType.COLON, "Expect ':' after key.");
+                expect(TokenType.COLON, "Expect ':' after key.");
                 var value = expression();
                 map.put(key, value);
             }
             while (match(COMMA));
-            consume(RIGHT_BRACKET, "Expect ']' after map.");
+            expect(RIGHT_BRACKET, "Expect ']' after map.");
 
             return new Expr.Map(map);
         }
 
         if (match(LEFT_PAREN)) {
             Expr expr = expression();
-            consume(RIGHT_PAREN, "Expect ')' after expression.");
+            expect(RIGHT_PAREN, "Expect ')' after expression.");
             return new Expr.Grouping(expr);
         }
         throw error(peek(), "Expect expression.");
@@ -758,11 +765,26 @@ public class Parser {
     }
 
     private Token consume(TokenType type, String message) {
-        if (check(type)) return advance();
+        expect(type, message);
+        return previous();
+    }
 
+    // Consumes a token that isn't kept, so it never has to be made.
+    //
+    private void expect(TokenType type, String message) {
+        if (check(type)) {
+            advance();
+            return;
+        }
         throw error(previous(), message);
     }
 
+    // Errors found so far.
+    //
+    List<ParseError> errors() {
+        return errors;
+    }
+
     private ParseError error(Token token, String message) {
         Pascal.error(token, message);
         var error = new ParseError(token, message);
@@ -774,9 +796,9 @@ public class Parser {
     private void synchronize() {
        advance();
        while (!isAtEnd()) {
-           if (previous().type == SEMICOLON) return;
+           if (tokens.type(current - 1) == SEMICOLON) return;
 
-           switch (peek().type) {
+           switch (tokens.type(current)) {
                case CLASS:
                case FOR:
                case FUNCTION:
@@ -793,29 +815,28 @@ public class Parser {
 
     private boolean check(TokenType type) {
         if (isAtEnd()) return false;
-        return peek().type == type;
+        return tokens.type(current) == type;
     }
 
     private boolean check(TokenType type, String lexeme) {
         if (isAtEnd()) return false;
-        return peek().type == type && lexeme.equalsIgnoreCase(peek().lexeme);
+        return tokens.type(current) == type && tokens.isLexeme(current, lexeme);
     }
 
     private boolean checkNext(TokenType type) {
         if (isAtEnd()) return false;
-        var nextToken = tokens.get(current + 1);
-        if (nextToken.type == EOF) return false;
+        var nextType = tokens.type(current + 1);
+        if (nextType == EOF) return false;
 
-        return nextToken.type == type;
+        return nextType == type;
     }
 
-    private Token advance() {
+    private void advance() {
         if (!isAtEnd()) current++;
-        return previous();
     }
 
     private boolean isAtEnd() {
-        return peek().type == EOF;
+        return tokens.type(current) == EOF;
     }
 
     private Token peek() {
@@ -1,79 +1,191 @@
 package com.craftinginterpreters.pascal;
 
+import com.craftinginterpreters.pascal.vm.Program;
+import com.craftinginterpreters.pascal.vm.VM;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.IOException;
 import java.io.InputStreamReader;
-import java.nio.charset.Charset;
 import java.nio.file.Files;
 import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.List;
 
 
 public class Pascal {
-    public static boolean hadError = false;
-    public static boolean hadRuntimeError = false;
-    public static String lastError;
+    private static final String BYTECODE_EXTENSION = ".pbc";
 
-    private static final Interpreter interpreter = new Interpreter();
+    // Where parsed units are kept between runs with '--cache', under the user's home directory.
+    private static final String UNIT_CACHE = ".jpascal/units";
 
     public static void main(String[] args) throws IOException {
-        if (args.length > 1) {
-            System.out.println("Usage: jpascal [script]");
+        var context = Context.current();
+        List<String> files = new ArrayList<>();
+        var compile = false;
+        var cache = false;
+        for (var arg : args) {
+            if (arg.equals("--engine=vm")) {
+                context.useVm = true;
+            }
+            else if (arg.startsWith("--engine=")) {
+                context.interpreter = engine(arg.substring("--engine=".length()));
+                if (context.interpreter == null) {
+                    System.out.println("Unknown engine: " + arg);
+                    return;
+                }
+            }
+            else if (arg.equals("--compile")) {
+                compile = true;
+            }
+            else if (arg.equals("--cache")) {
+                cache = true;
+            }
+            else {
+                files.add(arg);
+            }
+        }
+
+        if (files.size() > 1 || (compile && files.isEmpty())) {
+            System.out.println("Usage: jpascal [--engine=tree|closure|vm] [--compile] [--cache] [script]");
+            return;
+        }
+        if (cache) {
+            Parser.cacheUnits(Paths.get(System.getProperty("user.home"), UNIT_CACHE));
+        }
+
+        if (files.size() == 1 && files.get(0).endsWith(BYTECODE_EXTENSION)) {
+            runBytecode(files.get(0));
         }
-        else if (args.length == 1) {
-            runFile(args[0]);
+        else if (files.size() == 1) {
+            if (compile) {
+                context.bytecodeFile = files.get(0).replaceFirst("\\.pas$", "") + BYTECODE_EXTENSION;
+            }
+            var status = context.runFile(files.get(0));
+            if (status != 0) System.exit(status);
         }
         else {
             runPrompt();
         }
     }
 
-    private static void runFile(String path) throws IOException {
+    // Picks the execution engine.  'tree' walks the syntax tree with visitors, 'closure' compiles it to closures
+    // first.
+    //
+    private static Interpreter engine(String name) {
+        switch (name) {
+            case "tree": return new Interpreter();
+            case "closure": return new ClosureInterpreter();
+        }
+        return null;
+    }
+
+    // Builds and runs a program file in the current context.
+    //
+    static void runFile(String path) throws IOException {
+        var context = Context.current();
         var fileName = Console.ANSI_CYAN + path + Console.ANSI_RESET;
         Console.header(path);
         Console.info("Building...");
         Console.info("");
         Console.success(path);
-        var bytes = Files.readAllBytes(Paths.get(path));
-        run(new String(bytes, Charset.defaultCharset()));
+        run(Scanner.load(Paths.get(path)));
+        context.sourceCode.clear();
+    }
+
+    // Runs a program compiled with '--compile', on the VM.
+    //
+    private static void runBytecode(String path) throws IOException {
+        var context = Context.current();
+        Console.header(path);
+
+        Program program;
+        try (var in = new DataInputStream(new BufferedInputStream(Files.newInputStream(Paths.get(path))))) {
+            program = Program.read(in);
+        }
+        new VM(new ErrorHandlerImpl()).runTests(program);
 
-        if (hadError) System.exit(65);
-        if (hadRuntimeError) System.exit(70);
+        if (context.hadRuntimeError) System.exit(70);
     }
 
+    // Runs lines as they're typed.  The session keeps one Resolver and TypeChecker, so each line only has its own
+    // declarations resolved and checked against what earlier lines declared, and only its own statements are run.
+    // Lines run on the tree or closure interpreter, since the VM compiles a program as a whole.
+    //
     private static void runPrompt() throws IOException {
+        var context = Context.current();
         var input = new InputStreamReader(System.in);
         var reader = new BufferedReader(input);
 
+        var resolver = new Resolver(context.interpreter);
+        var typeChecker = new TypeChecker();
         for (;;) {
             System.out.print("> ");
             var line = reader.readLine();
             if (line == null) {
                 break;
             }
-            run(line);
+            context.hadError = false;
+
+            var statements = build(line);
+            if (statements == null) continue;
+
+            resolver.resolve(statements);
+            try {
+                typeChecker.resolveAdded(statements);
+            }
+            catch (RuntimeError e) {
+                Console.error(e);
+                context.hadError = true;
+            }
+            if (context.hadError) continue;
+
+            try {
+                context.interpreter.interpret(statements);
+            }
+            catch (Return | Interpreter.BreakException e) {
+                // An 'exit' or 'break' typed at the prompt just ends the line.
+            }
+            catch (RuntimeException e) {
+                // Anything else ends the line too, rather than the session.
+                Console.info(Console.ANSI_RED + e.getMessage() + Console.ANSI_RESET);
+                context.hadRuntimeError = true;
+            }
         }
     }
 
-    private static void run(String source) {
+    // Scans and parses a source, reporting whether it built.  Returns null if it didn't.
+    //
+    private static List<Stmt> build(CharSequence source) {
+        var context = Context.current();
         var scanner = new Scanner("REPL", source);
         var tokens = scanner.scanTokens();
 
         var parser = new Parser(tokens);
         List<Stmt> statements = parser.parseWithError();
 
-        if (hadError) {
+        if (context.hadError) {
             Console.info(Console.BAR);
             Console.info(Console.ANSI_RED + "BUILD FAILED" + Console.ANSI_RESET);
             Console.info(Console.BAR);
-            return;
+            return null;
         }
 
         Console.info(Console.BAR);
         Console.info(Console.ANSI_GREEN + "BUILD SUCCESS" + Console.ANSI_RESET);
         Console.info(Console.BAR);
+        return statements;
+    }
+
+    private static void run(CharSequence source) {
+        var context = Context.current();
+        var statements = build(source);
+        if (statements == null) return;
 
-        var resolver = new Resolver(interpreter);
+        var resolver = new Resolver(context.interpreter);
         resolver.resolve(statements);
 
         try {
@@ -82,21 +194,53 @@ public class Pascal {
         }
         catch (RuntimeError e) {
             Console.error(e);
-            hadError = true;
+            context.hadError = true;
         }
         // Stop if there was a resolution error.
-        if (hadError) return;
-        interpreter.runTests(statements);
+        if (context.hadError) return;
+
+        if (context.useVm || context.bytecodeFile != null) {
+            runVm(statements);
+            return;
+        }
+        context.interpreter.runTests(statements);
         //interpreter.interpret(statements);
     }
 
+    private static void runVm(List<Stmt> statements) {
+        var context = Context.current();
+        Program program;
+        try {
+            program = new BytecodeCompiler().compileTests(statements);
+        }
+        catch (RuntimeError e) {
+            Console.error(e);
+            context.hadError = true;
+            return;
+        }
+
+        if (context.bytecodeFile == null) {
+            new VM(new ErrorHandlerImpl()).runTests(program);
+            return;
+        }
+        try (var out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(Paths.get(context.bytecodeFile))))) {
+            program.write(out);
+            Console.info("Wrote " + context.bytecodeFile);
+        }
+        catch (IOException e) {
+            Console.info(Console.ANSI_RED + "Can't write " + context.bytecodeFile + ": " + e.getMessage() + Console.ANSI_RESET);
+            context.hadError = true;
+        }
+    }
+
     static void error(int line, String message) {
         report(line, "", message);
     }
 
     private static void report(int line, String where, String message) {
-        lastError = "[line " + line + "] Error" + where + ": " + message;
-        hadError = true;
+        var context = Context.current();
+        context.lastError = "[line " + line + "] Error" + where + ": " + message;
+        context.hadError = true;
     }
 
     static void error(Token token, String message) {
@@ -109,6 +253,6 @@ public class Pascal {
     }
 
     static void runtimeError(RuntimeError error) {
-        hadRuntimeError = true;
+        Context.current().hadRuntimeError = true;
     }
 }
@@ -1,5 +1,7 @@
 package com.craftinginterpreters.pascal;
 
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -11,6 +13,13 @@ public class PascalClass implements PascalCallable {
     public String name;
     public final Map<String, PascalFunction> methods;
 
+    // Starting shape of instances.
+    final Shape shape;
+
+    // Every method the class responds to, including inherited ones, so a lookup doesn't walk the superclasses.
+    private final Map<String, PascalFunction> vtable;
+    private final PascalFunction initializer;
+
     /**
      * Constructor.
      *
@@ -19,9 +28,47 @@ public class PascalClass implements PascalCallable {
      * @param methods list of methods in class.
      */
     public PascalClass(String name, PascalClass superclass, Map<String, PascalFunction> methods) {
+        this(name, superclass, methods, new ArrayList<>());
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param name the name of the class.
+     * @param superclass superclass.  null if none.
+     * @param methods list of methods in class.
+     * @param fields names of the fields declared in the class.
+     */
+    public PascalClass(String name, PascalClass superclass, Map<String, PascalFunction> methods, List<String> fields) {
         this.superclass = superclass;
         this.name = name;
         this.methods = methods;
+        this.shape = Shape.of(superclass, fields);
+
+        Map<String, PascalFunction> vtable = new HashMap<>();
+        if (superclass != null) {
+            vtable.putAll(superclass.vtable);
+        }
+        vtable.putAll(methods);
+
+        this.vtable = Map.copyOf(vtable);
+        this.initializer = this.vtable.get("Init");
+    }
+
+    /**
+     * Gets the names of the fields declared in a class.
+     *
+     * @param stmt the class.
+     * @return the field names.
+     */
+    static List<String> fields(Stmt.Class stmt) {
+        List<String> fields = new ArrayList<>();
+        for (var initializer : stmt.initializers) {
+            if (initializer instanceof Expr.ClassVar field) {
+                fields.add(field.name.lexeme);
+            }
+        }
+        return fields;
     }
 
     /**
@@ -31,21 +78,30 @@ public class PascalClass implements PascalCallable {
      * @return the method, or null if none found.
      */
     protected PascalFunction findMethod(String name) {
-        if (methods.containsKey(name)) {
-            return methods.get(name);
-        }
-        if (superclass != null) {
-            return superclass.findMethod(name);
-        }
-        return null;
+        return vtable.get(name);
     }
 
     protected PascalFunction findMethod(String name, List<String> types) {
-        if (methods.containsKey(name)) {
-            return methods.get(name).match(types);
-        }
-        if (superclass != null) {
-            return superclass.findMethod(name, types);
+        var method = vtable.get(name);
+        if (method == null) return null;
+
+        return method.match(types);
+    }
+
+    /**
+     * Finds the overload with the given declaration, among the methods found by name.
+     *
+     * @param name the name of the method.
+     * @param declaration the declaration of the overload.
+     * @return the method, or null if the overload isn't one of them.
+     */
+    protected PascalFunction findMethod(String name, Stmt.Function declaration) {
+        var method = findMethod(name);
+        if (method == null) return null;
+
+        if (method.declaration == declaration) return method;
+        for (var overload : method.overloads) {
+            if (overload.declaration == declaration) return overload;
         }
         return null;
     }
@@ -62,7 +118,6 @@ public class PascalClass implements PascalCallable {
      */
     @Override
     public int arity() {
-        var initializer = findMethod("Init");
         if (initializer == null) return 0;
 
         return initializer.arity();
@@ -78,9 +133,8 @@ public class PascalClass implements PascalCallable {
     @Override
     public Object call(Interpreter interpreter, List<Object> arguments) {
         var instance = new PascalInstance(this);
-        var initializer = findMethod("Init");
         if (initializer != null) {
-            initializer.bind(instance).call(interpreter, arguments);
+            initializer.invoke(interpreter, instance, arguments);
         }
         return instance;
     }
@@ -11,6 +11,19 @@ public class PascalEnum {
         this.value = value;
     }
 
+    // Values of the same enum with the same ordinal are equal, so they can be compared and used as keys wherever
+    // they were created.
+    //
+    @Override
+    public boolean equals(Object other) {
+        return other instanceof PascalEnum e && value == e.value && enumName.equals(e.enumName);
+    }
+
+    @Override
+    public int hashCode() {
+        return enumName.hashCode() * 31 + value;
+    }
+
     public String toString() {
         return name;
     }
@@ -7,9 +7,18 @@ import java.util.List;
  * Function in Pascal.
  */
 public class PascalFunction implements PascalCallable {
+    static final String[] SUPER_LAYOUT = { "super" };
+
     public final Stmt.Function declaration;
     private final Environment closure;
     private final boolean isInitializer;
+    private final ClosureCompiler.StmtNode body;
+
+    // Types of the program the function belongs to, for matching arguments against subclasses.
+    private final TypeLookup lookup;
+
+    // The instance a method is bound to, or null.  It goes in the first slot of the method's frame.
+    private final PascalInstance receiver;
     public final List<PascalFunction> overloads = new ArrayList<>();
 
     /**
@@ -18,11 +27,34 @@ public class PascalFunction implements PascalCallable {
      * @param declaration the top statement of function.
      * @param closure the function environment.
      * @param isInitializer is it an initializer?
+     * @param lookup types of the program.
      */
-    public PascalFunction(Stmt.Function declaration, Environment closure, boolean isInitializer) {
+    public PascalFunction(Stmt.Function declaration, Environment closure, boolean isInitializer, TypeLookup lookup) {
+        this(declaration, closure, isInitializer, null, lookup);
+    }
+
+    /**
+     * Constructor for a function whose body has already been compiled by the ClosureCompiler.
+     *
+     * @param declaration the top statement of function.
+     * @param closure the function environment.
+     * @param isInitializer is it an initializer?
+     * @param body the compiled body, or null to walk the declaration.
+     * @param lookup types of the program.
+     */
+    PascalFunction(Stmt.Function declaration, Environment closure, boolean isInitializer, ClosureCompiler.StmtNode body,
+                   TypeLookup lookup) {
+        this(declaration, closure, isInitializer, body, lookup, null);
+    }
+
+    private PascalFunction(Stmt.Function declaration, Environment closure, boolean isInitializer,
+                           ClosureCompiler.StmtNode body, TypeLookup lookup, PascalInstance receiver) {
         this.declaration = declaration;
         this.closure = closure;
         this.isInitializer = isInitializer;
+        this.body = body;
+        this.lookup = lookup;
+        this.receiver = receiver;
     }
 
     public String getSignature() {
@@ -34,23 +66,11 @@ public class PascalFunction implements PascalCallable {
     }
 
     public PascalInstance getParent() {
-        Object instance = null;
-        try {
-            instance = closure.get(new Token(TokenType.IDENTIFIER, "this", null, 0, 0, null));
-        }
-        catch (RuntimeError e) {}
-
-        if (instance instanceof PascalInstance e) {
-            return e;
-        }
-        return null;
+        return receiver;
     }
 
     protected PascalFunction bind(PascalInstance instance) {
-        var environment = new Environment(closure);
-        environment.define("this", instance);
-
-        return new PascalFunction(declaration, environment, isInitializer);
+        return new PascalFunction(declaration, closure, isInitializer, body, lookup, instance);
     }
 
     /**
@@ -64,6 +84,18 @@ public class PascalFunction implements PascalCallable {
     }
 
     public boolean isMatch(List<String> args) {
+        return isMatch(declaration, args, lookup);
+    }
+
+    /**
+     * Checks whether a declaration's parameters accept arguments of the given types.
+     *
+     * @param declaration the function declaration.
+     * @param args type names of the arguments.
+     * @param lookup types of the program.
+     * @return true if it matches.
+     */
+    static boolean isMatch(Stmt.Function declaration, List<String> args, TypeLookup lookup) {
         if (args.size() != declaration.types.size()) {
             return false;
         }
@@ -73,21 +105,21 @@ public class PascalFunction implements PascalCallable {
             if ("any".equalsIgnoreCase(token.lexeme)) continue;
 
             if (!token.lexeme.equalsIgnoreCase(args.get(i))) {
-                return isAssignable(token.lexeme ,args.get(i));
+                return isAssignable(lookup, token.lexeme ,args.get(i));
             }
             i++;
         }
         return true;
     }
 
-    private boolean isAssignable(String c1, String c2) {
+    private static boolean isAssignable(TypeLookup lookup, String c1, String c2) {
         // Yeah, I'm not proud of this logic :D
-        var parent = TypeChecker.lookup.parents.getType(c2);
+        var parent = lookup.parents.getType(c2);
         while (parent != null) {
             if (c1.equalsIgnoreCase(parent)) {
                 return true;
             }
-            parent = TypeChecker.lookup.parents.getType(parent);
+            parent = lookup.parents.getType(parent);
         }
         return false;
     }
@@ -114,22 +146,50 @@ public class PascalFunction implements PascalCallable {
      */
     @Override
     public Object call(Interpreter interpreter, List<Object> arguments) {
-        var environment = new Environment(closure);
+        return execute(interpreter, receiver, arguments);
+    }
+
+    /**
+     * Calls the function as a method of an instance, without binding it first.
+     *
+     * @param interpreter the interpreter to run the function.
+     * @param receiver the instance the method is called on.
+     * @param arguments arguments to function.  should match parameters.
+     * @return result of call.
+     */
+    Object invoke(Interpreter interpreter, PascalInstance receiver, List<Object> arguments) {
+        return execute(interpreter, receiver, arguments);
+    }
+
+    private Object execute(Interpreter interpreter, PascalInstance receiver, List<Object> arguments) {
+        var environment = new Environment(closure, declaration.locals);
+        if (receiver != null) {
+            environment.define("this", receiver);
+        }
 
         for (int i = 0; i < declaration.params.size(); i++) {
             environment.define(declaration.params.get(i).lexeme, arguments.get(i));
         }
 
-        try {
-            interpreter.executeBlock(declaration.body, environment);
+        Interpreter.Completion completion;
+        if (body != null) {
+            completion = body.execute(environment);
         }
-        catch (Return returnValue) {
-            if (isInitializer) return closure.getAt(0, "this");
-            return returnValue.value;
+        else {
+            completion = interpreter.executeBlock(declaration.body, environment);
         }
 
-        if (isInitializer) return closure.getAt(0, "this");
-        return null;
+        if (completion == Interpreter.Completion.BREAK) {
+            throw new Interpreter.BreakException();
+        }
+        Object result = null;
+        if (completion == Interpreter.Completion.RETURN) {
+            result = interpreter.returnValue;
+            interpreter.returnValue = null;
+        }
+
+        if (isInitializer) return receiver;
+        return result;
     }
 
     @Override
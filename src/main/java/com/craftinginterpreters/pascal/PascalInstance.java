@@ -1,31 +1,72 @@
 package com.craftinginterpreters.pascal;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.util.Arrays;
+import java.util.List;
 
 /**
- * Instance for Pascal.
+ * Instance for Pascal.  Fields live in an array of slots laid out by the instance's Shape, which starts as the
+ * class's declared fields.  A declared field that hasn't been set yet holds UNSET, and reads as if it didn't exist.
  */
 public class PascalInstance {
-    public final Map<String, Object> fields = new HashMap<>();
+    private static final Object UNSET = new Object();
+    private static final Object[] NO_VALUES = new Object[0];
 
     public final PascalClass klass;
 
+    private Shape shape;
+    private Object[] values;
+
     /**
-     * Constructor.
+     * Constructor.  The natives have no class, and no fields, since they override get() and set() with their own
+     * members; they get no shape either.
      *
      * @param klass the instance's class.
      */
     public PascalInstance(PascalClass klass) {
         this.klass = klass;
+        if (klass == null) {
+            this.values = NO_VALUES;
+            return;
+        }
+        this.shape = klass.shape;
+        this.values = new Object[Math.max(shape.size(), 2)];
+        Arrays.fill(values, 0, shape.size(), UNSET);
     }
 
-    protected Object get(Token name) {
+    public Object get(Token name) {
+        return lookup(name, null);
+    }
+
+    /**
+     * Gets a field or method, through a cache for the access.
+     *
+     * @param name the name.
+     * @param cache the cache.
+     * @return the value.
+     */
+    Object get(Token name, FieldCache cache) {
+        // The natives have no class, and override get() and set() with their own members.
+        //
+        if (klass == null) return get(name);
+
+        if (cache.shape == shape) {
+            var value = values[cache.index];
+            if (value != UNSET) return value;
+        }
+        return lookup(name, cache);
+    }
+
+    private Object lookup(Token name, FieldCache cache) {
         if (name.lexeme.equalsIgnoreCase("classname")) {
             return klass.name;
         }
-        if (fields.containsKey(name.lexeme)) {
-            return fields.get(name.lexeme);
+        var index = shape.indexOf(name.lexeme);
+        if (index >= 0 && values[index] != UNSET) {
+            if (cache != null) {
+                cache.shape = shape;
+                cache.index = index;
+            }
+            return values[index];
         }
         var method = klass.findMethod(name.lexeme);
         if (method != null) return method.bind(this);
@@ -33,12 +74,83 @@ public class PascalInstance {
         throw new RuntimeError(name, "Undefined property '" + name.lexeme + "'.");
     }
 
-    protected void set(Token name, Object value) {
-        fields.put(name.lexeme, value);
+    /**
+     * Finds the method a get of the name would bind, if it would bind one.
+     *
+     * @param name the name.
+     * @return the unbound method, or null if the name is a field, or isn't a method.
+     */
+    PascalFunction findMethod(String name) {
+        if (klass == null || name.equalsIgnoreCase("classname")) return null;
+
+        var index = shape.indexOf(name);
+        if (index >= 0 && values[index] != UNSET) return null;
+
+        return klass.findMethod(name);
+    }
+
+    /**
+     * Runs a built-in collection operation directly, without looking the member up by name.  Overridden by the
+     * native collections.
+     *
+     * @param intrinsic the operation.
+     * @param arguments the arguments.  As many as the operation takes.
+     * @return the result, or Intrinsic.UNSUPPORTED if the instance doesn't have the operation.
+     */
+    public Object intrinsic(Intrinsic intrinsic, List<Object> arguments) {
+        return Intrinsic.UNSUPPORTED;
+    }
+
+    public void set(Token name, Object value) {
+        assign(name, value, null);
+    }
+
+    /**
+     * Sets a field, through a cache for the access.
+     *
+     * @param name the name.
+     * @param value the value.
+     * @param cache the cache.
+     */
+    void set(Token name, Object value, FieldCache cache) {
+        if (klass == null) {
+            set(name, value);
+        }
+        else if (cache.shape == shape) {
+            store(cache.index, cache.next, value);
+        }
+        else {
+            assign(name, value, cache);
+        }
+    }
+
+    private void assign(Token name, Object value, FieldCache cache) {
+        var index = shape.indexOf(name.lexeme);
+        var next = shape;
+        if (index < 0) {
+            index = shape.size();
+            next = shape.with(name.lexeme);
+        }
+        if (cache != null) {
+            cache.shape = shape;
+            cache.index = index;
+            cache.next = next;
+        }
+        store(index, next, value);
+    }
+
+    private void store(int index, Shape next, Object value) {
+        if (next != shape) {
+            if (index >= values.length) {
+                values = Arrays.copyOf(values, values.length * 2);
+            }
+            shape = next;
+        }
+        values[index] = value;
     }
 
     @Override
     public String toString() {
         return klass.name + " instance";
     }
-}
\ No newline at end of file
+}
@@ -1,9 +1,12 @@
 //> Resolving and Binding resolver
 package com.craftinginterpreters.pascal;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.Stack;
 
 class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
@@ -11,10 +14,44 @@ class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
 
     private final Stack<Map<String, Boolean>> scopes = new Stack<>();
 
+    // Names declared in each scope, in slot order.
+    private final Stack<List<String>> slots = new Stack<>();
+
+    // Declared types of the names in each scope.
+    private final Stack<Map<String, String>> types = new Stack<>();
+
     private FunctionType currentFunction = FunctionType.NONE;
 
     private ClassType currentClass = ClassType.NONE;
 
+    // Fields and methods of each class resolved so far, including inherited ones.
+    private final Map<String, Set<String>> members = new HashMap<>();
+
+    // Members of the class being resolved, and the bare names in its methods that weren't locals.  Those that turn
+    // out to be members once the whole class has been seen are accessed through 'this'.
+    private Set<String> currentMembers = new HashSet<>();
+    private List<Expr> implicitNames = new ArrayList<>();
+    private List<Expr.This> implicitThis = new ArrayList<>();
+
+    // Number of scopes enclosing the current function's parameters.  Scopes below it belong to enclosing functions.
+    private int functionScope = 0;
+
+    // Names in each scope referenced from a function nested inside it, and the loops waiting until the scope ends to
+    // learn whether the strings they append to are among them.
+    private final Stack<Set<String>> captured = new Stack<>();
+    private final Stack<List<Accumulation>> accumulations = new Stack<>();
+
+    // While in a loop, the locals resolved and the statements of the form 's := s + ...'.
+    private int loopDepth = 0;
+    private final List<Reference> references = new ArrayList<>();
+    private final List<Append> appends = new ArrayList<>();
+
+    private record Reference(Map<String, Boolean> scope, String name) {}
+
+    private record Append(Map<String, Boolean> scope, Expr.Assign assign, List<Expr> operands) {}
+
+    private record Accumulation(Stmt.While loop, Expr.Variable variable, List<Append> appends) {}
+
     Resolver(Interpreter interpreter) {
         this.interpreter = interpreter;
     }
@@ -43,7 +80,7 @@ class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
     public Void visitBlockStmt(Stmt.Block stmt) {
         beginScope();
         resolve(stmt.statements);
-        endScope();
+        stmt.locals = endScope();
         return null;
     }
 
@@ -61,6 +98,19 @@ class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
         ClassType enclosingClass = currentClass;
         currentClass = ClassType.CLASS;
 
+        var enclosingMembers = currentMembers;
+        var enclosingNames = implicitNames;
+        var enclosingThis = implicitThis;
+        currentMembers = new HashSet<>(PascalClass.fields(stmt));
+        implicitNames = new ArrayList<>();
+        implicitThis = new ArrayList<>();
+        if (stmt.superclass != null && members.containsKey(stmt.superclass.name.lexeme)) {
+            currentMembers.addAll(members.get(stmt.superclass.name.lexeme));
+        }
+        for (var method : stmt.methods) {
+            currentMembers.add(method.name.lexeme);
+        }
+
         declare(stmt.name);
         define(stmt.name);
 
@@ -74,11 +124,9 @@ class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
 
         if (stmt.superclass != null) {
            beginScope();
-           scopes.peek().put("super", true);
+           defineSynthetic("super");
         }
 
-        beginScope();
-        scopes.peek().put("this", true);
         for (Stmt.Function method : stmt.methods) {
             FunctionType declaration = FunctionType.METHOD;
             if (method.name.lexeme.equals("init")) {
@@ -87,10 +135,21 @@ class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
             resolveFunction(method, declaration);
         }
 
-        endScope();
-
         if (stmt.superclass != null) endScope();
 
+        for (int i = 0; i < implicitNames.size(); i++) {
+            var expr = implicitNames.get(i);
+            var name = expr instanceof Expr.Variable variable ? variable.name : ((Expr.Assign) expr).name;
+            if (currentMembers.contains(name.lexeme)) {
+                expr.self = implicitThis.get(i);
+                expr.memberCache = new FieldCache();
+            }
+        }
+        members.put(stmt.name.lexeme, currentMembers);
+
+        currentMembers = enclosingMembers;
+        implicitNames = enclosingNames;
+        implicitThis = enclosingThis;
         currentClass = enclosingClass;
         return null;
     }
@@ -98,6 +157,10 @@ class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
     @Override
     public Void visitExpressionStmt(Stmt.Expression stmt) {
         resolve(stmt.expression);
+
+        if (loopDepth > 0 && stmt.expression instanceof Expr.Assign assign) {
+            findAppend(assign);
+        }
         return null;
     }
 
@@ -122,9 +185,13 @@ class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
     public Void visitTryStmt(Stmt.Try stmt) {
         resolve(stmt.tryBlock);
 
+        // Each handler runs in its own scope, holding the exception.
         for (var except : stmt.exceptMap.values())
         {
+            beginScope();
+            defineSynthetic(except.name);
             resolve(except.stmt);
+            endScope();
         }
 
         return null;
@@ -160,6 +227,7 @@ class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
     @Override
     public Void visitVarStmt(Stmt.Var stmt) {
         declare(stmt.name);
+        declareType(stmt.name, stmt.type);
         if (stmt.initializer != null) {
             resolve(stmt.initializer);
         }
@@ -169,8 +237,19 @@ class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
 
     @Override
     public Void visitWhileStmt(Stmt.While stmt) {
+        int firstReference = references.size();
+        int firstAppend = appends.size();
+
+        loopDepth++;
         resolve(stmt.condition);
         resolve(stmt.body);
+        loopDepth--;
+
+        findAccumulations(stmt, firstReference, firstAppend);
+        if (loopDepth == 0) {
+            references.clear();
+            appends.clear();
+        }
         return null;
     }
 
@@ -197,6 +276,13 @@ class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
     public Void visitCallExpr(Expr.Call expr) {
         resolve(expr.callee);
 
+        if (expr.callee instanceof Expr.Get get) {
+            var intrinsic = Intrinsic.find(get.name.lexeme);
+            if (intrinsic != Intrinsic.LENGTH) {
+                expr.intrinsic = intrinsic;
+            }
+        }
+
         for (Expr argument : expr.arguments) {
             resolve(argument);
         }
@@ -207,6 +293,10 @@ class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
     @Override
     public Void visitGetExpr(Expr.Get expr) {
         resolve(expr.object);
+
+        if (Intrinsic.find(expr.name.lexeme) == Intrinsic.LENGTH) {
+            expr.intrinsic = Intrinsic.LENGTH;
+        }
         return null;
     }
 
@@ -255,6 +345,10 @@ class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
     public Void visitSetExpr(Expr.Set expr) {
         resolve(expr.value);
         resolve(expr.object);
+
+        if (expr.object instanceof Expr.This && currentClass != ClassType.NONE) {
+            currentMembers.add(expr.name.lexeme);
+        }
         return null;
     }
 
@@ -307,25 +401,48 @@ class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
             Stmt.Function function, FunctionType type) {
         FunctionType enclosingFunction = currentFunction;
         currentFunction = type;
+        int enclosingScope = functionScope;
+        functionScope = scopes.size();
 
         beginScope();
-        for (Token param : function.params) {
+
+        // A method's receiver is the first slot of its frame, ahead of the parameters.
+        if (type == FunctionType.METHOD || type == FunctionType.INITIALIZER) {
+            defineSynthetic("this");
+        }
+        for (int i = 0; i < function.params.size(); i++) {
+            var param = function.params.get(i);
             declare(param);
+            declareType(param, function.types.get(i).lexeme);
             define(param);
         }
         resolve(function.body);
-        endScope();
+        function.locals = endScope();
 
         currentFunction = enclosingFunction;
+        functionScope = enclosingScope;
 
     }
 
     private void beginScope() {
         scopes.push(new HashMap<>());
+        slots.push(new ArrayList<>());
+        types.push(new HashMap<>());
+        captured.push(new HashSet<>());
+        accumulations.push(new ArrayList<>());
     }
 
-    private void endScope() {
+    private String[] endScope() {
         scopes.pop();
+        types.pop();
+
+        var names = captured.pop();
+        for (var accumulation : accumulations.pop()) {
+            if (!names.contains(accumulation.variable().name.lexeme)) {
+                accumulate(accumulation);
+            }
+        }
+        return slots.pop().toArray(new String[0]);
     }
 
     private void declare(Token name) {
@@ -336,23 +453,128 @@ class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
         if (scope.containsKey(name.lexeme)) {
             Pascal.error(name, "Already a variable with this name in this scope.");
         }
-
+        else {
+            slots.peek().add(name.lexeme);
+        }
 
         scope.put(name.lexeme, false);
     }
 
+    private void declareType(Token name, String type) {
+        if (scopes.isEmpty()) return;
+        types.peek().put(name.lexeme, type);
+    }
+
     private void define(Token name) {
         if (scopes.isEmpty()) return;
         scopes.peek().put(name.lexeme, true);
     }
 
+    // Declares and defines a name the interpreter binds itself, such as 'this' or 'super'.
+    //
+    private void defineSynthetic(String name) {
+        scopes.peek().put(name, true);
+        slots.peek().add(name);
+    }
+
     private void resolveLocal(Expr expr, Token name) {
         for (int i = scopes.size() - 1; i >= 0; i--) {
             if (scopes.get(i).containsKey(name.lexeme)) {
-                interpreter.resolve(expr, scopes.size() - 1 - i);
+                interpreter.resolve(expr, scopes.size() - 1 - i, slots.get(i).indexOf(name.lexeme));
+                expr.localType = types.get(i).get(name.lexeme);
+
+                if (i < functionScope) {
+                    captured.get(i).add(name.lexeme);
+                }
+                if (loopDepth > 0) {
+                    references.add(new Reference(scopes.get(i), name.lexeme));
+                }
                 return;
             }
         }
+
+        // Not a local, so a global.  In a method it may instead be a member of 'this', which is only known once the
+        // class is resolved.
+        if (expr instanceof Expr.Variable || expr instanceof Expr.Assign) {
+            interpreter.resolveGlobal(expr, name);
+        }
+        if (currentClass != ClassType.NONE && currentFunction != FunctionType.NONE
+                && (expr instanceof Expr.Variable || expr instanceof Expr.Assign)) {
+            var self = new Expr.This(new Token(TokenType.THIS, "this", null, name.line, 0, name.fileName));
+            resolveLocal(self, self.keyword);
+
+            implicitNames.add(expr);
+            implicitThis.add(self);
+        }
+    }
+
+    // Notes an assignment to a local string of itself followed by other operands, such as 's := s + a + b'.
+    //
+    private void findAppend(Expr.Assign assign) {
+        if (assign.depth < 0 || assign.self != null || !"String".equalsIgnoreCase(assign.localType)) return;
+
+        var operands = new ArrayList<Expr>();
+        var value = assign.value;
+        while (value instanceof Expr.Binary binary && binary.operator.type == TokenType.PLUS) {
+            operands.add(0, binary.right);
+            value = binary.left;
+        }
+        if (operands.isEmpty() || !(value instanceof Expr.Variable variable)
+                || !variable.name.lexeme.equals(assign.name.lexeme)) return;
+
+        appends.add(new Append(scopes.get(scopes.size() - 1 - assign.depth), assign, operands));
+    }
+
+    // Finds the strings declared outside a loop that the loop only appends to.  Nothing else in the loop may read or
+    // assign them, so while the loop runs they can be held in a builder.  Whether a function declared elsewhere could
+    // read them is only known once the scope declaring them ends.
+    //
+    private void findAccumulations(Stmt.While loop, int firstReference, int firstAppend) {
+        // Scopes are told apart by identity, so the appends are grouped by hand.
+        var groups = new ArrayList<List<Append>>();
+        for (var append : appends.subList(firstAppend, appends.size())) {
+            var group = groups.stream().filter(g -> isSame(g.get(0), append.scope(), append.assign().name.lexeme))
+                    .findFirst().orElse(null);
+            if (group == null) {
+                group = new ArrayList<>();
+                groups.add(group);
+            }
+            group.add(append);
+        }
+
+        for (var group : groups) {
+            var first = group.get(0);
+            var scope = -1;
+            for (int i = 0; i < scopes.size(); i++) {
+                if (scopes.get(i) == first.scope()) scope = i;
+            }
+            if (scope < 0) continue;
+
+            // Each append references the string twice, once to read it and once to assign it.
+            var name = first.assign().name;
+            var count = references.subList(firstReference, references.size()).stream()
+                    .filter(reference -> reference.scope() == first.scope() && reference.name().equals(name.lexeme))
+                    .count();
+            if (count != group.size() * 2L) continue;
+
+            var variable = new Expr.Variable(name);
+            interpreter.resolve(variable, scopes.size() - 1 - scope, slots.get(scope).indexOf(name.lexeme));
+            accumulations.get(scope).add(new Accumulation(loop, variable, group));
+        }
+    }
+
+    private static boolean isSame(Append append, Map<String, Boolean> scope, String name) {
+        return append.scope() == scope && append.assign().name.lexeme.equals(name);
+    }
+
+    private void accumulate(Accumulation accumulation) {
+        var loop = accumulation.loop();
+        if (loop.accumulated == null) loop.accumulated = new ArrayList<>();
+        loop.accumulated.add(accumulation.variable());
+
+        for (var append : accumulation.appends()) {
+            append.assign().appended = append.operands();
+        }
     }
 
 }
\ No newline at end of file
@@ -8,4 +8,13 @@ public class RuntimeError extends RuntimeException {
         super(message);
         this.token = token;
     }
+
+    public RuntimeError(Token token, String message, Object value) {
+        this(token, message);
+        this.value = value;
+    }
+
+    public Object getValue() {
+        return value;
+    }
 }
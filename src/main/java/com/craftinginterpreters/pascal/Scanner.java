@@ -1,22 +1,28 @@
 package com.craftinginterpreters.pascal;
 
-import java.util.ArrayList;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Path;
+import java.util.Arrays;
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
 
 import static com.craftinginterpreters.pascal.TokenType.*;
 
 public class Scanner {
     private final String fileName;
-    private final String source;
-    private final List<Token> tokens = new ArrayList<>();
+    private final CharSequence source;
+    private final TokenBuffer tokens;
     private int start = 0;
     private int current = 0;
     private int line = 1;
 
     private int startOfLine = 0;
 
+    // Set if the source had an error, so callers can tell this source from others scanned at the same time.
+    private boolean hadError = false;
+
     private static final Map<String, TokenType> keywords;
     static {
         keywords = new HashMap<>();
@@ -64,22 +70,52 @@ public class Scanner {
         keywords.put("const", CONST);
     }
 
-    public Scanner(String fileName, String source) {
+    // The keywords again, placed by a hash of their lowercase letters that puts each in its own slot, so an
+    // identifier can be checked against the one keyword it could be without making a string of it.
+    private static final int KEYWORD_BITS = 7;
+    private static final String[] KEYWORD_NAMES = new String[1 << KEYWORD_BITS];
+    private static final TokenType[] KEYWORD_TYPES = new TokenType[1 << KEYWORD_BITS];
+    private static final int KEYWORD_SEED;
+    static {
+        var seed = 1;
+        while (!placeKeywords(seed)) seed += 2;
+        KEYWORD_SEED = seed;
+    }
+
+    public Scanner(String fileName, CharSequence source) {
         this.fileName = fileName;
         this.source = source;
+        this.tokens = new TokenBuffer(fileName, source);
     }
 
     public Scanner(String source) {
         this("test", source);
     }
 
-    List<Token> scanTokens() {
+    /**
+     * Loads a source file for scanning.  The file is memory-mapped and decoded straight into a buffer the scanner
+     * reads from, rather than being read into a byte array and copied into a string.
+     *
+     * @param path the file.
+     * @return the source.
+     * @throws IOException if the file can't be read.
+     */
+    public static CharSequence load(Path path) throws IOException {
+        try (var channel = FileChannel.open(path)) {
+            var bytes = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return Charset.defaultCharset().decode(bytes);
+        }
+    }
+
+    TokenBuffer scanTokens() {
+        Context.current().sourceCode.addFile(fileName, source);
+
         while (!isAtEnd()) {
             start = current;
             scanToken();
         }
 
-        tokens.add(new Token(EOF, "", null, line, 0, fileName));
+        tokens.add(EOF, current, 0, line, 0, null);
         return tokens;
     }
 
@@ -135,7 +171,6 @@ public class Scanner {
                 break;
 
             case '\n':
-                SourceCode.INSTANCE.addLine(fileName, line, source.substring(startOfLine, current - 1));
                 startOfLine = current;
                 line++;
                 break;
@@ -152,22 +187,48 @@ public class Scanner {
                     identifier();
                 }
                 else {
-                    Pascal.error(line, "Unexpected character: " + c);
+                    error("Unexpected character: " + c);
                 }
                 break;
         }
     }
 
     private void identifier() {
-        while (isAlphaNumeric(peek())) advance();
+        // A hash of the lexeme's lowercase letters.
+        int folded = source.charAt(start) | 0x20;
+        while (isAlphaNumeric(peek())) {
+            folded = 31 * folded + (advance() | 0x20);
+        }
+
+        addToken(keyword(folded));
+    }
+
+    // Finds the keyword the current lexeme spells, ignoring case.  Only letters are folded, which is enough since
+    // keywords are made of nothing else.
+    //
+    private TokenType keyword(int folded) {
+        int slot = (folded * KEYWORD_SEED) >>> (32 - KEYWORD_BITS);
+        var keyword = KEYWORD_NAMES[slot];
+        if (keyword == null || keyword.length() != current - start) return IDENTIFIER;
 
-        var text = source.substring(start, current);
-        var type = keywords.get(text.toLowerCase());
-        if (type == null) {
-            type = IDENTIFIER;
+        for (int i = 0; i < keyword.length(); i++) {
+            if ((source.charAt(start + i) | 0x20) != keyword.charAt(i)) return IDENTIFIER;
         }
+        return KEYWORD_TYPES[slot];
+    }
 
-        addToken(type);
+    // Tries placing the keywords by a seed, returning false if two would share a slot.
+    //
+    private static boolean placeKeywords(int seed) {
+        Arrays.fill(KEYWORD_NAMES, null);
+        for (var entry : keywords.entrySet()) {
+            int slot = (entry.getKey().hashCode() * seed) >>> (32 - KEYWORD_BITS);
+            if (KEYWORD_NAMES[slot] != null) return false;
+
+            KEYWORD_NAMES[slot] = entry.getKey();
+            KEYWORD_TYPES[slot] = entry.getValue();
+        }
+        return true;
     }
 
     private void number() {
@@ -183,10 +244,10 @@ public class Scanner {
         while (isDigit(peek())) advance();
 
         if (isInteger) {
-            addToken(INTEGER, Integer.parseInt(source.substring(start, current)));
+            addToken(INTEGER, integer(start, current));
         }
         else {
-            addToken(NUMBER, Double.parseDouble(source.substring(start, current)));
+            addToken(NUMBER, Double.parseDouble(text(start, current)));
         }
     }
 
@@ -197,14 +258,14 @@ public class Scanner {
         }
 
         if (isAtEnd()) {
-            Pascal.error(line, "Unterminated string.");
+            error("Unterminated string.");
             return;
         }
 
         advance(); // the closing "
 
         // Trim the surrounding quotes
-        String value = source.substring(start + 1, current -1);
+        String value = text(start + 1, current -1);
 
         if (value.length() == 1) {
             addToken(CHAR, value.charAt(0));
@@ -216,13 +277,29 @@ public class Scanner {
 
     private void char_() {
         if (!isDigit(peek()) || isAtEnd()) {
-            Pascal.error(line, "Invalid character: " + peek());
+            error("Invalid character: " + peek());
             return;
         }
 
         while (isDigit(peek())) advance();
 
-        addToken(CHAR, (char) Integer.parseInt(source.substring(start + 1, current)));
+        addToken(CHAR, (char) integer(start + 1, current));
+    }
+
+    // Parses the digits between two positions.  Numbers too big for an integer are left to parseInt() to report.
+    //
+    private int integer(int from, int to) {
+        if (to - from > 9) return Integer.parseInt(text(from, to));
+
+        int value = 0;
+        for (int i = from; i < to; i++) {
+            value = value * 10 + (source.charAt(i) - '0');
+        }
+        return value;
+    }
+
+    private String text(int from, int to) {
+        return source.subSequence(from, to).toString();
     }
 
     private boolean match(char expected) {
@@ -239,7 +316,7 @@ public class Scanner {
     }
 
     private char peekNext() {
-        if (current + 1 > source.length()) return '\0';
+        if (current + 1 >= source.length()) return '\0';
         return source.charAt(current + 1);
     }
 
@@ -253,6 +330,22 @@ public class Scanner {
         return isAlpha(c) || isDigit(c);
     }
 
+    // Reports an error on the current line.
+    //
+    private void error(String message) {
+        hadError = true;
+        Pascal.error(line, message);
+    }
+
+    /**
+     * Checks whether scanning found an error.
+     *
+     * @return true if it did.
+     */
+    boolean hadError() {
+        return hadError;
+    }
+
     private boolean isDigit(char c) {
         return c >= '0' && c <= '9';
     }
@@ -270,8 +363,6 @@ public class Scanner {
     }
 
     private void addToken(TokenType type, Object literal) {
-        var text = source.substring(start, current);
-        var token = new Token(type, text, literal, line, (start - startOfLine), fileName);
-        tokens.add(token);
+        tokens.add(type, start, current - start, line, (start - startOfLine), literal);
     }
 }
@@ -0,0 +1,77 @@
+package com.craftinginterpreters.pascal;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Shape.  A hidden class: the layout of an instance's fields, mapping each field name to a slot.  Instances with the
+ * same fields added in the same order share a shape, so a cache keyed by shape can skip the lookup by name.  Adding
+ * a field moves the instance to the next shape, through a transition kept so later instances end up sharing it.
+ * Each context starts its shapes from a root of its own, so the transitions a program adds are dropped with its
+ * context rather than kept for as long as the JVM runs.
+ */
+final class Shape {
+    private final Map<String, Integer> slots;
+    private final Map<String, Shape> transitions = new HashMap<>();
+
+    private Shape(Map<String, Integer> slots) {
+        this.slots = slots;
+    }
+
+    /**
+     * Creates the root of a tree of shapes, with no fields.
+     *
+     * @return the shape.
+     */
+    static Shape root() {
+        return new Shape(new HashMap<>());
+    }
+
+    /**
+     * Creates the starting shape for a class: its superclass's fields, then its own declared fields.  Without a
+     * superclass it starts from the current context's root.
+     *
+     * @param superclass the superclass.  null if none.
+     * @param fields names of the fields declared in the class.
+     * @return the shape.
+     */
+    static Shape of(PascalClass superclass, List<String> fields) {
+        var shape = superclass != null ? superclass.shape : Context.current().shapes;
+        for (var field : fields) {
+            if (shape.indexOf(field) < 0) {
+                shape = shape.with(field);
+            }
+        }
+        return shape;
+    }
+
+    /**
+     * Finds the slot of a field.
+     *
+     * @param name the field name.
+     * @return the slot, or -1 if the shape doesn't have the field.
+     */
+    int indexOf(String name) {
+        var slot = slots.get(name);
+        return slot != null ? slot : -1;
+    }
+
+    /**
+     * Returns the shape with one more field, in the next slot.
+     *
+     * @param name the field name.
+     * @return the next shape.
+     */
+    Shape with(String name) {
+        return transitions.computeIfAbsent(name, key -> {
+            var nextSlots = new HashMap<>(slots);
+            nextSlots.put(key, slots.size());
+            return new Shape(nextSlots);
+        });
+    }
+
+    int size() {
+        return slots.size();
+    }
+}
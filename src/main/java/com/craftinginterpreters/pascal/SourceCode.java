@@ -1,18 +1,36 @@
 package com.craftinginterpreters.pascal;
 
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
- * SourceCode.  Maintains a copy of the compiled code by file and line.  This is used in conjunction with the
- * Token to provide console feedback for any compile or runtime errors.
+ * SourceCode.  Maintains the compiled code by file, so a line can be looked up by number.  This is used in
+ * conjunction with the Token to provide console feedback for any compile or runtime errors.  Each file keeps the
+ * source it was scanned from, and the offsets where its lines start are only worked out the first time one of its
+ * lines is needed.  Each Context has its own.  Units are scanned on several threads at once, so files can be added
+ * concurrently.
  */
 public class SourceCode {
-    private final Map<String, Map<Integer, String>> code = new HashMap<>();
+    private final Map<String, CharSequence> sources = new ConcurrentHashMap<>();
 
-    public static final SourceCode INSTANCE = new SourceCode();
+    // Offsets where each line starts, by file.  Built on first use.
+    private final Map<String, int[]> lineStarts = new ConcurrentHashMap<>();
 
-    private SourceCode() {
+    // Lines added one at a time, by file and line number.
+    private final Map<String, Map<Integer, String>> lines = new ConcurrentHashMap<>();
+
+    SourceCode() {
+    }
+
+    /**
+     * Adds the source of a file, replacing any code added for it before.
+     * @param fileName name of file.
+     * @param source the source.
+     */
+    public void addFile(String fileName, CharSequence source) {
+        sources.put(fileName, source);
+        lineStarts.remove(fileName);
+        lines.remove(fileName);
     }
 
     /**
@@ -22,10 +40,7 @@ public class SourceCode {
      * @param line the line of code.
      */
     public void addLine(String fileName, int lineNumber, String line) {
-        if (!code.containsKey(fileName)) {
-            code.put(fileName, new HashMap<>());
-        }
-        var source = code.get(fileName);
+        var source = lines.computeIfAbsent(fileName, name -> new ConcurrentHashMap<>());
         source.put(lineNumber, line);
     }
 
@@ -36,12 +51,44 @@ public class SourceCode {
      * @return the line of code.
      */
     public String getLine(String fileName, int lineNumber) {
-        if (code.containsKey(fileName)) {
-            var map = code.get(fileName);
-            if (map.containsKey(lineNumber)) {
-                return map.get(lineNumber);
-            }
+        var source = sources.get(fileName);
+        if (source != null) {
+            var starts = lineStarts.computeIfAbsent(fileName, name -> index(source));
+            if (lineNumber < 1 || lineNumber > starts.length) return "";
+
+            int start = starts[lineNumber - 1];
+            int end = lineNumber < starts.length ? starts[lineNumber] - 1 : source.length();
+            return source.subSequence(start, end).toString();
+        }
+        var map = lines.get(fileName);
+        if (map != null && map.containsKey(lineNumber)) {
+            return map.get(lineNumber);
         }
         return "";
     }
+
+    /**
+     * Releases the code of every file, once the program it belongs to is done with.
+     */
+    public void clear() {
+        sources.clear();
+        lineStarts.clear();
+        lines.clear();
+    }
+
+    // Finds where each line of a source starts.
+    //
+    private static int[] index(CharSequence source) {
+        int count = 1;
+        for (int i = 0; i < source.length(); i++) {
+            if (source.charAt(i) == '\n') count++;
+        }
+
+        var starts = new int[count];
+        int line = 1;
+        for (int i = 0; i < source.length(); i++) {
+            if (source.charAt(i) == '\n') starts[line++] = i + 1;
+        }
+        return starts;
+    }
 }
@@ -31,6 +31,9 @@ abstract class Stmt {
         }
 
         final List<Stmt> statements;
+
+        // Names of the locals declared in this block, in slot order.  Filled in by the Resolver.
+        String[] locals = {};
     }
 
     static class Class extends Stmt {
@@ -101,6 +104,9 @@ abstract class Stmt {
         final List<Token> params;
         final List<Token> types;
         final List<Stmt> body;
+
+        // Names of the parameters and locals of this function, in slot order.  Filled in by the Resolver.
+        String[] locals = {};
     }
 
     static class If extends Stmt {
@@ -202,6 +208,9 @@ abstract class Stmt {
 
         final Expr condition;
         final Stmt body;
+
+        // Local strings the loop only appends to, which are held in builders while it runs.  Null if none.
+        List<Expr.Variable> accumulated;
     }
 
     static class Var extends Stmt {
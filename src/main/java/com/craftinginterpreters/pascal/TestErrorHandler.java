@@ -0,0 +1,11 @@
+package com.craftinginterpreters.pascal;
+
+/**
+ * Error handler for tests.  Rethrows the error, so the test sees it.
+ */
+class TestErrorHandler implements ErrorHandler {
+    @Override
+    public void runtimeError(RuntimeError error) {
+        throw error;
+    }
+}
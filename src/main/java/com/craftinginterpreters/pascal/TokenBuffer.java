@@ -0,0 +1,224 @@
+package com.craftinginterpreters.pascal;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.RandomAccess;
+
+import static com.craftinginterpreters.pascal.TokenType.*;
+
+/**
+ * Token Buffer.  The tokens of a source, kept in parallel arrays of type, position and line rather than as Token
+ * objects.  Literal values go in a side table, since few tokens have one.  A Token is only made when one is asked
+ * for, which the Parser does for the tokens it keeps in the syntax tree, and its lexeme is only then taken from the
+ * source.
+ */
+final class TokenBuffer extends AbstractList<Token> implements RandomAccess {
+    private static final TokenType[] TYPES = TokenType.values();
+
+    // Lexemes of the tokens that are always spelled the same way.
+    private static final String[] FIXED_LEXEMES = new String[TYPES.length];
+    static {
+        var lexemes = Map.ofEntries(
+                Map.entry(LEFT_PAREN, "("), Map.entry(RIGHT_PAREN, ")"),
+                Map.entry(LEFT_BRACKET, "["), Map.entry(RIGHT_BRACKET, "]"),
+                Map.entry(COMMA, ","), Map.entry(DOT, "."), Map.entry(PLUS, "+"), Map.entry(MINUS, "-"),
+                Map.entry(SEMICOLON, ";"), Map.entry(STAR, "*"), Map.entry(SLASH, "/"), Map.entry(EQUAL, "="),
+                Map.entry(COLON, ":"), Map.entry(ASSIGN, ":="),
+                Map.entry(LESS, "<"), Map.entry(LESS_EQUAL, "<="), Map.entry(NOT_EQUAL, "<>"),
+                Map.entry(GREATER, ">"), Map.entry(GREATER_EQUAL, ">="), Map.entry(EOF, ""));
+        lexemes.forEach((type, lexeme) -> FIXED_LEXEMES[type.ordinal()] = lexeme);
+    }
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    private final String fileName;
+    private final CharSequence source;
+
+    private int size = 0;
+    private byte[] types = new byte[INITIAL_CAPACITY];
+    private int[] starts = new int[INITIAL_CAPACITY];
+    private int[] lengths = new int[INITIAL_CAPACITY];
+    private int[] lines = new int[INITIAL_CAPACITY];
+    private int[] offsets = new int[INITIAL_CAPACITY];
+
+    // Literal values, and the tokens they belong to in ascending order.
+    private int literalCount = 0;
+    private Object[] literals = new Object[INITIAL_CAPACITY];
+    private int[] literalTokens = new int[INITIAL_CAPACITY];
+
+    // Tokens made so far, so each is only made once.  Null until the first is.
+    private Token[] made;
+
+    // Lexemes made so far, so each distinct spelling is only made into a string once.
+    private String[] names = new String[256];
+    private int nameCount = 0;
+
+    /**
+     * Creates an empty buffer for a source.
+     *
+     * @param fileName the file the source came from.
+     * @param source the source.
+     */
+    TokenBuffer(String fileName, CharSequence source) {
+        this.fileName = fileName;
+        this.source = source;
+    }
+
+    /**
+     * Gets a buffer holding a list of tokens.  Returns the list itself if it's already a buffer.
+     *
+     * @param tokens the tokens.
+     * @return the buffer.
+     */
+    static TokenBuffer of(List<Token> tokens) {
+        if (tokens instanceof TokenBuffer buffer) return buffer;
+
+        var buffer = new TokenBuffer(null, null);
+        for (var token : tokens) {
+            buffer.add(token.type, 0, 0, token.line, token.offset, token.literal);
+        }
+        buffer.made = tokens.toArray(new Token[buffer.types.length]);
+        return buffer;
+    }
+
+    /**
+     * Adds a token.
+     *
+     * @param type the token type.
+     * @param start where its lexeme starts in the source.
+     * @param length length of its lexeme.
+     * @param line the line number of token.
+     * @param offset offset of the token on the line.
+     * @param literal the literal value, or null.
+     */
+    void add(TokenType type, int start, int length, int line, int offset, Object literal) {
+        if (size == types.length) {
+            int capacity = size * 2;
+            types = Arrays.copyOf(types, capacity);
+            starts = Arrays.copyOf(starts, capacity);
+            lengths = Arrays.copyOf(lengths, capacity);
+            lines = Arrays.copyOf(lines, capacity);
+            offsets = Arrays.copyOf(offsets, capacity);
+            if (made != null) made = Arrays.copyOf(made, capacity);
+        }
+        types[size] = (byte) type.ordinal();
+        starts[size] = start;
+        lengths[size] = length;
+        lines[size] = line;
+        offsets[size] = offset;
+
+        if (literal != null) {
+            if (literalCount == literals.length) {
+                literals = Arrays.copyOf(literals, literalCount * 2);
+                literalTokens = Arrays.copyOf(literalTokens, literalCount * 2);
+            }
+            literals[literalCount] = literal;
+            literalTokens[literalCount++] = size;
+        }
+        size++;
+    }
+
+    /**
+     * Gets the type of a token, without making the token.
+     *
+     * @param index the token.
+     * @return its type.
+     */
+    TokenType type(int index) {
+        Objects.checkIndex(index, size);
+        return TYPES[types[index]];
+    }
+
+    /**
+     * Checks a token's lexeme, ignoring case, without making the token.
+     *
+     * @param index the token.
+     * @param text the text to compare with.
+     * @return true if the lexeme is the text.
+     */
+    boolean isLexeme(int index, String text) {
+        if (source == null) return text.equalsIgnoreCase(get(index).lexeme);
+        if (lengths[index] != text.length()) return false;
+
+        for (int i = 0; i < text.length(); i++) {
+            char a = source.charAt(starts[index] + i);
+            char b = text.charAt(i);
+            if (a != b && Character.toLowerCase(a) != Character.toLowerCase(b)) return false;
+        }
+        return true;
+    }
+
+    @Override
+    public Token get(int index) {
+        Objects.checkIndex(index, size);
+        if (made == null) made = new Token[types.length];
+
+        var token = made[index];
+        if (token == null) {
+            int literal = Arrays.binarySearch(literalTokens, 0, literalCount, index);
+            token = new Token(TYPES[types[index]], lexeme(index), literal >= 0 ? literals[literal] : null,
+                    lines[index], offsets[index], fileName);
+            made[index] = token;
+        }
+        return token;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    // Gets the lexeme of a token, making it only the first time its spelling is seen.
+    //
+    private String lexeme(int index) {
+        var fixed = FIXED_LEXEMES[types[index]];
+        if (fixed != null) return fixed;
+
+        int start = starts[index];
+        int length = lengths[index];
+        int hash = 0;
+        for (int i = start; i < start + length; i++) {
+            hash = 31 * hash + source.charAt(i);
+        }
+
+        int mask = names.length - 1;
+        for (int slot = spread(hash) & mask; names[slot] != null; slot = (slot + 1) & mask) {
+            var name = names[slot];
+            if (name.hashCode() == hash && isSpelling(name, start, length)) return name;
+        }
+
+        var name = source.subSequence(start, start + length).toString();
+        if (++nameCount * 2 > names.length) {
+            var old = names;
+            names = new String[old.length * 2];
+            for (var existing : old) {
+                if (existing != null) intern(existing);
+            }
+        }
+        intern(name);
+        return name;
+    }
+
+    private void intern(String name) {
+        int mask = names.length - 1;
+        int slot = spread(name.hashCode()) & mask;
+        while (names[slot] != null) slot = (slot + 1) & mask;
+        names[slot] = name;
+    }
+
+    private static int spread(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+
+    private boolean isSpelling(String name, int start, int length) {
+        if (name.length() != length) return false;
+
+        for (int i = 0; i < length; i++) {
+            if (source.charAt(start + i) != name.charAt(i)) return false;
+        }
+        return true;
+    }
+}
@@ -1,6 +1,11 @@
 package com.craftinginterpreters.pascal;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 /**
  * Type Checker.
@@ -9,9 +14,18 @@ class TypeChecker implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
      private Stmt.Function currentFunction = null;
      private ClassType currentClass = ClassType.NONE;
 
-     public final static TypeLookup lookup = new TypeLookup();
+     // Types found so far.  Belongs to the current context, so the interpreter can use it after checking.
+     public final TypeLookup lookup = Context.current().lookup;
+
+     // Declarations by name, for choosing overloads.
+     private final Map<String, Stmt.Function> functions = new HashMap<>();
+     private final Map<String, Stmt.Class> classes = new HashMap<>();
+
+     // Globals other than functions declared by statements checked with resolveAdded(), which can't be declared again.
+     private final Set<String> globals = new HashSet<>();
 
     TypeChecker() {
+        lookup.endScopes();
         lookup.inferred = new TypeLookup();
         lookup.parents = new TypeLookup();
         lookup.generics = new TypeLookup();
@@ -33,6 +47,43 @@ class TypeChecker implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
         }
     }
 
+    // Checks statements added to a program already checked, such as a line typed into the REPL, against the types
+    // the earlier statements declared.  If they fail, whatever they left open is closed so the next ones can be
+    // checked.
+    //
+    void resolveAdded(List<Stmt> statements) {
+        List<Token> declared = new ArrayList<>();
+        for (var statement : statements) {
+            if (statement instanceof Stmt.Var e) {
+                declared.add(e.name);
+            }
+            else if (statement instanceof Stmt.Class e) {
+                declared.add(e.name);
+            }
+            else if (statement instanceof Stmt.Enum e) {
+                declared.add(e.name);
+                declared.addAll(e.values);
+            }
+        }
+        var names = new HashSet<String>();
+        for (var name : declared) {
+            if (globals.contains(name.lexeme) || !names.add(name.lexeme)) {
+                throw new RuntimeError(name, "Already a variable with this name.");
+            }
+        }
+
+        try {
+            resolve(statements);
+            globals.addAll(names);
+        }
+        finally {
+            lookup.endScopes();
+            lookup.currentClass = null;
+            currentFunction = null;
+            currentClass = ClassType.NONE;
+        }
+    }
+
     private void mapType(Stmt stmt) {
         if (stmt instanceof Stmt.Enum e) {
             for (var value : e.values) {
@@ -44,8 +95,10 @@ class TypeChecker implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
         }
         else if (stmt instanceof Stmt.Function e) {
             lookup.setType(e.name.lexeme, e.returnType);
+            functions.put(e.name.lexeme, e);
         }
         else if (stmt instanceof Stmt.Class e) {
+            classes.put(e.name.lexeme, e);
             lookup.parents.setType(e.name.lexeme, ((e.superclass == null) ? "Any" : e.superclass.name.lexeme));
             lookup.setType(e.name.lexeme, e.name.lexeme);
             for (var fun : e.methods) {
@@ -179,6 +232,11 @@ class TypeChecker implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
     @Override
     public Void visitVarStmt(Stmt.Var stmt) {
         if (stmt.initializer != null) {
+            // Only picks the overload of a call here; the initializer itself isn't checked.
+            if (stmt.initializer instanceof Expr.Call call) {
+                chooseOverload(call);
+            }
+
             var type = stmt.initializer.reduce(lookup);
             if ("any".equalsIgnoreCase(stmt.type)) {
                 lookup.inferred.setType(stmt.name.lexeme,  type);
@@ -217,6 +275,7 @@ class TypeChecker implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
     @Override
     public Void visitAssignExpr(Expr.Assign expr) {
         resolve(expr.value);
+        expr.elementType = lookup.generics.getType(expr.name.lexeme);
 
         var type = lookup.getType(expr.name.lexeme);
         if (type == null) {
@@ -268,9 +327,56 @@ class TypeChecker implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
         for (Expr argument : expr.arguments) {
             resolve(argument);
         }
+        chooseOverload(expr);
         return null;
     }
 
+    // If the static types of all the arguments are known, picks the overload the runtime would pick for them, the
+    // same way it would.  The Interpreter still checks the types before using it.
+    //
+    private void chooseOverload(Expr.Call expr) {
+        List<String> types = new ArrayList<>();
+        for (var argument : expr.arguments) {
+            var type = argument.reduce(lookup);
+            if (type == null || "any".equalsIgnoreCase(type) || "nil".equalsIgnoreCase(type)) return;
+
+            types.add(type);
+        }
+
+        for (var candidate : candidates(expr.callee)) {
+            if (PascalFunction.isMatch(candidate, types, lookup)) {
+                expr.target = candidate;
+                expr.targetTypes = types.toArray(new String[0]);
+                return;
+            }
+        }
+    }
+
+    // The declarations a callee could be, in the order the runtime tries them.
+    //
+    private List<Stmt.Function> candidates(Expr callee) {
+        List<Stmt.Function> result = new ArrayList<>();
+        if (callee instanceof Expr.Variable variable) {
+            var function = functions.get(variable.name.lexeme);
+            if (function != null) result.add(function);
+        }
+        else if (callee instanceof Expr.Get get) {
+            var type = get.object.reduce(lookup);
+            if ("any".equalsIgnoreCase(type) && lookup.inferred != null) {
+                type = get.object.reduce(lookup.inferred);
+            }
+
+            var klass = classes.get(type);
+            while (klass != null && result.isEmpty()) {
+                for (var method : klass.methods) {
+                    if (method.name.lexeme.equals(get.name.lexeme)) result.add(method);
+                }
+                klass = klass.superclass != null ? classes.get(klass.superclass.name.lexeme) : null;
+            }
+        }
+        return result;
+    }
+
     @Override
     public Void visitGetExpr(Expr.Get expr) {
         resolve(expr.object);
@@ -313,6 +419,7 @@ class TypeChecker implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
 
     @Override
     public Void visitSetExpr(Expr.Set expr) {
+        expr.elementType = lookup.generics.getType(expr.name.lexeme);
         var expected = lookup.getType(expr.name.lexeme);
         var inferred = expr.value.reduce(lookup);
 
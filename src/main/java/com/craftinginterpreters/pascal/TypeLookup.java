@@ -63,4 +63,14 @@ public class TypeLookup {
         if (parents != null) parents.endScope();
         if (generics != null) generics.endScope();
     }
+
+    /**
+     * Closes every scope still open, such as those left by a check that failed part way.
+     */
+    public void endScopes() {
+        scopes.clear();
+        if (inferred != null) inferred.endScopes();
+        if (parents != null) parents.endScopes();
+        if (generics != null) generics.endScopes();
+    }
 }
\ No newline at end of file
@@ -0,0 +1,64 @@
+package com.craftinginterpreters.pascal;
+
+/**
+ * Unary Operation.  Applies one unary operator in the tree.  Like BinaryOperation, negation specializes itself to
+ * int or double on first execution, and falls back to the generic version for good if the type changes.
+ */
+class UnaryOperation {
+    private static final int UNINITIALIZED = 0;
+    private static final int INT = 1;
+    private static final int DOUBLE = 2;
+    private static final int GENERIC = 3;
+
+    final Token operator;
+    final Interpreter interpreter;
+    private int state = UNINITIALIZED;
+
+    UnaryOperation(Token operator, Interpreter interpreter) {
+        this.operator = operator;
+        this.interpreter = interpreter;
+    }
+
+    /**
+     * Applies the operator.
+     *
+     * @param right the operand.
+     * @return the result.
+     */
+    Object apply(Object right) {
+        if (operator.type == TokenType.NOT) {
+            return !interpreter.isTruthy(right);
+        }
+
+        switch (state) {
+            case INT:
+                if (right instanceof Integer value) return -value;
+                break;
+            case DOUBLE:
+                if (right instanceof Double value) return -value;
+                break;
+            case GENERIC:
+                return negate(right);
+        }
+
+        if (state != UNINITIALIZED) {
+            state = GENERIC;
+        }
+        else if (right instanceof Integer) {
+            state = INT;
+        }
+        else if (right instanceof Double) {
+            state = DOUBLE;
+        }
+        else {
+            state = GENERIC;
+        }
+        return negate(right);
+    }
+
+    private Object negate(Object right) {
+        interpreter.checkNumberOperand(operator, right);
+        if (right instanceof Integer) return -(int) right;
+        return -(double) right;
+    }
+}
@@ -0,0 +1,807 @@
+package com.craftinginterpreters.pascal;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Unit Cache.  Keeps parsed units in a directory, so a unit that hasn't changed since it was last loaded isn't
+ * scanned or parsed again.  Each entry is named by a hash of the unit's file name and source, so editing a unit
+ * simply makes it miss, and units with the same text don't share an entry, since every token records its file.  The
+ * syntax tree is written as a compact stream of tagged nodes, with its strings and tokens in tables so each is only
+ * written once.  Units are cached as parsed, before the Resolver and TypeChecker have seen them, since those work on
+ * the whole program.
+ */
+final class UnitCache {
+    private static final int MAGIC = 0x50415355;   // "PASU"
+    private static final int VERSION = 1;
+
+    private static final String EXTENSION = ".pu";
+
+    // Node tags.
+    private static final byte NULL = 0;
+    private static final byte SHARED = 1;
+
+    private static final byte BLOCK = 10;
+    private static final byte CLASS = 11;
+    private static final byte ENUM = 12;
+    private static final byte EXPRESSION = 13;
+    private static final byte FUNCTION = 14;
+    private static final byte IF = 15;
+    private static final byte TRY = 16;
+    private static final byte PRINT = 17;
+    private static final byte RETURN = 18;
+    private static final byte RAISE = 19;
+    private static final byte WHILE = 20;
+    private static final byte VAR = 21;
+    private static final byte BREAK = 22;
+
+    private static final byte ASSIGN = 40;
+    private static final byte BINARY = 41;
+    private static final byte CALL = 42;
+    private static final byte GET = 43;
+    private static final byte GROUPING = 44;
+    private static final byte LITERAL = 45;
+    private static final byte MAP = 46;
+    private static final byte LOGICAL = 47;
+    private static final byte VARIABLE = 48;
+    private static final byte SET = 49;
+    private static final byte CLASS_VAR = 50;
+    private static final byte SUPER = 51;
+    private static final byte SUBSCRIPT = 52;
+    private static final byte THIS = 53;
+    private static final byte UNARY = 54;
+
+    // Literal value tags.
+    private static final byte NIL_VALUE = 0;
+    private static final byte BOOLEAN_VALUE = 1;
+    private static final byte INTEGER_VALUE = 2;
+    private static final byte DOUBLE_VALUE = 3;
+    private static final byte CHARACTER_VALUE = 4;
+    private static final byte STRING_VALUE = 5;
+
+    private static final TokenType[] TOKEN_TYPES = TokenType.values();
+
+    private final Path directory;
+
+    /**
+     * Creates a cache kept in a directory.  The directory is made when the first unit is written.
+     *
+     * @param directory the directory.
+     */
+    UnitCache(Path directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Gets the key of a unit's source.
+     *
+     * @param fileName the unit's file name.
+     * @param source the source.
+     * @return the key.
+     */
+    static String key(String fileName, CharSequence source) {
+        try {
+            var digest = MessageDigest.getInstance("SHA-256");
+            digest.update((byte) VERSION);
+            digest.update(fileName.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update(StandardCharsets.UTF_8.encode(CharBuffer.wrap(source)));
+            return HexFormat.of().formatHex(digest.digest());
+        }
+        catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Reads a unit, if it's in the cache.  A missing or unreadable entry is a miss.
+     *
+     * @param key the key of the unit's source.
+     * @param unit the unit to fill in.
+     * @return true if the unit was read.
+     */
+    boolean read(String key, UnitLoader.Unit unit) {
+        var path = directory.resolve(key + EXTENSION);
+        try (var in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            var reader = new Reader(in);
+            var statements = reader.unit(unit);
+            unit.statements.addAll(statements);
+            return true;
+        }
+        catch (NoSuchFileException e) {
+            return false;
+        }
+        catch (IOException | RuntimeException e) {
+            unit.uses.clear();
+            unit.positions.clear();
+            return false;
+        }
+    }
+
+    /**
+     * Writes a unit.  Does nothing if it can't, since the unit will just be parsed again next time.
+     *
+     * @param key the key of the unit's source.
+     * @param unit the unit, parsed without errors.
+     */
+    void write(String key, UnitLoader.Unit unit) {
+        Path temp = null;
+        try {
+            Files.createDirectories(directory);
+            temp = Files.createTempFile(directory, key, ".tmp");
+            try (var out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                new Writer().unit(out, unit);
+            }
+            Files.move(temp, directory.resolve(key + EXTENSION),
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        catch (IOException | UncheckedIOException e) {
+            if (temp != null) {
+                try {
+                    Files.deleteIfExists(temp);
+                }
+                catch (IOException ignored) {
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes a unit's syntax tree.  The nodes are written to a buffer first, collecting the strings they use, so the
+     * string table can go ahead of them.
+     */
+    private static final class Writer implements Stmt.Visitor<Void>, Expr.Visitor<Void> {
+        private final ByteArrayOutputStream body = new ByteArrayOutputStream();
+
+        private final Map<String, Integer> strings = new HashMap<>();
+        private final List<String> stringTable = new ArrayList<>();
+        private final Map<Token, Integer> tokens = new IdentityHashMap<>();
+
+        // Nodes written so far, numbered as each is finished, so one that appears twice is written once.
+        private final Map<Object, Integer> nodes = new IdentityHashMap<>();
+
+        void unit(DataOutputStream out, UnitLoader.Unit unit) throws IOException {
+            integer(unit.statements.size());
+            for (var statement : unit.statements) {
+                stmt(statement);
+            }
+
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+
+            out.writeInt(unit.uses.size());
+            for (int i = 0; i < unit.uses.size(); i++) {
+                out.writeUTF(unit.uses.get(i));
+                out.writeInt(unit.positions.get(i));
+            }
+
+            out.writeInt(stringTable.size());
+            for (var string : stringTable) {
+                out.writeUTF(string);
+            }
+            body.writeTo(out);
+        }
+
+        private void stmt(Stmt stmt) {
+            if (!shared(stmt)) {
+                stmt.accept(this);
+                nodes.put(stmt, nodes.size());
+            }
+        }
+
+        private void expr(Expr expr) {
+            if (!shared(expr)) {
+                expr.accept(this);
+                string(expr.cast);
+                nodes.put(expr, nodes.size());
+            }
+        }
+
+        // Writes a null or a node written before, returning false if the node still has to be written.
+        //
+        private boolean shared(Object node) {
+            if (node == null) {
+                body.write(NULL);
+                return true;
+            }
+            var index = nodes.get(node);
+            if (index == null) return false;
+
+            body.write(SHARED);
+            integer(index);
+            return true;
+        }
+
+        private void stmts(List<? extends Stmt> stmts) {
+            integer(stmts.size());
+            for (var stmt : stmts) {
+                stmt(stmt);
+            }
+        }
+
+        private void exprs(List<Expr> exprs) {
+            integer(exprs.size());
+            for (var expr : exprs) {
+                expr(expr);
+            }
+        }
+
+        private void tokens(List<Token> list) {
+            integer(list.size());
+            for (var token : list) {
+                token(token);
+            }
+        }
+
+        // Writes -1 for null, the number of a token written before, or the next number followed by the token.
+        //
+        private void token(Token token) {
+            if (token == null) {
+                integer(-1);
+                return;
+            }
+            var index = tokens.get(token);
+            if (index != null) {
+                integer(index);
+                return;
+            }
+            integer(tokens.size());
+            tokens.put(token, tokens.size());
+
+            body.write(token.type.ordinal());
+            string(token.lexeme);
+            value(token.literal);
+            integer(token.line);
+            integer(token.offset);
+            string(token.fileName);
+        }
+
+        private void string(String string) {
+            if (string == null) {
+                integer(-1);
+                return;
+            }
+            var index = strings.get(string);
+            if (index == null) {
+                index = stringTable.size();
+                strings.put(string, index);
+                stringTable.add(string);
+            }
+            integer(index);
+        }
+
+        private void value(Object value) {
+            if (value == null) {
+                body.write(NIL_VALUE);
+            }
+            else if (value instanceof Boolean b) {
+                body.write(BOOLEAN_VALUE);
+                body.write(b ? 1 : 0);
+            }
+            else if (value instanceof Integer i) {
+                body.write(INTEGER_VALUE);
+                integer(i);
+            }
+            else if (value instanceof Double d) {
+                body.write(DOUBLE_VALUE);
+                var bits = Double.doubleToLongBits(d);
+                integer((int) (bits >>> 32));
+                integer((int) bits);
+            }
+            else if (value instanceof Character c) {
+                body.write(CHARACTER_VALUE);
+                integer(c);
+            }
+            else if (value instanceof String s) {
+                body.write(STRING_VALUE);
+                string(s);
+            }
+            else {
+                throw new UncheckedIOException(
+                        new IOException("Can't write literal of type " + value.getClass().getSimpleName() + "."));
+            }
+        }
+
+        // Writes an int the way DataOutputStream does, high byte first.
+        //
+        private void integer(int value) {
+            body.write(value >>> 24);
+            body.write(value >>> 16);
+            body.write(value >>> 8);
+            body.write(value);
+        }
+
+        @Override
+        public Void visitBlockStmt(Stmt.Block stmt) {
+            body.write(BLOCK);
+            stmts(stmt.statements);
+            return null;
+        }
+
+        @Override
+        public Void visitClassStmt(Stmt.Class stmt) {
+            body.write(CLASS);
+            token(stmt.name);
+            expr(stmt.superclass);
+            exprs(stmt.initializers);
+            stmts(stmt.methods);
+            return null;
+        }
+
+        @Override
+        public Void visitEnumStmt(Stmt.Enum stmt) {
+            body.write(ENUM);
+            token(stmt.name);
+            tokens(stmt.values);
+            return null;
+        }
+
+        @Override
+        public Void visitExpressionStmt(Stmt.Expression stmt) {
+            body.write(EXPRESSION);
+            expr(stmt.expression);
+            return null;
+        }
+
+        @Override
+        public Void visitFunctionStmt(Stmt.Function stmt) {
+            body.write(FUNCTION);
+            token(stmt.name);
+            token(stmt.type);
+            string(stmt.returnType);
+            tokens(stmt.params);
+            tokens(stmt.types);
+            stmts(stmt.body);
+            return null;
+        }
+
+        @Override
+        public Void visitIfStmt(Stmt.If stmt) {
+            body.write(IF);
+            expr(stmt.condition);
+            stmt(stmt.thenBranch);
+            stmt(stmt.elseBranch);
+            return null;
+        }
+
+        @Override
+        public Void visitTryStmt(Stmt.Try stmt) {
+            body.write(TRY);
+            stmt(stmt.tryBlock);
+            integer(stmt.exceptMap.size());
+            for (var entry : stmt.exceptMap.entrySet()) {
+                string(entry.getKey());
+                string(entry.getValue().name);
+                stmt(entry.getValue().stmt);
+            }
+            return null;
+        }
+
+        @Override
+        public Void visitPrintStmt(Stmt.Print stmt) {
+            body.write(PRINT);
+            expr(stmt.expression);
+            return null;
+        }
+
+        @Override
+        public Void visitReturnStmt(Stmt.Return stmt) {
+            body.write(RETURN);
+            token(stmt.keyword);
+            expr(stmt.value);
+            return null;
+        }
+
+        @Override
+        public Void visitRaiseStmt(Stmt.Raise stmt) {
+            body.write(RAISE);
+            token(stmt.keyword);
+            expr(stmt.value);
+            return null;
+        }
+
+        @Override
+        public Void visitWhileStmt(Stmt.While stmt) {
+            body.write(WHILE);
+            expr(stmt.condition);
+            stmt(stmt.body);
+            return null;
+        }
+
+        @Override
+        public Void visitVarStmt(Stmt.Var stmt) {
+            body.write(VAR);
+            token(stmt.name);
+            string(stmt.type);
+            string(stmt.generic);
+            expr(stmt.initializer);
+            return null;
+        }
+
+        @Override
+        public Void visitBreakStmt(Stmt.Break stmt) {
+            body.write(BREAK);
+            return null;
+        }
+
+        @Override
+        public Void visitAssignExpr(Expr.Assign expr) {
+            body.write(ASSIGN);
+            token(expr.name);
+            expr(expr.value);
+            return null;
+        }
+
+        @Override
+        public Void visitBinaryExpr(Expr.Binary expr) {
+            body.write(BINARY);
+            expr(expr.left);
+            token(expr.operator);
+            expr(expr.right);
+            return null;
+        }
+
+        @Override
+        public Void visitCallExpr(Expr.Call expr) {
+            body.write(CALL);
+            expr(expr.callee);
+            token(expr.paren);
+            exprs(expr.arguments);
+            return null;
+        }
+
+        @Override
+        public Void visitGetExpr(Expr.Get expr) {
+            body.write(GET);
+            expr(expr.object);
+            token(expr.name);
+            return null;
+        }
+
+        @Override
+        public Void visitGroupingExpr(Expr.Grouping expr) {
+            body.write(GROUPING);
+            expr(expr.expression);
+            return null;
+        }
+
+        @Override
+        public Void visitLiteralExpr(Expr.Literal expr) {
+            body.write(LITERAL);
+            value(expr.value);
+            return null;
+        }
+
+        @Override
+        public Void visitMapExpr(Expr.Map expr) {
+            body.write(MAP);
+            integer(expr.value.size());
+            for (var entry : expr.value.entrySet()) {
+                expr(entry.getKey());
+                expr(entry.getValue());
+            }
+            return null;
+        }
+
+        @Override
+        public Void visitLogicalExpr(Expr.Logical expr) {
+            body.write(LOGICAL);
+            expr(expr.left);
+            token(expr.operator);
+            expr(expr.right);
+            return null;
+        }
+
+        @Override
+        public Void visitVariableExpr(Expr.Variable expr) {
+            body.write(VARIABLE);
+            token(expr.name);
+            return null;
+        }
+
+        @Override
+        public Void visitSetExpr(Expr.Set expr) {
+            body.write(SET);
+            expr(expr.object);
+            token(expr.name);
+            expr(expr.value);
+            return null;
+        }
+
+        @Override
+        public Void visitClassVarExpr(Expr.ClassVar expr) {
+            body.write(CLASS_VAR);
+            expr(expr.object);
+            token(expr.name);
+            string(expr.type);
+            string(expr.generic);
+            expr(expr.value);
+            return null;
+        }
+
+        @Override
+        public Void visitSuperExpr(Expr.Super expr) {
+            body.write(SUPER);
+            token(expr.keyword);
+            token(expr.method);
+            return null;
+        }
+
+        @Override
+        public Void visitSubscriptExpr(Expr.Subscript expr) {
+            body.write(SUBSCRIPT);
+            token(expr.token);
+            expr(expr.expr);
+            expr(expr.index);
+            return null;
+        }
+
+        @Override
+        public Void visitThisExpr(Expr.This expr) {
+            body.write(THIS);
+            token(expr.keyword);
+            return null;
+        }
+
+        @Override
+        public Void visitUnaryExpr(Expr.Unary expr) {
+            body.write(UNARY);
+            token(expr.operator);
+            expr(expr.right);
+            return null;
+        }
+    }
+
+    /**
+     * Reads back a unit written by the Writer.
+     */
+    private static final class Reader {
+        private final DataInputStream in;
+
+        private String[] strings;
+        private final List<Token> tokens = new ArrayList<>();
+        private final List<Object> nodes = new ArrayList<>();
+
+        Reader(DataInputStream in) {
+            this.in = in;
+        }
+
+        List<Stmt> unit(UnitLoader.Unit unit) throws IOException {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Not a cached Pascal unit.");
+            }
+            if (in.readInt() != VERSION) {
+                throw new IOException("Unsupported unit cache version.");
+            }
+
+            var uses = in.readInt();
+            for (int i = 0; i < uses; i++) {
+                unit.uses(in.readUTF(), in.readInt());
+            }
+
+            strings = new String[in.readInt()];
+            for (int i = 0; i < strings.length; i++) {
+                strings[i] = in.readUTF();
+            }
+
+            var count = in.readInt();
+            List<Stmt> statements = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                statements.add(stmt());
+            }
+            return statements;
+        }
+
+        private Stmt stmt() throws IOException {
+            var tag = in.readByte();
+            if (tag == NULL) return null;
+            if (tag == SHARED) return (Stmt) nodes.get(in.readInt());
+
+            Stmt stmt;
+            switch (tag) {
+                case BLOCK:
+                    stmt = new Stmt.Block(stmts());
+                    break;
+                case CLASS: {
+                    var name = token();
+                    var superclass = (Expr.Variable) expr();
+                    var initializers = exprs();
+                    List<Stmt.Function> methods = new ArrayList<>();
+                    for (var method : stmts()) {
+                        methods.add((Stmt.Function) method);
+                    }
+                    stmt = new Stmt.Class(name, superclass, initializers, methods);
+                    break;
+                }
+                case ENUM:
+                    stmt = new Stmt.Enum(token(), tokens());
+                    break;
+                case EXPRESSION:
+                    stmt = new Stmt.Expression(expr());
+                    break;
+                case FUNCTION:
+                    stmt = new Stmt.Function(token(), token(), string(), tokens(), tokens(), stmts());
+                    break;
+                case IF:
+                    stmt = new Stmt.If(expr(), stmt(), stmt());
+                    break;
+                case TRY: {
+                    var tryBlock = stmt();
+                    var count = in.readInt();
+                    Map<String, Stmt.Except> exceptMap = new HashMap<>();
+                    for (int i = 0; i < count; i++) {
+                        exceptMap.put(string(), new Stmt.Except(string(), stmt()));
+                    }
+                    stmt = new Stmt.Try(tryBlock, exceptMap);
+                    break;
+                }
+                case PRINT:
+                    stmt = new Stmt.Print(expr());
+                    break;
+                case RETURN:
+                    stmt = new Stmt.Return(token(), expr());
+                    break;
+                case RAISE:
+                    stmt = new Stmt.Raise(token(), expr());
+                    break;
+                case WHILE:
+                    stmt = new Stmt.While(expr(), stmt());
+                    break;
+                case VAR:
+                    stmt = new Stmt.Var(token(), string(), string(), expr());
+                    break;
+                case BREAK:
+                    stmt = new Stmt.Break();
+                    break;
+                default:
+                    throw new IOException("Unknown statement tag " + tag + ".");
+            }
+            nodes.add(stmt);
+            return stmt;
+        }
+
+        private Expr expr() throws IOException {
+            var tag = in.readByte();
+            if (tag == NULL) return null;
+            if (tag == SHARED) return (Expr) nodes.get(in.readInt());
+
+            Expr expr;
+            switch (tag) {
+                case ASSIGN:
+                    expr = new Expr.Assign(token(), expr());
+                    break;
+                case BINARY:
+                    expr = new Expr.Binary(expr(), token(), expr());
+                    break;
+                case CALL:
+                    expr = new Expr.Call(expr(), token(), exprs());
+                    break;
+                case GET:
+                    expr = new Expr.Get(expr(), token());
+                    break;
+                case GROUPING:
+                    expr = new Expr.Grouping(expr());
+                    break;
+                case LITERAL:
+                    expr = new Expr.Literal(value());
+                    break;
+                case MAP: {
+                    var count = in.readInt();
+                    var map = new HashMap<Expr, Expr>();
+                    for (int i = 0; i < count; i++) {
+                        map.put(expr(), expr());
+                    }
+                    expr = new Expr.Map(map);
+                    break;
+                }
+                case LOGICAL:
+                    expr = new Expr.Logical(expr(), token(), expr());
+                    break;
+                case VARIABLE:
+                    expr = new Expr.Variable(token());
+                    break;
+                case SET:
+                    expr = new Expr.Set(expr(), token(), expr());
+                    break;
+                case CLASS_VAR:
+                    expr = new Expr.ClassVar(expr(), token(), string(), string(), expr());
+                    break;
+                case SUPER:
+                    expr = new Expr.Super(token(), token());
+                    break;
+                case SUBSCRIPT:
+                    expr = new Expr.Subscript(token(), expr(), expr());
+                    break;
+                case THIS:
+                    expr = new Expr.This(token());
+                    break;
+                case UNARY:
+                    expr = new Expr.Unary(token(), expr());
+                    break;
+                default:
+                    throw new IOException("Unknown expression tag " + tag + ".");
+            }
+            expr.cast = string();
+            nodes.add(expr);
+            return expr;
+        }
+
+        private List<Stmt> stmts() throws IOException {
+            var count = in.readInt();
+            List<Stmt> stmts = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                stmts.add(stmt());
+            }
+            return stmts;
+        }
+
+        private List<Expr> exprs() throws IOException {
+            var count = in.readInt();
+            List<Expr> exprs = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                exprs.add(expr());
+            }
+            return exprs;
+        }
+
+        private List<Token> tokens() throws IOException {
+            var count = in.readInt();
+            List<Token> list = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                list.add(token());
+            }
+            return list;
+        }
+
+        private Token token() throws IOException {
+            var index = in.readInt();
+            if (index == -1) return null;
+            if (index < tokens.size()) return tokens.get(index);
+            if (index != tokens.size()) {
+                throw new IOException("Bad token number " + index + ".");
+            }
+
+            var type = TOKEN_TYPES[in.readUnsignedByte()];
+            var token = new Token(type, string(), value(), in.readInt(), in.readInt(), string());
+            tokens.add(token);
+            return token;
+        }
+
+        private String string() throws IOException {
+            var index = in.readInt();
+            return index == -1 ? null : strings[index];
+        }
+
+        private Object value() throws IOException {
+            var tag = in.readByte();
+            switch (tag) {
+                case NIL_VALUE: return null;
+                case BOOLEAN_VALUE: return in.readBoolean();
+                case INTEGER_VALUE: return in.readInt();
+                case DOUBLE_VALUE: return in.readDouble();
+                case CHARACTER_VALUE: return (char) in.readInt();
+                case STRING_VALUE: return string();
+            }
+            throw new IOException("Unknown literal tag " + tag + ".");
+        }
+    }
+}
@@ -0,0 +1,192 @@
+package com.craftinginterpreters.pascal;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+import static com.craftinginterpreters.pascal.TokenType.*;
+
+/**
+ * Unit Loader.  Loads the units named in 'uses' statements.  As soon as a unit is scanned, the units it uses are
+ * started loading on a fork-join pool, so a program's whole graph of units is scanned and parsed with independent
+ * units at the same time.  Each unit is parsed on its own, noting where its 'uses' statements were, and the Parser
+ * puts the units together in the order it meets them, each unit's statements coming after those of the units it
+ * uses, and every unit included once.
+ */
+final class UnitLoader {
+    private final ForkJoinPool pool = ForkJoinPool.commonPool();
+
+    // The context the units are loaded for.  Made current on the pool while loading, so errors and source code go to
+    // the program that uses the units.
+    private final Context context;
+
+    // Units being loaded, by name.
+    private final Map<String, ForkJoinTask<Unit>> units = new ConcurrentHashMap<>();
+
+    // Units included in the program so far.
+    private final Set<String> included = ConcurrentHashMap.newKeySet();
+
+    // Where parsed units are kept between runs.  Null if they aren't.
+    private volatile UnitCache cache;
+
+    // Where the units' files are.  The working directory unless set.
+    private volatile Path directory = Paths.get("");
+
+    /**
+     * A unit, parsed but without the units it uses.
+     */
+    static final class Unit {
+        final String name;
+        final List<Stmt> statements = new ArrayList<>();
+
+        // Units named by its 'uses' statements, and how many of its statements came before each.
+        final List<String> uses = new ArrayList<>();
+        final List<Integer> positions = new ArrayList<>();
+
+        List<Parser.ParseError> errors = List.of();
+
+        // Set if the unit couldn't be read.
+        IOException failure;
+
+        Unit(String name) {
+            this.name = name;
+        }
+
+        void uses(String name, int position) {
+            uses.add(name);
+            positions.add(position);
+        }
+    }
+
+    /**
+     * Creates the loader for a context.
+     *
+     * @param context the context.
+     */
+    UnitLoader(Context context) {
+        this.context = context;
+    }
+
+    /**
+     * Starts loading the units a source uses that aren't loading already.
+     *
+     * @param tokens the source's tokens.
+     */
+    void prefetch(TokenBuffer tokens) {
+        for (int i = 0; i + 1 < tokens.size(); i++) {
+            if (tokens.type(i) == USES && tokens.type(i + 1) == IDENTIFIER) {
+                prefetch(tokens.get(i + 1).lexeme);
+            }
+        }
+    }
+
+    /**
+     * Sets where parsed units are kept between runs.
+     *
+     * @param cache the cache, or null to parse every unit.
+     */
+    void cache(UnitCache cache) {
+        this.cache = cache;
+    }
+
+    /**
+     * Sets where the units' files are.
+     *
+     * @param directory the directory.
+     */
+    void directory(Path directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Includes a unit, and before it the units it uses, unless it has been included already.
+     *
+     * @param name the unit.
+     * @return its statements, and those of the units it uses that weren't included before.
+     * @throws IOException if a unit couldn't be read.
+     */
+    List<Stmt> include(String name) throws IOException {
+        if (!included.add(name)) return new ArrayList<>();
+
+        var unit = units.computeIfAbsent(name, key -> pool.submit(() -> load(key))).join();
+        units.remove(name);
+        if (unit.failure != null) throw unit.failure;
+
+        List<Stmt> result = new ArrayList<>();
+        int next = 0;
+        for (int i = 0; i < unit.uses.size(); i++) {
+            int position = unit.positions.get(i);
+            result.addAll(unit.statements.subList(next, position));
+            result.addAll(include(unit.uses.get(i)));
+            next = position;
+        }
+        result.addAll(unit.statements.subList(next, unit.statements.size()));
+
+        if (unit.errors.isEmpty()) {
+            Console.success(name + ".pas");
+        }
+        else {
+            Console.fail(name + ".pas");
+            for (var error : unit.errors) {
+                Console.error(new RuntimeError(error.token, error.getMessage()));
+            }
+        }
+        return result;
+    }
+
+    private void prefetch(String name) {
+        if (!included.contains(name)) {
+            units.computeIfAbsent(name, key -> pool.submit(() -> load(key)));
+        }
+    }
+
+    // Reads, scans and parses a unit, or takes it from the cache if it's there.  Runs on the pool.
+    //
+    private Unit load(String name) {
+        var unit = new Unit(name);
+        var previous = context.enter();
+        try {
+            var source = Scanner.load(directory.resolve(name + ".pas"));
+            var cache = this.cache;
+            var key = cache == null ? null : UnitCache.key(name + ".pas", source);
+            if (cache != null && cache.read(key, unit)) {
+                context.sourceCode.addFile(name + ".pas", source);
+                unit.uses.forEach(this::prefetch);
+                return unit;
+            }
+
+            var scanner = new Scanner(name + ".pas", source);
+            var tokens = scanner.scanTokens();
+            prefetch(tokens);
+
+            var parser = new Parser(tokens, unit);
+            try {
+                unit.statements.addAll(parser.parse());
+            }
+            catch (Parser.ParseError e) {
+                unit.statements.clear();
+                unit.uses.clear();
+                unit.positions.clear();
+            }
+            unit.errors = parser.errors();
+
+            if (cache != null && !scanner.hadError() && unit.errors.isEmpty()) {
+                cache.write(key, unit);
+            }
+        }
+        catch (IOException e) {
+            unit.failure = e;
+        }
+        finally {
+            Context.leave(previous);
+        }
+        return unit;
+    }
+}
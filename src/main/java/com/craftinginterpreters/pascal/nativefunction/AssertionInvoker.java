@@ -2,21 +2,20 @@ package com.craftinginterpreters.pascal.nativefunction;
 
 import com.craftinginterpreters.pascal.Environment;
 import com.craftinginterpreters.pascal.Interpreter;
-import com.craftinginterpreters.pascal.RuntimeError;
 
-import java.lang.reflect.InvocationTargetException;
+import java.lang.invoke.MethodHandle;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
 import java.util.ArrayList;
 import java.util.List;
 
 public class AssertionInvoker implements Assertion {
-    private final Method method;
+    private final MethodHandle handle;
     private final int arity;
     private final List<String> parameters = new ArrayList<>();
 
     public AssertionInvoker(Method method) {
-        this.method = method;
+        this.handle = NativeFunctionInvoker.bind(method);
         this.arity = method.getParameterCount();
 
         for (var param : method.getParameters()) {
@@ -31,13 +30,7 @@ public class AssertionInvoker implements Assertion {
 
     @Override
     public Object call(Interpreter interpreter, List<Object> arguments) {
-        try {
-            return method.invoke(null, arguments.toArray());
-        }
-        catch (IllegalAccessException | InvocationTargetException e) {
-            throw (RuntimeError)e.getCause();
-        }
-
+        return NativeFunctionInvoker.invoke(handle, arguments);
     }
 
     public static void register(Environment globals, Class clazz) throws NoSuchMethodException {
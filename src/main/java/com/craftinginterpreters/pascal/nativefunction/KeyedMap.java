@@ -0,0 +1,375 @@
+package com.craftinginterpreters.pascal.nativefunction;
+
+import com.craftinginterpreters.pascal.PascalEnum;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Keyed Map.  The map behind PascalMap.  It picks a store for the kind of key it's first given: an array indexed by
+ * ordinal for the values of one enum, and tables keyed by the unboxed key for integers and strings.  Maps given a key
+ * of another kind move their entries to an ordinary HashMap.
+ */
+final class KeyedMap extends AbstractMap<Object, Object> {
+    private static final int INITIAL_CAPACITY = 8;
+
+    // Null until the first entry is added.
+    private Map<Object, Object> store;
+
+    KeyedMap() {
+    }
+
+    KeyedMap(Map<?, ?> entries) {
+        putAll(entries);
+    }
+
+    /**
+     * Creates the store for a key.
+     *
+     * @param key the first key.
+     * @return the store, or a HashMap if there isn't one for the key.
+     */
+    static Map<Object, Object> storeFor(Object key) {
+        if (key instanceof PascalEnum e) return new EnumStore(e.enumName);
+        if (key instanceof Integer) return new IntStore();
+        if (key instanceof String) return new StringStore();
+
+        return new HashMap<>();
+    }
+
+    @Override
+    public Object get(Object key) {
+        if (store == null) return null;
+        return store.get(key);
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        if (store == null) return false;
+        return store.containsKey(key);
+    }
+
+    @Override
+    public Object put(Object key, Object value) {
+        if (store == null) {
+            store = storeFor(key);
+        }
+        else if (store instanceof Store s && !s.accepts(key)) {
+            store = new HashMap<>(store);
+        }
+        return store.put(key, value);
+    }
+
+    @Override
+    public void clear() {
+        store = null;
+    }
+
+    @Override
+    public int size() {
+        return store == null ? 0 : store.size();
+    }
+
+    @Override
+    public Set<Entry<Object, Object>> entrySet() {
+        if (store == null) return Set.of();
+        return store.entrySet();
+    }
+
+    /**
+     * A store for one kind of key.  Entries are kept in parallel arrays and visited in position order.  Entries can't be
+     * removed one at a time.
+     */
+    abstract static class Store extends AbstractMap<Object, Object> {
+        Object[] values;
+        int size;
+
+        // Checks whether a key can be stored.
+        //
+        abstract boolean accepts(Object key);
+
+        // Finds the position of a key the store accepts.  Returns -1 if it isn't there.
+        //
+        abstract int find(Object key);
+
+        // Finds or makes the position of a key the store accepts.
+        //
+        abstract int insert(Object key);
+
+        // Number of positions, and whether each holds an entry.
+        //
+        abstract int limit();
+
+        abstract boolean occupied(int position);
+
+        abstract Object keyAt(int position);
+
+        @Override
+        public Object get(Object key) {
+            if (!accepts(key)) return null;
+
+            int position = find(key);
+            return position < 0 ? null : values[position];
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return accepts(key) && find(key) >= 0;
+        }
+
+        @Override
+        public Object put(Object key, Object value) {
+            int position = insert(key);
+            var previous = values[position];
+            values[position] = value;
+            return previous;
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public Set<Entry<Object, Object>> entrySet() {
+            return new AbstractSet<>() {
+                @Override
+                public Iterator<Entry<Object, Object>> iterator() {
+                    return new Iterator<>() {
+                        private int position = next(0);
+
+                        private int next(int from) {
+                            while (from < limit() && !occupied(from)) from++;
+                            return from;
+                        }
+
+                        @Override
+                        public boolean hasNext() {
+                            return position < limit();
+                        }
+
+                        @Override
+                        public Entry<Object, Object> next() {
+                            if (!hasNext()) throw new NoSuchElementException();
+
+                            var entry = new SimpleImmutableEntry<>(keyAt(position), values[position]);
+                            position = next(position + 1);
+                            return entry;
+                        }
+                    };
+                }
+
+                @Override
+                public int size() {
+                    return size;
+                }
+            };
+        }
+    }
+
+    /**
+     * Values of one enum, kept at their ordinals.
+     */
+    static final class EnumStore extends Store {
+        private final String enumName;
+        private PascalEnum[] keys = new PascalEnum[INITIAL_CAPACITY];
+
+        EnumStore(String enumName) {
+            this.enumName = enumName;
+            this.values = new Object[INITIAL_CAPACITY];
+        }
+
+        @Override
+        boolean accepts(Object key) {
+            return key instanceof PascalEnum e && e.enumName.equals(enumName);
+        }
+
+        @Override
+        int find(Object key) {
+            int ordinal = ((PascalEnum) key).value;
+            return ordinal < keys.length && keys[ordinal] != null ? ordinal : -1;
+        }
+
+        @Override
+        int insert(Object key) {
+            int ordinal = ((PascalEnum) key).value;
+            if (ordinal >= keys.length) {
+                int capacity = Math.max(ordinal + 1, keys.length * 2);
+                keys = Arrays.copyOf(keys, capacity);
+                values = Arrays.copyOf(values, capacity);
+            }
+            if (keys[ordinal] == null) {
+                keys[ordinal] = (PascalEnum) key;
+                size++;
+            }
+            return ordinal;
+        }
+
+        @Override
+        int limit() {
+            return keys.length;
+        }
+
+        @Override
+        boolean occupied(int position) {
+            return keys[position] != null;
+        }
+
+        @Override
+        Object keyAt(int position) {
+            return keys[position];
+        }
+    }
+
+    /**
+     * Keys hashed into an index of positions, with entries kept in the order they were added.  Subclasses hold the
+     * keys themselves, unboxed.
+     */
+    abstract static class HashedStore extends Store {
+        // Position of each entry plus one, or zero for an empty slot.  Always at most half full.
+        private int[] index = new int[INITIAL_CAPACITY * 2];
+
+        HashedStore() {
+            this.values = new Object[INITIAL_CAPACITY];
+        }
+
+        abstract int hash(Object key);
+
+        abstract boolean matches(int position, Object key);
+
+        abstract void storeKey(int position, Object key);
+
+        abstract void resizeKeys(int capacity);
+
+        @Override
+        int find(Object key) {
+            int mask = index.length - 1;
+            for (int slot = spread(hash(key)) & mask; index[slot] != 0; slot = (slot + 1) & mask) {
+                int position = index[slot] - 1;
+                if (matches(position, key)) return position;
+            }
+            return -1;
+        }
+
+        @Override
+        int insert(Object key) {
+            int mask = index.length - 1;
+            int slot = spread(hash(key)) & mask;
+            for (; index[slot] != 0; slot = (slot + 1) & mask) {
+                int position = index[slot] - 1;
+                if (matches(position, key)) return position;
+            }
+
+            if (size == values.length) {
+                grow();
+                return insert(key);
+            }
+            storeKey(size, key);
+            index[slot] = ++size;
+            return size - 1;
+        }
+
+        private void grow() {
+            int capacity = values.length * 2;
+            values = Arrays.copyOf(values, capacity);
+            resizeKeys(capacity);
+
+            index = new int[capacity * 2];
+            int mask = index.length - 1;
+            for (int position = 0; position < size; position++) {
+                int slot = spread(hash(keyAt(position))) & mask;
+                while (index[slot] != 0) slot = (slot + 1) & mask;
+                index[slot] = position + 1;
+            }
+        }
+
+        private static int spread(int hash) {
+            hash *= 0x9E3779B9;
+            return hash ^ (hash >>> 16);
+        }
+
+        @Override
+        int limit() {
+            return size;
+        }
+
+        @Override
+        boolean occupied(int position) {
+            return true;
+        }
+    }
+
+    static final class IntStore extends HashedStore {
+        private int[] keys = new int[INITIAL_CAPACITY];
+
+        @Override
+        boolean accepts(Object key) {
+            return key instanceof Integer;
+        }
+
+        @Override
+        int hash(Object key) {
+            return (int) key;
+        }
+
+        @Override
+        boolean matches(int position, Object key) {
+            return keys[position] == (int) key;
+        }
+
+        @Override
+        void storeKey(int position, Object key) {
+            keys[position] = (int) key;
+        }
+
+        @Override
+        void resizeKeys(int capacity) {
+            keys = Arrays.copyOf(keys, capacity);
+        }
+
+        @Override
+        Object keyAt(int position) {
+            return keys[position];
+        }
+    }
+
+    static final class StringStore extends HashedStore {
+        private String[] keys = new String[INITIAL_CAPACITY];
+
+        @Override
+        boolean accepts(Object key) {
+            return key instanceof String;
+        }
+
+        @Override
+        int hash(Object key) {
+            return key.hashCode();
+        }
+
+        @Override
+        boolean matches(int position, Object key) {
+            return keys[position].equals(key);
+        }
+
+        @Override
+        void storeKey(int position, Object key) {
+            keys[position] = (String) key;
+        }
+
+        @Override
+        void resizeKeys(int capacity) {
+            keys = Arrays.copyOf(keys, capacity);
+        }
+
+        @Override
+        Object keyAt(int position) {
+            return keys[position];
+        }
+    }
+}
@@ -4,19 +4,25 @@ import com.craftinginterpreters.pascal.Environment;
 import com.craftinginterpreters.pascal.Interpreter;
 import com.craftinginterpreters.pascal.PascalCallable;
 
-import java.lang.reflect.InvocationTargetException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
 import java.util.ArrayList;
 import java.util.List;
 
+/**
+ * Native Function Invoker.  Calls a static Java method from Pascal, through a method handle adapted to take and
+ * return Objects, so a call is an exact invocation with the arguments spread out rather than a reflective one.
+ */
 public class NativeFunctionInvoker implements PascalCallable {
-    private final Method method;
+    private final MethodHandle handle;
     private final int arity;
     private final List<String> parameters = new ArrayList<>();
 
     public NativeFunctionInvoker(Method method) {
-        this.method = method;
+        this.handle = bind(method);
         this.arity = method.getParameterCount();
 
         for (var param : method.getParameters()) {
@@ -31,10 +37,47 @@ public class NativeFunctionInvoker implements PascalCallable {
 
     @Override
     public Object call(Interpreter interpreter, List<Object> arguments) {
+        return invoke(handle, arguments);
+    }
+
+    /**
+     * Creates the handle for a static method, taking each parameter as an Object and returning an Object.  Arguments
+     * are unboxed and widened as Method.invoke() would, and a void method returns null.
+     *
+     * @param method the method.
+     * @return the handle.
+     */
+    static MethodHandle bind(Method method) {
         try {
-            return method.invoke(null, arguments.toArray());
+            var handle = MethodHandles.lookup().unreflect(method);
+            return handle.asType(MethodType.genericMethodType(method.getParameterCount()));
+        }
+        catch (IllegalAccessException e) {
+            throw new IllegalArgumentException(e);
+        }
+    }
+
+    /**
+     * Calls a handle created by bind().  Exceptions thrown by the method are passed on as they are.
+     *
+     * @param handle the handle.
+     * @param arguments the arguments.  Must be as many as the method has parameters.
+     * @return the result.
+     */
+    static Object invoke(MethodHandle handle, List<Object> arguments) {
+        try {
+            switch (arguments.size()) {
+                case 0: return handle.invokeExact();
+                case 1: return handle.invokeExact(arguments.get(0));
+                case 2: return handle.invokeExact(arguments.get(0), arguments.get(1));
+                case 3: return handle.invokeExact(arguments.get(0), arguments.get(1), arguments.get(2));
+                default: return handle.invokeWithArguments(arguments);
+            }
+        }
+        catch (RuntimeException | Error e) {
+            throw e;
         }
-        catch (IllegalAccessException | InvocationTargetException e) {
+        catch (Throwable e) {
             throw new RuntimeException(e);
         }
     }
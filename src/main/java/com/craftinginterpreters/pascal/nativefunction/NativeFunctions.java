@@ -73,6 +73,12 @@ public class NativeFunctions {
         return new PascalStack();
     }
 
+    /// Returns a StringBuilder.
+    ///
+    public static PascalStringBuilder StringBuilder() {
+        return new PascalStringBuilder();
+    }
+
 
     private static String stringify(Object object) {
         if (object == null) return "nil";
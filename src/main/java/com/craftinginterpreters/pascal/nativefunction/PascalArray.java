@@ -2,19 +2,20 @@ package com.craftinginterpreters.pascal.nativefunction;
 
 import com.craftinginterpreters.pascal.*;
 
+import java.util.Arrays;
 import java.util.List;
 
-public class PascalArray extends PascalInstance {
-    private final Object[] elements;
+public class PascalArray extends PascalInstance implements TypedCollection {
+    private List<Object> elements;
 
     PascalArray(int size) {
         super(null);
-        elements = new Object[size];
+        elements = Arrays.asList(new Object[size]);
     }
 
     @Override
     public Object get(Token name) {
-        if (name.lexeme.equals("get")) {
+        if (name.lexeme.equalsIgnoreCase("get")) {
             return new PascalCallable() {
                 @Override
                 public int arity() {
@@ -24,11 +25,11 @@ public class PascalArray extends PascalInstance {
                 @Override
                 public Object call(Interpreter interpreter, List<Object> arguments) {
                     int index = (int) arguments.get(0);
-                    return elements[index];
+                    return elements.get(index);
                 }
             };
         }
-        else if (name.lexeme.equals("set")) {
+        else if (name.lexeme.equalsIgnoreCase("set")) {
             return new PascalCallable() {
                 @Override
                 public int arity() {
@@ -39,18 +40,42 @@ public class PascalArray extends PascalInstance {
                 public Object call(Interpreter interpreter, List<Object> arguments) {
                     int index = (int) arguments.get(0);
                     var value = arguments.get(1);
-                    return elements[index] = value;
+                    return set(index, value);
                 }
             };
         }
-        else if (name.lexeme.equals("length")) {
-            return (double) elements.length;
+        else if (name.lexeme.equalsIgnoreCase("length")) {
+            return (double) elements.size();
         }
 
         throw new RuntimeError(name, // [hidden]
                 "Undefined property '" + name.lexeme + "'.");
     }
 
+    @Override
+    public void specialize(String elementType) {
+        var primitive = PrimitiveList.of(elementType, elements);
+        if (primitive != null) elements = primitive;
+    }
+
+    private Object set(int index, Object value) {
+        if (elements instanceof PrimitiveList primitive && !primitive.accepts(value)) {
+            elements = Arrays.asList(elements.toArray());
+        }
+        elements.set(index, value);
+        return value;
+    }
+
+    @Override
+    public Object intrinsic(Intrinsic intrinsic, List<Object> arguments) {
+        switch (intrinsic) {
+            case GET: return elements.get((int) arguments.get(0));
+            case SET: return set((int) arguments.get(0), arguments.get(1));
+            case LENGTH: return (double) elements.size();
+        }
+        return Intrinsic.UNSUPPORTED;
+    }
+
     @Override
     public void set(Token name, Object value) {
         throw new RuntimeError(name, "Can't add properties to arrays.");
@@ -60,9 +85,9 @@ public class PascalArray extends PascalInstance {
     public String toString() {
         var sb = new StringBuilder();
         sb.append("[");
-        for (int i = 0; i < elements.length; i++) {
+        for (int i = 0; i < elements.size(); i++) {
             if (i != 0) sb.append(", ");
-            sb.append(elements[i]);
+            sb.append(elements.get(i));
         }
         sb.append("]");
         return sb.toString();
@@ -5,12 +5,12 @@ import com.craftinginterpreters.pascal.*;
 import java.util.ArrayList;
 import java.util.List;
 
-public class PascalList extends PascalInstance {
-    public final List list;
+public class PascalList extends PascalInstance implements TypedCollection {
+    public List<Object> list;
 
     public PascalList() {
         super(null);
-        list = new ArrayList();
+        list = new ArrayList<>();
     }
 
     @Override
@@ -39,7 +39,7 @@ public class PascalList extends PascalInstance {
                 @Override
                 public Object call(Interpreter interpreter, List<Object> arguments) {
                     var value = arguments.get(0);
-                    return list.add(value);
+                    return writable(value).add(value);
                 }
             };
         }
@@ -50,6 +50,31 @@ public class PascalList extends PascalInstance {
         throw new RuntimeError(name, "Undefined property '" + name.lexeme + "'.");
     }
 
+    @Override
+    public void specialize(String elementType) {
+        var primitive = PrimitiveList.of(elementType, list);
+        if (primitive != null) list = primitive;
+    }
+
+    // The list to store a value in, after moving to an ordinary list if the value doesn't fit a primitive one.
+    //
+    private List<Object> writable(Object value) {
+        if (list instanceof PrimitiveList primitive && !primitive.accepts(value)) {
+            list = new ArrayList<>(list);
+        }
+        return list;
+    }
+
+    @Override
+    public Object intrinsic(Intrinsic intrinsic, List<Object> arguments) {
+        switch (intrinsic) {
+            case GET: return list.get((int) arguments.get(0));
+            case ADD: return writable(arguments.get(0)).add(arguments.get(0));
+            case LENGTH: return list.size();
+        }
+        return Intrinsic.UNSUPPORTED;
+    }
+
     @Override
     public void set(Token name, Object value) {
         throw new RuntimeError(name, "Can't add properties to lists.");
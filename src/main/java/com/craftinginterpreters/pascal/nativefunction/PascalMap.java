@@ -2,20 +2,20 @@ package com.craftinginterpreters.pascal.nativefunction;
 
 import com.craftinginterpreters.pascal.*;
 
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
 public class PascalMap extends PascalInstance {
-    public final Map map;
+    public final Map<Object, Object> map;
 
-    public PascalMap(Map map) {
+    public PascalMap(Map<?, ?> map) {
         super(null);
-        this.map = map;
+        this.map = new KeyedMap(map);
     }
 
     public PascalMap() {
-        this(new HashMap());
+        super(null);
+        this.map = new KeyedMap();
     }
 
     @Override
@@ -68,6 +68,16 @@ public class PascalMap extends PascalInstance {
         throw new RuntimeError(name, "Undefined property '" + name.lexeme + "'.");
     }
 
+    @Override
+    public Object intrinsic(Intrinsic intrinsic, List<Object> arguments) {
+        switch (intrinsic) {
+            case GET: return map.get(arguments.get(0));
+            case PUT: return map.put(arguments.get(0), arguments.get(1));
+            case CONTAINS: return map.containsKey(arguments.get(0));
+        }
+        return Intrinsic.UNSUPPORTED;
+    }
+
     @Override
     public void set(Token name, Object value) {
         throw new RuntimeError(name, "Can't add properties to maps.");
@@ -2,15 +2,16 @@ package com.craftinginterpreters.pascal.nativefunction;
 
 import com.craftinginterpreters.pascal.*;
 
+import java.util.EmptyStackException;
 import java.util.List;
 import java.util.Stack;
 
-public class PascalStack extends PascalInstance {
-    public final Stack stack;
+public class PascalStack extends PascalInstance implements TypedCollection {
+    public List<Object> stack;
 
     public PascalStack() {
         super(null);
-        stack = new Stack();
+        stack = new Stack<>();
     }
 
     @Override
@@ -24,7 +25,7 @@ public class PascalStack extends PascalInstance {
 
                 @Override
                 public Object call(Interpreter interpreter, List<Object> arguments) {
-                    return stack.pop();
+                    return pop();
                 }
             };
         }
@@ -50,7 +51,7 @@ public class PascalStack extends PascalInstance {
 
                 @Override
                 public Object call(Interpreter interpreter, List<Object> arguments) {
-                    return stack.peek();
+                    return peek();
                 }
             };
         }
@@ -64,7 +65,7 @@ public class PascalStack extends PascalInstance {
                 @Override
                 public Object call(Interpreter interpreter, List<Object> arguments) {
                     var value = arguments.get(0);
-                    return stack.push(value);
+                    return push(value);
                 }
             };
         }
@@ -75,6 +76,46 @@ public class PascalStack extends PascalInstance {
         throw new RuntimeError(name, "Undefined property '" + name.lexeme + "'.");
     }
 
+    @Override
+    public void specialize(String elementType) {
+        var primitive = PrimitiveList.of(elementType, stack);
+        if (primitive != null) stack = primitive;
+    }
+
+    private Object push(Object value) {
+        if (stack instanceof PrimitiveList primitive && !primitive.accepts(value)) {
+            var plain = new Stack<Object>();
+            plain.addAll(stack);
+            stack = plain;
+        }
+        stack.add(value);
+        return value;
+    }
+
+    private Object pop() {
+        if (stack.isEmpty()) throw new EmptyStackException();
+
+        return stack.remove(stack.size() - 1);
+    }
+
+    private Object peek() {
+        if (stack.isEmpty()) throw new EmptyStackException();
+
+        return stack.get(stack.size() - 1);
+    }
+
+    @Override
+    public Object intrinsic(Intrinsic intrinsic, List<Object> arguments) {
+        switch (intrinsic) {
+            case POP: return pop();
+            case ISEMPTY: return stack.isEmpty();
+            case PEEK: return peek();
+            case PUSH: return push(arguments.get(0));
+            case LENGTH: return stack.size();
+        }
+        return Intrinsic.UNSUPPORTED;
+    }
+
     @Override
     public void set(Token name, Object value) {
         throw new RuntimeError(name, "Can't add properties to lists.");
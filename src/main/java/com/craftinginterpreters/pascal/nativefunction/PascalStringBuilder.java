@@ -0,0 +1,78 @@
+package com.craftinginterpreters.pascal.nativefunction;
+
+import com.craftinginterpreters.pascal.*;
+
+import java.util.List;
+
+/**
+ * String Builder.  Builds a string in place, so appending to it doesn't copy what has been built so far.
+ */
+public class PascalStringBuilder extends PascalInstance {
+    public final StringBuilder builder = new StringBuilder();
+
+    public PascalStringBuilder() {
+        super(null);
+    }
+
+    @Override
+    public Object get(Token name) {
+        if (name.lexeme.equalsIgnoreCase("append")) {
+            return new PascalCallable() {
+                @Override
+                public int arity() {
+                    return 1;
+                }
+
+                @Override
+                public Object call(Interpreter interpreter, List<Object> arguments) {
+                    return append(arguments.get(0));
+                }
+            };
+        }
+        else if (name.lexeme.equalsIgnoreCase("tostring")) {
+            return new PascalCallable() {
+                @Override
+                public int arity() {
+                    return 0;
+                }
+
+                @Override
+                public Object call(Interpreter interpreter, List<Object> arguments) {
+                    return builder.toString();
+                }
+            };
+        }
+        else if (name.lexeme.equalsIgnoreCase("length")) {
+            return builder.length();
+        }
+
+        throw new RuntimeError(name, "Undefined property '" + name.lexeme + "'.");
+    }
+
+    @Override
+    public Object intrinsic(Intrinsic intrinsic, List<Object> arguments) {
+        switch (intrinsic) {
+            case APPEND: return append(arguments.get(0));
+            case TOSTRING: return builder.toString();
+            case LENGTH: return builder.length();
+        }
+        return Intrinsic.UNSUPPORTED;
+    }
+
+    @Override
+    public void set(Token name, Object value) {
+        throw new RuntimeError(name, "Can't add properties to string builders.");
+    }
+
+    // Appends a value the way Str() would write it, and returns the builder so appends can be chained.
+    //
+    private PascalStringBuilder append(Object value) {
+        builder.append(NativeFunctions.Str(value));
+        return this;
+    }
+
+    @Override
+    public String toString() {
+        return builder.toString();
+    }
+}
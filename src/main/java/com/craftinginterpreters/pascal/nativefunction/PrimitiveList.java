@@ -0,0 +1,247 @@
+package com.craftinginterpreters.pascal.nativefunction;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Objects;
+import java.util.RandomAccess;
+
+/**
+ * Primitive List.  A list backed by an array of one primitive type, so its elements aren't boxed while they're
+ * stored.  It holds values of that type and nil, which is kept in a bit set created the first time it's needed.
+ * Collections declared with a primitive element type use one, and move their elements to an ordinary list if they
+ * are ever given a value of another type.
+ */
+abstract class PrimitiveList extends AbstractList<Object> implements RandomAccess {
+    private static final int INITIAL_CAPACITY = 10;
+
+    int size;
+
+    // Positions holding nil.  Null if there are none.
+    private BitSet nils;
+
+    /**
+     * Creates an empty list for an element type.
+     *
+     * @param elementType the declared element type.
+     * @return the list, or null if the type isn't one with a primitive list.
+     */
+    static PrimitiveList of(String elementType) {
+        switch (elementType.toLowerCase()) {
+            case "integer": return new IntList();
+            case "double": return new DoubleList();
+            case "char": return new CharList();
+            case "boolean": return new BooleanList();
+        }
+        return null;
+    }
+
+    /**
+     * Creates a list for an element type holding the given elements, if it can hold them all.
+     *
+     * @param elementType the declared element type.
+     * @param elements the elements.
+     * @return the list, or null if the type isn't one with a primitive list or an element isn't of the type.
+     */
+    static PrimitiveList of(String elementType, Collection<?> elements) {
+        var list = of(elementType);
+        if (list == null) return null;
+
+        for (var element : elements) {
+            if (!list.accepts(element)) return null;
+        }
+        list.addAll(elements);
+        return list;
+    }
+
+    /**
+     * Checks whether a value can be stored.
+     *
+     * @param value the value.
+     * @return true if it's nil or of the list's type.
+     */
+    final boolean accepts(Object value) {
+        return value == null || holds(value);
+    }
+
+    // The primitive form.  load() and store() see only positions that don't hold nil.
+    //
+    abstract boolean holds(Object value);
+
+    abstract Object load(int index);
+
+    abstract void store(int index, Object value);
+
+    abstract int capacity();
+
+    abstract void resize(int capacity);
+
+    @Override
+    public Object get(int index) {
+        Objects.checkIndex(index, size);
+        if (nils != null && nils.get(index)) return null;
+
+        return load(index);
+    }
+
+    @Override
+    public Object set(int index, Object value) {
+        var previous = get(index);
+        put(index, value);
+        return previous;
+    }
+
+    @Override
+    public boolean add(Object value) {
+        if (size == capacity()) {
+            resize(Math.max(size * 2, INITIAL_CAPACITY));
+        }
+        put(size++, value);
+        modCount++;
+        return true;
+    }
+
+    @Override
+    public Object remove(int index) {
+        var previous = get(index);
+        for (int i = index; i < size - 1; i++) {
+            put(i, get(i + 1));
+        }
+        size--;
+        if (nils != null) nils.clear(size);
+        modCount++;
+        return previous;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    private void put(int index, Object value) {
+        if (value == null) {
+            if (nils == null) nils = new BitSet();
+            nils.set(index);
+            return;
+        }
+        if (nils != null) nils.clear(index);
+        store(index, value);
+    }
+
+    static final class IntList extends PrimitiveList {
+        private int[] elements = new int[0];
+
+        @Override
+        boolean holds(Object value) {
+            return value instanceof Integer;
+        }
+
+        @Override
+        Object load(int index) {
+            return elements[index];
+        }
+
+        @Override
+        void store(int index, Object value) {
+            elements[index] = (int) value;
+        }
+
+        @Override
+        int capacity() {
+            return elements.length;
+        }
+
+        @Override
+        void resize(int capacity) {
+            elements = Arrays.copyOf(elements, capacity);
+        }
+    }
+
+    static final class DoubleList extends PrimitiveList {
+        private double[] elements = new double[0];
+
+        @Override
+        boolean holds(Object value) {
+            return value instanceof Double;
+        }
+
+        @Override
+        Object load(int index) {
+            return elements[index];
+        }
+
+        @Override
+        void store(int index, Object value) {
+            elements[index] = (double) value;
+        }
+
+        @Override
+        int capacity() {
+            return elements.length;
+        }
+
+        @Override
+        void resize(int capacity) {
+            elements = Arrays.copyOf(elements, capacity);
+        }
+    }
+
+    static final class CharList extends PrimitiveList {
+        private char[] elements = new char[0];
+
+        @Override
+        boolean holds(Object value) {
+            return value instanceof Character;
+        }
+
+        @Override
+        Object load(int index) {
+            return elements[index];
+        }
+
+        @Override
+        void store(int index, Object value) {
+            elements[index] = (char) value;
+        }
+
+        @Override
+        int capacity() {
+            return elements.length;
+        }
+
+        @Override
+        void resize(int capacity) {
+            elements = Arrays.copyOf(elements, capacity);
+        }
+    }
+
+    static final class BooleanList extends PrimitiveList {
+        private boolean[] elements = new boolean[0];
+
+        @Override
+        boolean holds(Object value) {
+            return value instanceof Boolean;
+        }
+
+        @Override
+        Object load(int index) {
+            return elements[index];
+        }
+
+        @Override
+        void store(int index, Object value) {
+            elements[index] = (boolean) value;
+        }
+
+        @Override
+        int capacity() {
+            return elements.length;
+        }
+
+        @Override
+        void resize(int capacity) {
+            elements = Arrays.copyOf(elements, capacity);
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package com.craftinginterpreters.pascal.nativefunction;
+
+/**
+ * Typed Collection.  A native collection that can store its elements unboxed when it's declared with a primitive
+ * element type, such as 'List of Integer'.
+ */
+public interface TypedCollection {
+    /**
+     * Switches to unboxed storage if the element type is primitive and every element is of that type.  Otherwise
+     * nothing changes.
+     *
+     * @param elementType the declared element type.
+     */
+    void specialize(String elementType);
+}
@@ -0,0 +1,24 @@
+package com.craftinginterpreters.pascal.vm;
+
+import java.util.List;
+
+/**
+ * A method together with the instance it was read from.  The owner is the class that declares the method, which
+ * is where 'super' starts looking.
+ */
+class BoundMethod {
+    final Object receiver;
+    final VmClass owner;
+    final List<Closure> overloads;
+
+    BoundMethod(Object receiver, VmClass owner, List<Closure> overloads) {
+        this.receiver = receiver;
+        this.owner = owner;
+        this.overloads = overloads;
+    }
+
+    @Override
+    public String toString() {
+        return overloads.get(0).toString();
+    }
+}
@@ -0,0 +1,22 @@
+package com.craftinginterpreters.pascal.vm;
+
+/**
+ * A function together with the variables it captured from the functions around it.  Methods are closures as well,
+ * usually with nothing captured.
+ */
+class Closure {
+    static final Upvalue[] NONE = new Upvalue[0];
+
+    final CompiledFunction function;
+    final Upvalue[] upvalues;
+
+    Closure(CompiledFunction function, Upvalue[] upvalues) {
+        this.function = function;
+        this.upvalues = upvalues;
+    }
+
+    @Override
+    public String toString() {
+        return function.toString();
+    }
+}
@@ -0,0 +1,180 @@
+package com.craftinginterpreters.pascal.vm;
+
+import com.craftinginterpreters.pascal.Token;
+import com.craftinginterpreters.pascal.TokenType;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Compiled Function.  The bytecode, line table and constant pool of one function, method or the top-level script.
+ */
+public class CompiledFunction {
+    public final String name;
+    public final String fileName;
+    public final String[] parameterTypes;
+    public final boolean isInitializer;
+
+    // Number of variables captured from the functions around it; a function that captures some is made into a
+    // Closure when its declaration runs.
+    public int upvalueCount = 0;
+
+    byte[] code = new byte[64];
+    int count = 0;
+
+    // The line table: for each byte of code, the file, the line, the offset on the line and the length of the token
+    // it came from.  The file is null where it's the function's own, and may differ in the script, which holds the
+    // top-level code of every unit.
+    String[] files = new String[64];
+    int[] lines = new int[64];
+    int[] columns = new int[64];
+    int[] widths = new int[64];
+    Object[] constants;
+
+    private final List<Object> constantList = new ArrayList<>();
+    private final Map<Object, Integer> constantIndex = new HashMap<>();
+
+    // Property names as tokens, for the collection natives.  Built on first use.
+    private Token[] names;
+
+    /**
+     * Constructor.
+     *
+     * @param name name of the function.
+     * @param fileName source file.
+     * @param parameterTypes declared parameter types; 'Any' when untyped.
+     * @param isInitializer is it a class initializer?
+     */
+    public CompiledFunction(String name, String fileName, String[] parameterTypes, boolean isInitializer) {
+        this.name = name;
+        this.fileName = fileName;
+        this.parameterTypes = parameterTypes;
+        this.isInitializer = isInitializer;
+    }
+
+    public int arity() {
+        return parameterTypes.length;
+    }
+
+    /**
+     * Appends a byte of code.
+     *
+     * @param value the byte.
+     * @param file source file it came from.
+     * @param line source line it came from.
+     * @param column offset on the line of the token it came from.
+     * @param width length of the token it came from.
+     * @return offset of the byte.
+     */
+    public int emit(int value, String file, int line, int column, int width) {
+        if (count == code.length) {
+            code = Arrays.copyOf(code, count * 2);
+            files = Arrays.copyOf(files, count * 2);
+            lines = Arrays.copyOf(lines, count * 2);
+            columns = Arrays.copyOf(columns, count * 2);
+            widths = Arrays.copyOf(widths, count * 2);
+        }
+        code[count] = (byte) value;
+        files[count] = Objects.equals(fileName, file) ? null : file;
+        lines[count] = line;
+        columns[count] = column;
+        widths[count] = width;
+        return count++;
+    }
+
+    /**
+     * Appends a two byte operand.
+     *
+     * @param value the operand.
+     * @param file source file it came from.
+     * @param line source line it came from.
+     * @param column offset on the line of the token it came from.
+     * @param width length of the token it came from.
+     * @return offset of the operand.
+     */
+    public int emitShort(int value, String file, int line, int column, int width) {
+        var offset = emit((value >> 8) & 0xff, file, line, column, width);
+        emit(value & 0xff, file, line, column, width);
+        return offset;
+    }
+
+    /**
+     * Overwrites a two byte operand, such as a forward jump target.
+     *
+     * @param offset offset of the operand.
+     * @param value the new value.
+     */
+    public void patchShort(int offset, int value) {
+        code[offset] = (byte) ((value >> 8) & 0xff);
+        code[offset + 1] = (byte) (value & 0xff);
+    }
+
+    /**
+     * Size of the code so far, which is also the offset of the next instruction.
+     */
+    public int size() {
+        return count;
+    }
+
+    /**
+     * Adds a constant to the pool, reusing an equal constant of the same type.  Functions are never shared.
+     *
+     * @param value the constant.
+     * @return index of the constant.
+     */
+    public int addConstant(Object value) {
+        if (value instanceof CompiledFunction) {
+            constantList.add(value);
+            return constantList.size() - 1;
+        }
+        var key = value == null ? List.of() : List.of(value.getClass(), value);
+        var index = constantIndex.get(key);
+        if (index == null) {
+            constantList.add(value);
+            index = constantList.size() - 1;
+            constantIndex.put(key, index);
+        }
+        return index;
+    }
+
+    /**
+     * Ends compilation; trims the code and freezes the constant pool.
+     */
+    public void finish() {
+        code = Arrays.copyOf(code, count);
+        files = Arrays.copyOf(files, count);
+        lines = Arrays.copyOf(lines, count);
+        columns = Arrays.copyOf(columns, count);
+        widths = Arrays.copyOf(widths, count);
+        constants = constantList.toArray();
+    }
+
+    // Where the byte at an offset came from, as a token for an error to point at.  Only the length of its text is
+    // kept, which is all the caret under the error needs.
+    //
+    Token position(int offset) {
+        var file = files[offset] != null ? files[offset] : fileName;
+        return new Token(TokenType.IDENTIFIER, " ".repeat(widths[offset]), null, lines[offset], columns[offset], file);
+    }
+
+    Token name(int constant, int line) {
+        if (names == null) {
+            names = new Token[constants.length];
+        }
+        var token = names[constant];
+        if (token == null) {
+            token = new Token(TokenType.IDENTIFIER, (String) constants[constant], null, line, 0, fileName);
+            names[constant] = token;
+        }
+        return token;
+    }
+
+    @Override
+    public String toString() {
+        return "<fn " + name + ">";
+    }
+}
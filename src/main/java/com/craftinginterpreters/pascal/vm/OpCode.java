@@ -0,0 +1,67 @@
+package com.craftinginterpreters.pascal.vm;
+
+/**
+ * Op codes for the bytecode VM.  Operands follow the op code: one byte for slots and argument counts, two bytes
+ * for constant, global and jump operands.  Jumps are absolute offsets into the function's code.
+ */
+public final class OpCode {
+    public static final byte CONSTANT = 0;       // u16 constant
+    public static final byte NIL = 1;
+    public static final byte TRUE = 2;
+    public static final byte FALSE = 3;
+    public static final byte POP = 4;
+
+    public static final byte GET_LOCAL = 5;      // u8 slot
+    public static final byte SET_LOCAL = 6;      // u8 slot
+    public static final byte GET_GLOBAL = 7;     // u16 global
+    public static final byte SET_GLOBAL = 8;     // u16 global
+    public static final byte DEFINE_GLOBAL = 9;  // u16 global
+    public static final byte GET_NAME = 10;      // u16 global; falls back to a member of 'this'
+    public static final byte SET_NAME = 11;      // u16 global; falls back to a member of 'this'
+    public static final byte GET_PROPERTY = 12;  // u16 name constant
+    public static final byte SET_PROPERTY = 13;  // u16 name constant
+    public static final byte GET_SUPER = 14;     // u16 name constant
+
+    public static final byte EQUAL = 15;
+    public static final byte NOT_EQUAL = 16;
+    public static final byte GREATER = 17;
+    public static final byte GREATER_EQUAL = 18;
+    public static final byte LESS = 19;
+    public static final byte LESS_EQUAL = 20;
+    public static final byte ADD = 21;
+    public static final byte SUBTRACT = 22;
+    public static final byte MULTIPLY = 23;
+    public static final byte DIVIDE = 24;
+    public static final byte NOT = 25;
+    public static final byte NEGATE = 26;
+
+    public static final byte JUMP = 27;                   // u16 target
+    public static final byte JUMP_IF_FALSE = 28;          // u16 target, pops the condition
+    public static final byte JUMP_IF_FALSE_OR_POP = 29;   // u16 target
+    public static final byte JUMP_IF_TRUE_OR_POP = 30;    // u16 target
+
+    public static final byte CALL = 31;          // u8 argument count
+    public static final byte INVOKE = 32;        // u16 name constant, u8 argument count
+    public static final byte RETURN = 33;
+
+    public static final byte SUBSCRIPT = 34;
+    public static final byte MAP = 35;           // u8 entry count
+    public static final byte ENUM = 36;          // u16 enum name constant, u16 value name constant, u16 ordinal
+    public static final byte CLASS = 37;         // u16 name constant
+    public static final byte INHERIT = 38;
+    public static final byte METHOD = 39;        // pops the method's function or closure
+
+    public static final byte PRINT = 40;
+    public static final byte RAISE = 41;
+    public static final byte TRY = 42;           // u16 handler target
+    public static final byte END_TRY = 43;
+    public static final byte IS_TYPE = 44;       // u16 type name constant
+
+    public static final byte CLOSURE = 45;       // u16 function constant, then u8 is-local and u8 index per upvalue
+    public static final byte GET_UPVALUE = 46;   // u8 upvalue
+    public static final byte SET_UPVALUE = 47;   // u8 upvalue
+    public static final byte CLOSE_UPVALUE = 48; // pops a captured local
+
+    private OpCode() {
+    }
+}
@@ -0,0 +1,242 @@
+package com.craftinginterpreters.pascal.vm;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Program.  Output of the bytecode compiler: the top-level script, the table of global names and the test cases.
+ * Can be written to and read back from a stream, so a compiled program runs without scanning or parsing it again.
+ */
+public class Program {
+    private static final int MAGIC = 0x50415343;   // "PASC"
+    private static final int VERSION = 3;
+
+    private static final byte NIL = 0;
+    private static final byte BOOLEAN = 1;
+    private static final byte INTEGER = 2;
+    private static final byte DOUBLE = 3;
+    private static final byte CHARACTER = 4;
+    private static final byte STRING = 5;
+    private static final byte FUNCTION = 6;
+
+    /**
+     * Top-level function, run as a test.  Name is null for functions that aren't test cases.
+     */
+    public record TestCase(String fileName, String name, int global) {
+    }
+
+    public final CompiledFunction script;
+    public final String[] globals;
+    public final List<TestCase> tests;
+    public final int statementCount;
+
+    /**
+     * Constructor.
+     *
+     * @param script the top-level code.
+     * @param globals names of the global variables, by index.
+     * @param tests the test cases, in declaration order.
+     * @param statementCount number of top-level statements in the source.
+     */
+    public Program(CompiledFunction script, String[] globals, List<TestCase> tests, int statementCount) {
+        this.script = script;
+        this.globals = globals;
+        this.tests = tests;
+        this.statementCount = statementCount;
+    }
+
+    /**
+     * Writes the program.
+     *
+     * @param out the stream.
+     * @throws IOException if the stream can't be written.
+     */
+    public void write(DataOutputStream out) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeInt(statementCount);
+
+        out.writeInt(globals.length);
+        for (var global : globals) {
+            out.writeUTF(global);
+        }
+
+        out.writeInt(tests.size());
+        for (var test : tests) {
+            out.writeUTF(test.fileName());
+            out.writeBoolean(test.name() != null);
+            if (test.name() != null) out.writeUTF(test.name());
+            out.writeInt(test.global());
+        }
+        writeFunction(out, script);
+    }
+
+    /**
+     * Reads a program written by write().
+     *
+     * @param in the stream.
+     * @return the program.
+     * @throws IOException if the stream can't be read, or isn't a compiled program.
+     */
+    public static Program read(DataInputStream in) throws IOException {
+        if (in.readInt() != MAGIC) {
+            throw new IOException("Not a compiled Pascal program.");
+        }
+        var version = in.readInt();
+        if (version != VERSION) {
+            throw new IOException("Unsupported bytecode version " + version + ".");
+        }
+        var statementCount = in.readInt();
+
+        var globals = new String[in.readInt()];
+        for (int i = 0; i < globals.length; i++) {
+            globals[i] = in.readUTF();
+        }
+
+        var count = in.readInt();
+        List<TestCase> tests = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            var fileName = in.readUTF();
+            var name = in.readBoolean() ? in.readUTF() : null;
+            tests.add(new TestCase(fileName, name, in.readInt()));
+        }
+        return new Program(readFunction(in), globals, tests, statementCount);
+    }
+
+    private static void writeFunction(DataOutputStream out, CompiledFunction function) throws IOException {
+        out.writeUTF(function.name);
+        out.writeUTF(function.fileName);
+        out.writeBoolean(function.isInitializer);
+        out.writeInt(function.parameterTypes.length);
+        for (var type : function.parameterTypes) {
+            out.writeUTF(type);
+        }
+        out.writeInt(function.upvalueCount);
+
+        out.writeInt(function.count);
+        out.write(function.code, 0, function.count);
+
+        // Positions are run-length encoded; most instructions share a token with their neighbours.
+        int start = 0;
+        List<int[]> runs = new ArrayList<>();
+        while (start < function.count) {
+            int end = start;
+            while (end < function.count && Objects.equals(function.files[end], function.files[start])
+                    && function.lines[end] == function.lines[start]
+                    && function.columns[end] == function.columns[start]
+                    && function.widths[end] == function.widths[start]) end++;
+            runs.add(new int[] { start, end - start });
+            start = end;
+        }
+        out.writeInt(runs.size());
+        for (var run : runs) {
+            var file = function.files[run[0]];
+            out.writeBoolean(file != null);
+            if (file != null) {
+                out.writeUTF(file);
+            }
+            out.writeInt(function.lines[run[0]]);
+            out.writeInt(function.columns[run[0]]);
+            out.writeInt(function.widths[run[0]]);
+            out.writeInt(run[1]);
+        }
+
+        out.writeInt(function.constants.length);
+        for (var constant : function.constants) {
+            writeConstant(out, constant);
+        }
+    }
+
+    private static CompiledFunction readFunction(DataInputStream in) throws IOException {
+        var name = in.readUTF();
+        var fileName = in.readUTF();
+        var isInitializer = in.readBoolean();
+        var parameterTypes = new String[in.readInt()];
+        for (int i = 0; i < parameterTypes.length; i++) {
+            parameterTypes[i] = in.readUTF();
+        }
+        var function = new CompiledFunction(name, fileName, parameterTypes, isInitializer);
+        function.upvalueCount = in.readInt();
+
+        function.count = in.readInt();
+        function.code = new byte[function.count];
+        in.readFully(function.code);
+
+        function.files = new String[function.count];
+        function.lines = new int[function.count];
+        function.columns = new int[function.count];
+        function.widths = new int[function.count];
+        int offset = 0;
+        var runs = in.readInt();
+        for (int i = 0; i < runs; i++) {
+            var file = in.readBoolean() ? in.readUTF() : null;
+            var line = in.readInt();
+            var column = in.readInt();
+            var width = in.readInt();
+            var length = in.readInt();
+            Arrays.fill(function.files, offset, offset + length, file);
+            Arrays.fill(function.lines, offset, offset + length, line);
+            Arrays.fill(function.columns, offset, offset + length, column);
+            Arrays.fill(function.widths, offset, offset + length, width);
+            offset += length;
+        }
+
+        function.constants = new Object[in.readInt()];
+        for (int i = 0; i < function.constants.length; i++) {
+            function.constants[i] = readConstant(in);
+        }
+        return function;
+    }
+
+    private static void writeConstant(DataOutputStream out, Object constant) throws IOException {
+        if (constant == null) {
+            out.writeByte(NIL);
+        }
+        else if (constant instanceof Boolean b) {
+            out.writeByte(BOOLEAN);
+            out.writeBoolean(b);
+        }
+        else if (constant instanceof Integer i) {
+            out.writeByte(INTEGER);
+            out.writeInt(i);
+        }
+        else if (constant instanceof Double d) {
+            out.writeByte(DOUBLE);
+            out.writeDouble(d);
+        }
+        else if (constant instanceof Character c) {
+            out.writeByte(CHARACTER);
+            out.writeChar(c);
+        }
+        else if (constant instanceof String s) {
+            out.writeByte(STRING);
+            out.writeUTF(s);
+        }
+        else if (constant instanceof CompiledFunction function) {
+            out.writeByte(FUNCTION);
+            writeFunction(out, function);
+        }
+        else {
+            throw new IOException("Can't write constant of type " + constant.getClass().getSimpleName() + ".");
+        }
+    }
+
+    private static Object readConstant(DataInputStream in) throws IOException {
+        var tag = in.readByte();
+        switch (tag) {
+            case NIL: return null;
+            case BOOLEAN: return in.readBoolean();
+            case INTEGER: return in.readInt();
+            case DOUBLE: return in.readDouble();
+            case CHARACTER: return in.readChar();
+            case STRING: return in.readUTF();
+            case FUNCTION: return readFunction(in);
+        }
+        throw new IOException("Unknown constant tag " + tag + ".");
+    }
+}
@@ -0,0 +1,18 @@
+package com.craftinginterpreters.pascal.vm;
+
+/**
+ * A variable captured by a closure.  While the function that declared the variable is running the upvalue is open,
+ * and refers to the variable's stack slot.  When the variable goes out of scope, its value is moved in here.
+ */
+class Upvalue {
+    // Stack slot of the variable, or -1 once closed.
+    int slot;
+    Object value;
+
+    // The next open upvalue, lower on the stack.
+    Upvalue next;
+
+    Upvalue(int slot) {
+        this.slot = slot;
+    }
+}
@@ -0,0 +1,1033 @@
+package com.craftinginterpreters.pascal.vm;
+
+import com.craftinginterpreters.pascal.Console;
+import com.craftinginterpreters.pascal.ErrorHandler;
+import com.craftinginterpreters.pascal.PascalCallable;
+import com.craftinginterpreters.pascal.PascalEnum;
+import com.craftinginterpreters.pascal.PascalInstance;
+import com.craftinginterpreters.pascal.RuntimeError;
+import com.craftinginterpreters.pascal.Token;
+import com.craftinginterpreters.pascal.TokenType;
+import com.craftinginterpreters.pascal.nativefunction.NativeFunctionInvoker;
+import com.craftinginterpreters.pascal.nativefunction.NativeFunctions;
+import com.craftinginterpreters.pascal.nativefunction.PascalList;
+import com.craftinginterpreters.pascal.nativefunction.PascalMap;
+import com.craftinginterpreters.pascal.nativefunction.PascalStack;
+
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * VM.  A stack machine that runs the bytecode in a Program.  Locals live in stack slots above the callee, so a call
+ * allocates nothing but the frame, which is reused.  Behaves the same as the Interpreter, including its errors.
+ */
+public class VM {
+    private static final Object UNDEFINED = new Object();
+
+    private static final int FRAMES_MAX = 65536;
+
+    // Kept free above the top of the stack on every call; enough for a function's locals and temporaries.
+    private static final int STACK_HEADROOM = 1024;
+
+    private static final class Frame {
+        CompiledFunction function;
+        Upvalue[] upvalues;
+        int ip;
+        int base;
+        VmClass owner;
+    }
+
+    // Thrown by the VM itself.  Turned into a RuntimeError, pointing at the source of the failing instruction, when
+    // caught.
+    private static final class VmError extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        VmError(String message) {
+            super(message, null, false, false);
+        }
+    }
+
+    // Assertions report the line of the call, which the natives in Assertions read from the call expression.
+    private enum Assertion {
+        ASSERT_TRUE(1),
+        ASSERT_EQUAL(2);
+
+        final int arity;
+
+        Assertion(int arity) {
+            this.arity = arity;
+        }
+    }
+
+    private final ErrorHandler errorHandler;
+    private final Map<String, Object> natives = new HashMap<>();
+
+    private String[] globalNames = new String[0];
+    private Object[] globals = new Object[0];
+
+    private Object[] stack = new Object[STACK_HEADROOM * 4];
+    private int sp = 0;
+
+    private Frame[] frames = new Frame[64];
+    private int frameCount = 0;
+
+    // Active try blocks: the frame, stack height and handler offset of each.
+    private int[] handlerFrames = new int[16];
+    private int[] handlerHeights = new int[16];
+    private int[] handlerTargets = new int[16];
+    private int handlerCount = 0;
+
+    // Upvalues still pointing into the stack, highest slot first.
+    private Upvalue openUpvalues = null;
+
+    /**
+     * Constructor.
+     *
+     * @param errorHandler receives runtime errors from test cases.
+     */
+    public VM(ErrorHandler errorHandler) {
+        this.errorHandler = errorHandler;
+
+        for (var method : NativeFunctions.class.getMethods()) {
+            if (Modifier.isStatic(method.getModifiers())) {
+                natives.put(method.getName(), new NativeFunctionInvoker(method));
+            }
+        }
+        natives.put("AssertTrue", Assertion.ASSERT_TRUE);
+        natives.put("AssertEqual", Assertion.ASSERT_EQUAL);
+
+        for (int i = 0; i < frames.length; i++) {
+            frames[i] = new Frame();
+        }
+    }
+
+    /**
+     * Loads a program, binding its globals to the natives, and runs the top-level code.
+     *
+     * @param program the program.
+     */
+    public void run(Program program) {
+        globalNames = program.globals;
+        globals = new Object[globalNames.length];
+        for (int i = 0; i < globals.length; i++) {
+            globals[i] = natives.getOrDefault(globalNames[i], UNDEFINED);
+        }
+        call(program.script);
+    }
+
+    /**
+     * Runs a program, then its test cases grouped by file, the same as Interpreter.runTests().
+     *
+     * @param program the program.
+     */
+    public void runTests(Program program) {
+        try {
+            run(program);
+
+            Map<String, List<Program.TestCase>> tests = new HashMap<>();
+            for (var test : program.tests) {
+                tests.computeIfAbsent(test.fileName(), k -> new ArrayList<>()).add(test);
+            }
+
+            Console.info("Running " + program.statementCount + " tests...");
+            for (var key : tests.keySet()) {
+                if ("REPL".equals(key)) continue;
+                Console.subheader(key);
+
+                for (var test : tests.get(key)) {
+                    try {
+                        call(globals[test.global()]);
+                        if (test.name() != null)
+                            Console.info("Test: " + test.name() + " " + ".".repeat(55 - test.name().length()) + " [ " + Console.ANSI_GREEN + "PASS" + Console.ANSI_RESET + " ]");
+                    }
+                    catch (RuntimeError error) {
+                        Console.info("Test: " + test.name() + " " + ".".repeat(55 - String.valueOf(test.name()).length()) + " [ " + Console.ANSI_RED + "FAIL" + Console.ANSI_RESET + " ]");
+
+                        Console.error(error);
+                        errorHandler.runtimeError(error);
+                    }
+                }
+                Console.info("");
+            }
+        }
+        catch (RuntimeError error) {
+            Console.error(error);
+            errorHandler.runtimeError(error);
+        }
+    }
+
+    /**
+     * Gets a global variable.
+     *
+     * @param name name of the variable.
+     * @return the value, or null if there's no such global.
+     */
+    public Object getGlobal(String name) {
+        for (int i = 0; i < globalNames.length; i++) {
+            if (globalNames[i].equals(name)) {
+                var value = globals[i];
+                return value == UNDEFINED ? null : value;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Calls a function, method or class from outside the VM.
+     *
+     * @param callee the thing to call.
+     * @param arguments the arguments.
+     * @return the result.
+     */
+    public Object call(Object callee, Object... arguments) {
+        var base = sp;
+        ensureStack(arguments.length + 1);
+        stack[sp++] = callee;
+        for (var argument : arguments) {
+            stack[sp++] = argument;
+        }
+
+        try {
+            if (!callValue(callee, arguments.length)) {
+                return stack[--sp];
+            }
+        }
+        catch (VmError e) {
+            sp = base;
+            var caller = frameCount > 0 ? frames[frameCount - 1] : null;
+            throw new RuntimeError(caller == null ? token(null, 0) : token(caller.function, caller.ip), e.getMessage());
+        }
+        return execute(frameCount - 1);
+    }
+
+    // Runs until the frame at 'exit' returns, and returns its result.
+    //
+    private Object execute(int exit) {
+        var frame = frames[frameCount - 1];
+        var function = frame.function;
+        var code = function.code;
+        var constants = function.constants;
+        var stack = this.stack;
+        int base = frame.base;
+        int ip = frame.ip;
+
+        // The stack pointer lives in a local while running, and is written back around calls.
+        int sp = this.sp;
+
+        for (;;) {
+            RuntimeError error;
+            try {
+                for (;;) {
+                    switch (code[ip++]) {
+                        case OpCode.CONSTANT:
+                            stack[sp++] = constants[((code[ip] & 0xff) << 8) | (code[ip + 1] & 0xff)];
+                            ip += 2;
+                            break;
+
+                        case OpCode.NIL:
+                            stack[sp++] = null;
+                            break;
+
+                        case OpCode.TRUE:
+                            stack[sp++] = true;
+                            break;
+
+                        case OpCode.FALSE:
+                            stack[sp++] = false;
+                            break;
+
+                        case OpCode.POP:
+                            stack[--sp] = null;
+                            break;
+
+                        case OpCode.GET_LOCAL:
+                            stack[sp++] = stack[base + (code[ip++] & 0xff)];
+                            break;
+
+                        case OpCode.SET_LOCAL:
+                            stack[base + (code[ip++] & 0xff)] = stack[sp - 1];
+                            break;
+
+                        case OpCode.GET_GLOBAL: {
+                            int global = ((code[ip] & 0xff) << 8) | (code[ip + 1] & 0xff);
+                            ip += 2;
+                            var value = globals[global];
+                            if (value == UNDEFINED) {
+                                throw new VmError("Undefined variable '" + globalNames[global] + "'.");
+                            }
+                            stack[sp++] = value;
+                            break;
+                        }
+
+                        case OpCode.GET_UPVALUE: {
+                            var upvalue = frame.upvalues[code[ip++] & 0xff];
+                            stack[sp++] = upvalue.slot >= 0 ? stack[upvalue.slot] : upvalue.value;
+                            break;
+                        }
+
+                        case OpCode.SET_UPVALUE: {
+                            var upvalue = frame.upvalues[code[ip++] & 0xff];
+                            if (upvalue.slot >= 0) {
+                                stack[upvalue.slot] = stack[sp - 1];
+                            }
+                            else {
+                                upvalue.value = stack[sp - 1];
+                            }
+                            break;
+                        }
+
+                        case OpCode.CLOSE_UPVALUE:
+                            closeUpvalues(sp - 1);
+                            stack[--sp] = null;
+                            break;
+
+                        case OpCode.SET_GLOBAL: {
+                            int global = ((code[ip] & 0xff) << 8) | (code[ip + 1] & 0xff);
+                            ip += 2;
+                            if (globals[global] == UNDEFINED) {
+                                throw new VmError("Undefined variable '" + globalNames[global] + "'.");
+                            }
+                            globals[global] = stack[sp - 1];
+                            break;
+                        }
+
+                        case OpCode.DEFINE_GLOBAL: {
+                            int global = ((code[ip] & 0xff) << 8) | (code[ip + 1] & 0xff);
+                            ip += 2;
+                            var value = stack[--sp];
+                            var existing = globals[global];
+                            if (existing != UNDEFINED) {
+                                if (value instanceof CompiledFunction) {
+                                    throw new VmError("Variable already exists!" + existing.getClass());
+                                }
+                                throw new VmError("Redefined: " + globalNames[global]);
+                            }
+                            globals[global] = value;
+                            break;
+                        }
+
+                        case OpCode.GET_NAME: {
+                            int global = ((code[ip] & 0xff) << 8) | (code[ip + 1] & 0xff);
+                            ip += 2;
+                            var value = globals[global];
+                            if (value == UNDEFINED) {
+                                value = getMember(stack[base], globalNames[global]);
+                            }
+                            stack[sp++] = value;
+                            break;
+                        }
+
+                        case OpCode.SET_NAME: {
+                            int global = ((code[ip] & 0xff) << 8) | (code[ip + 1] & 0xff);
+                            ip += 2;
+                            if (globals[global] != UNDEFINED) {
+                                globals[global] = stack[sp - 1];
+                            }
+                            else if (stack[base] instanceof VmInstance instance) {
+                                instance.fields.put(globalNames[global], stack[sp - 1]);
+                            }
+                            else {
+                                throw new VmError("Undefined variable '" + globalNames[global] + "'.");
+                            }
+                            break;
+                        }
+
+                        case OpCode.GET_PROPERTY: {
+                            int name = ((code[ip] & 0xff) << 8) | (code[ip + 1] & 0xff);
+                            ip += 2;
+                            stack[sp - 1] = getProperty(function, name, stack[sp - 1], ip);
+                            break;
+                        }
+
+                        case OpCode.SET_PROPERTY: {
+                            int name = ((code[ip] & 0xff) << 8) | (code[ip + 1] & 0xff);
+                            ip += 2;
+                            var value = stack[--sp];
+                            var object = stack[sp - 1];
+                            if (object instanceof VmInstance instance) {
+                                instance.fields.put((String) constants[name], value);
+                            }
+                            else if (object instanceof PascalInstance instance) {
+                                instance.set(function.name(name, function.lines[ip - 1]), value);
+                            }
+                            else {
+                                throw new VmError("Only instances have fields.");
+                            }
+                            stack[sp - 1] = value;
+                            break;
+                        }
+
+                        case OpCode.GET_SUPER: {
+                            int name = ((code[ip] & 0xff) << 8) | (code[ip + 1] & 0xff);
+                            ip += 2;
+                            var method = (String) constants[name];
+                            var owner = frame.owner.superclass.findOwner(method);
+                            if (owner == null) {
+                                throw new VmError("Undefined property '" + method + "'.");
+                            }
+                            stack[sp++] = new BoundMethod(stack[base], owner, owner.methods.get(method));
+                            break;
+                        }
+
+                        case OpCode.EQUAL: {
+                            var b = stack[--sp];
+                            stack[sp - 1] = isEqual(stack[sp - 1], b);
+                            break;
+                        }
+
+                        case OpCode.NOT_EQUAL: {
+                            var b = stack[--sp];
+                            stack[sp - 1] = !isEqual(stack[sp - 1], b);
+                            break;
+                        }
+
+                        case OpCode.GREATER: {
+                            var b = stack[--sp];
+                            var a = stack[sp - 1];
+                            checkNumberOperands(a, b);
+                            if (a instanceof Integer) stack[sp - 1] = (int) a > (int) b;
+                            else if (a instanceof Double) stack[sp - 1] = (double) a > (double) b;
+                            else stack[sp - 1] = (char) a >= (char) b;
+                            break;
+                        }
+
+                        case OpCode.GREATER_EQUAL: {
+                            var b = stack[--sp];
+                            var a = stack[sp - 1];
+                            checkNumberOperands(a, b);
+                            if (a instanceof Integer) stack[sp - 1] = (int) a >= (int) b;
+                            else if (a instanceof Double) stack[sp - 1] = (double) a >= (double) b;
+                            else stack[sp - 1] = (char) a >= (char) b;
+                            break;
+                        }
+
+                        case OpCode.LESS: {
+                            var b = stack[--sp];
+                            var a = stack[sp - 1];
+                            checkNumberOperands(a, b);
+                            if (a instanceof Integer) stack[sp - 1] = (int) a < (int) b;
+                            else if (a instanceof Double) stack[sp - 1] = (double) a < (double) b;
+                            else stack[sp - 1] = (char) a < (char) b;
+                            break;
+                        }
+
+                        case OpCode.LESS_EQUAL: {
+                            var b = stack[--sp];
+                            var a = stack[sp - 1];
+                            checkNumberOperands(a, b);
+                            if (a instanceof Integer) stack[sp - 1] = (int) a <= (int) b;
+                            else if (a instanceof Double) stack[sp - 1] = (double) a <= (double) b;
+                            else stack[sp - 1] = (char) a <= (char) b;
+                            break;
+                        }
+
+                        case OpCode.ADD: {
+                            var b = stack[--sp];
+                            var a = stack[sp - 1];
+                            if (a instanceof Integer && b instanceof Integer) stack[sp - 1] = (int) a + (int) b;
+                            else if (a instanceof Double && b instanceof Double) stack[sp - 1] = (double) a + (double) b;
+                            else if (a instanceof String || b instanceof String) stack[sp - 1] = stringify(a) + stringify(b);
+                            else throw new VmError("Operands must be two numbers, or two strings.");
+                            break;
+                        }
+
+                        case OpCode.SUBTRACT: {
+                            var b = stack[--sp];
+                            var a = stack[sp - 1];
+                            checkNumberOperands(a, b);
+                            if (a instanceof Double) stack[sp - 1] = (double) a - (double) b;
+                            else stack[sp - 1] = (int) a - (int) b;
+                            break;
+                        }
+
+                        case OpCode.MULTIPLY: {
+                            var b = stack[--sp];
+                            var a = stack[sp - 1];
+                            checkNumberOperands(a, b);
+                            if (a instanceof Double) stack[sp - 1] = (double) a * (double) b;
+                            else stack[sp - 1] = (int) a * (int) b;
+                            break;
+                        }
+
+                        case OpCode.DIVIDE: {
+                            var b = stack[--sp];
+                            var a = stack[sp - 1];
+                            checkNumberOperands(a, b);
+                            if (a instanceof Double) stack[sp - 1] = (double) a / (double) b;
+                            else stack[sp - 1] = (int) a / (int) b;
+                            break;
+                        }
+
+                        case OpCode.NOT:
+                            stack[sp - 1] = !isTruthy(stack[sp - 1]);
+                            break;
+
+                        case OpCode.NEGATE: {
+                            var value = stack[sp - 1];
+                            if (!(value instanceof Integer || value instanceof Double || value instanceof Character)) {
+                                throw new VmError("Operand must be a number.");
+                            }
+                            if (value instanceof Integer) stack[sp - 1] = -(int) value;
+                            else stack[sp - 1] = -(double) value;
+                            break;
+                        }
+
+                        case OpCode.JUMP:
+                            ip = ((code[ip] & 0xff) << 8) | (code[ip + 1] & 0xff);
+                            break;
+
+                        case OpCode.JUMP_IF_FALSE:
+                            if (!isTruthy(stack[--sp])) {
+                                ip = ((code[ip] & 0xff) << 8) | (code[ip + 1] & 0xff);
+                            }
+                            else {
+                                ip += 2;
+                            }
+                            stack[sp] = null;
+                            break;
+
+                        case OpCode.JUMP_IF_FALSE_OR_POP:
+                            if (!isTruthy(stack[sp - 1])) {
+                                ip = ((code[ip] & 0xff) << 8) | (code[ip + 1] & 0xff);
+                            }
+                            else {
+                                stack[--sp] = null;
+                                ip += 2;
+                            }
+                            break;
+
+                        case OpCode.JUMP_IF_TRUE_OR_POP:
+                            if (isTruthy(stack[sp - 1])) {
+                                ip = ((code[ip] & 0xff) << 8) | (code[ip + 1] & 0xff);
+                            }
+                            else {
+                                stack[--sp] = null;
+                                ip += 2;
+                            }
+                            break;
+
+                        case OpCode.CALL: {
+                            int count = code[ip++] & 0xff;
+                            frame.ip = ip;
+                            this.sp = sp;
+                            var pushed = callValue(stack[sp - count - 1], count);
+                            sp = this.sp;
+                            if (pushed) {
+                                frame = frames[frameCount - 1];
+                                function = frame.function;
+                                code = function.code;
+                                constants = function.constants;
+                                stack = this.stack;
+                                base = frame.base;
+                                ip = 0;
+                            }
+                            break;
+                        }
+
+                        case OpCode.INVOKE: {
+                            int name = ((code[ip] & 0xff) << 8) | (code[ip + 1] & 0xff);
+                            int count = code[ip + 2] & 0xff;
+                            ip += 3;
+                            frame.ip = ip;
+                            this.sp = sp;
+                            var pushed = invoke(function, name, count, ip);
+                            sp = this.sp;
+                            if (pushed) {
+                                frame = frames[frameCount - 1];
+                                function = frame.function;
+                                code = function.code;
+                                constants = function.constants;
+                                stack = this.stack;
+                                base = frame.base;
+                                ip = 0;
+                            }
+                            break;
+                        }
+
+                        case OpCode.RETURN: {
+                            var result = stack[--sp];
+                            if (function.isInitializer) {
+                                result = stack[base];
+                            }
+                            while (handlerCount > 0 && handlerFrames[handlerCount - 1] == frameCount - 1) {
+                                handlerCount--;
+                            }
+                            closeUpvalues(base);
+                            Arrays.fill(stack, base, sp, null);
+                            sp = base;
+                            frameCount--;
+                            if (frameCount == exit) {
+                                this.sp = sp;
+                                return result;
+                            }
+                            stack[sp++] = result;
+
+                            frame = frames[frameCount - 1];
+                            function = frame.function;
+                            code = function.code;
+                            constants = function.constants;
+                            base = frame.base;
+                            ip = frame.ip;
+                            break;
+                        }
+
+                        case OpCode.SUBSCRIPT: {
+                            var index = stack[--sp];
+                            stack[sp - 1] = subscript(stack[sp - 1], index);
+                            break;
+                        }
+
+                        case OpCode.MAP: {
+                            int count = code[ip++] & 0xff;
+                            var map = new HashMap<>();
+                            int first = sp - count * 2;
+                            for (int i = first; i < sp; i += 2) {
+                                map.put(stack[i], stack[i + 1]);
+                            }
+                            Arrays.fill(stack, first, sp, null);
+                            sp = first;
+                            stack[sp++] = new PascalMap(map);
+                            break;
+                        }
+
+                        case OpCode.ENUM: {
+                            var enumName = (String) constants[((code[ip] & 0xff) << 8) | (code[ip + 1] & 0xff)];
+                            var name = (String) constants[((code[ip + 2] & 0xff) << 8) | (code[ip + 3] & 0xff)];
+                            int ordinal = ((code[ip + 4] & 0xff) << 8) | (code[ip + 5] & 0xff);
+                            ip += 6;
+                            stack[sp++] = new PascalEnum(enumName, name, ordinal);
+                            break;
+                        }
+
+                        case OpCode.CLASS:
+                            stack[sp++] = new VmClass((String) constants[((code[ip] & 0xff) << 8) | (code[ip + 1] & 0xff)]);
+                            ip += 2;
+                            break;
+
+                        case OpCode.INHERIT: {
+                            var superclass = stack[--sp];
+                            if (!(superclass instanceof VmClass)) {
+                                throw new VmError("Superclass must be a class.");
+                            }
+                            ((VmClass) stack[sp - 1]).superclass = (VmClass) superclass;
+                            break;
+                        }
+
+                        case OpCode.METHOD: {
+                            var method = stack[--sp];
+                            stack[sp] = null;
+                            ((VmClass) stack[sp - 1]).addMethod(method instanceof Closure closure ? closure : new Closure((CompiledFunction) method, Closure.NONE));
+                            break;
+                        }
+
+                        case OpCode.CLOSURE: {
+                            var closed = (CompiledFunction) constants[((code[ip] & 0xff) << 8) | (code[ip + 1] & 0xff)];
+                            ip += 2;
+                            var upvalues = new Upvalue[closed.upvalueCount];
+                            for (int i = 0; i < upvalues.length; i++) {
+                                var isLocal = code[ip++] != 0;
+                                int index = code[ip++] & 0xff;
+                                upvalues[i] = isLocal ? captureUpvalue(base + index) : frame.upvalues[index];
+                            }
+                            stack[sp++] = new Closure(closed, upvalues);
+                            break;
+                        }
+
+                        case OpCode.PRINT:
+                            System.out.println(stringify(stack[--sp]));
+                            stack[sp] = null;
+                            break;
+
+                        case OpCode.RAISE: {
+                            var value = stack[--sp];
+                            throw new RuntimeError(token(function, ip), String.valueOf(value), value);
+                        }
+
+                        case OpCode.TRY:
+                            if (handlerCount == handlerFrames.length) {
+                                handlerFrames = Arrays.copyOf(handlerFrames, handlerCount * 2);
+                                handlerHeights = Arrays.copyOf(handlerHeights, handlerCount * 2);
+                                handlerTargets = Arrays.copyOf(handlerTargets, handlerCount * 2);
+                            }
+                            handlerFrames[handlerCount] = frameCount - 1;
+                            handlerHeights[handlerCount] = sp;
+                            handlerTargets[handlerCount] = ((code[ip] & 0xff) << 8) | (code[ip + 1] & 0xff);
+                            handlerCount++;
+                            ip += 2;
+                            break;
+
+                        case OpCode.END_TRY:
+                            handlerCount--;
+                            break;
+
+                        case OpCode.IS_TYPE: {
+                            var type = constants[((code[ip] & 0xff) << 8) | (code[ip + 1] & 0xff)];
+                            ip += 2;
+                            var matches = exceptionType(stack[sp - 1]).equals(type);
+                            stack[sp++] = matches;
+                            break;
+                        }
+
+                        default:
+                            throw new IllegalStateException("Unknown op code " + code[ip - 1] + ".");
+                    }
+                }
+            }
+            catch (VmError e) {
+                error = new RuntimeError(token(function, ip), e.getMessage());
+            }
+            catch (RuntimeError e) {
+                error = e;
+            }
+
+            // Unwind to the innermost try block, if it belongs to this run.
+            if (handlerCount == 0 || handlerFrames[handlerCount - 1] < exit) {
+                closeUpvalues(frames[exit].base);
+                Arrays.fill(stack, frames[exit].base, sp, null);
+                sp = frames[exit].base;
+                this.sp = sp;
+                frameCount = exit;
+                throw error;
+            }
+            handlerCount--;
+            frameCount = handlerFrames[handlerCount] + 1;
+            closeUpvalues(handlerHeights[handlerCount]);
+            Arrays.fill(stack, handlerHeights[handlerCount], sp, null);
+            sp = handlerHeights[handlerCount];
+
+            var value = error.getValue();
+            stack[sp++] = value != null ? value : error.getMessage();
+
+            frame = frames[frameCount - 1];
+            function = frame.function;
+            code = function.code;
+            constants = function.constants;
+            stack = this.stack;
+            base = frame.base;
+            ip = handlerTargets[handlerCount];
+        }
+    }
+
+    // Calls a value whose arguments are on top of the stack.  Returns true if a frame was pushed, otherwise the
+    // result has replaced the callee and arguments.
+    //
+    private boolean callValue(Object callee, int count) {
+        int base = sp - count - 1;
+
+        if (callee instanceof CompiledFunction function) {
+            if (!matches(function, base + 1, count)) {
+                throw new VmError("No matching signature for function.");
+            }
+            pushFrame(function, null, base, null);
+            return true;
+        }
+        if (callee instanceof Closure closure) {
+            if (!matches(closure.function, base + 1, count)) {
+                throw new VmError("No matching signature for function.");
+            }
+            pushFrame(closure.function, closure.upvalues, base, null);
+            return true;
+        }
+        if (callee instanceof BoundMethod method) {
+            stack[base] = method.receiver;
+            var selected = select(method.overloads, base + 1, count);
+            pushFrame(selected.function, selected.upvalues, base, method.owner);
+            return true;
+        }
+        if (callee instanceof VmClass klass) {
+            stack[base] = new VmInstance(klass);
+
+            var owner = klass.findOwner("Init");
+            if (owner != null) {
+                var initializer = owner.methods.get("Init").get(0);
+                if (count != initializer.function.arity()) {
+                    throw new VmError("Expected " + initializer.function.arity() + " arguments but got " + count + ".");
+                }
+                pushFrame(initializer.function, initializer.upvalues, base, owner);
+                return true;
+            }
+            if (count != 0) {
+                throw new VmError("Expected 0 arguments but got " + count + ".");
+            }
+            return false;
+        }
+        if (callee instanceof Assertion assertion) {
+            if (count != assertion.arity) {
+                throw new VmError("Expected " + assertion.arity + " arguments but got " + count + ".");
+            }
+            assertion(assertion, base + 1);
+            Arrays.fill(stack, base + 1, sp, null);
+            sp = base + 1;
+            stack[base] = null;
+            return false;
+        }
+        if (callee instanceof PascalCallable function) {
+            if (count != function.arity()) {
+                throw new VmError("Expected " + function.arity() + " arguments but got " + count + ".");
+            }
+            var arguments = new ArrayList<>(count);
+            for (int i = base + 1; i < sp; i++) {
+                arguments.add(stack[i]);
+            }
+            var result = function.call(null, arguments);
+            Arrays.fill(stack, base + 1, sp, null);
+            sp = base + 1;
+            stack[base] = result;
+            return false;
+        }
+        throw new VmError("Can only call functions and classes.");
+    }
+
+    // Calls a method on the receiver below the arguments, without creating a bound method.
+    //
+    private boolean invoke(CompiledFunction function, int name, int count, int ip) {
+        int base = sp - count - 1;
+        var receiver = stack[base];
+
+        if (receiver instanceof VmInstance instance) {
+            var method = (String) function.constants[name];
+            if (!method.equalsIgnoreCase("classname") && !instance.fields.containsKey(method)) {
+                var owner = instance.klass.findOwner(method);
+                if (owner != null) {
+                    var selected = select(owner.methods.get(method), base + 1, count);
+                    pushFrame(selected.function, selected.upvalues, base, owner);
+                    return true;
+                }
+            }
+        }
+        var callee = getProperty(function, name, receiver, ip);
+        stack[base] = callee;
+        return callValue(callee, count);
+    }
+
+    private Object getProperty(CompiledFunction function, int name, Object object, int ip) {
+        if (object instanceof VmInstance instance) {
+            return getMember(instance, (String) function.constants[name]);
+        }
+        if (object instanceof PascalInstance instance) {
+            return instance.get(function.name(name, function.lines[ip - 1]));
+        }
+        throw new VmError("Only instances have properties.");
+    }
+
+    // Reads a field or method from 'this', for names that aren't locals or globals.
+    //
+    private Object getMember(Object object, String name) {
+        if (!(object instanceof VmInstance instance)) {
+            throw new VmError("Undefined variable '" + name + "'.");
+        }
+        if (name.equalsIgnoreCase("classname")) {
+            return instance.klass.name;
+        }
+        var value = instance.fields.get(name);
+        if (value != null || instance.fields.containsKey(name)) {
+            return value;
+        }
+        var owner = instance.klass.findOwner(name);
+        if (owner != null) {
+            return new BoundMethod(instance, owner, owner.methods.get(name));
+        }
+        throw new VmError("Undefined property '" + name + "'.");
+    }
+
+    private void pushFrame(CompiledFunction function, Upvalue[] upvalues, int base, VmClass owner) {
+        if (frameCount == FRAMES_MAX) {
+            throw new VmError("Stack overflow.");
+        }
+        if (frameCount == frames.length) {
+            frames = Arrays.copyOf(frames, frameCount * 2);
+            for (int i = frameCount; i < frames.length; i++) {
+                frames[i] = new Frame();
+            }
+        }
+        ensureStack(0);
+
+        var frame = frames[frameCount++];
+        frame.function = function;
+        frame.upvalues = upvalues;
+        frame.ip = 0;
+        frame.base = base;
+        frame.owner = owner;
+    }
+
+    private void ensureStack(int extra) {
+        if (sp + extra + STACK_HEADROOM > stack.length) {
+            stack = Arrays.copyOf(stack, Math.max(stack.length * 2, sp + extra + STACK_HEADROOM));
+        }
+    }
+
+    // Finds the open upvalue for a stack slot, creating it if no closure has captured the slot yet.
+    //
+    private Upvalue captureUpvalue(int slot) {
+        Upvalue previous = null;
+        var upvalue = openUpvalues;
+        while (upvalue != null && upvalue.slot > slot) {
+            previous = upvalue;
+            upvalue = upvalue.next;
+        }
+        if (upvalue != null && upvalue.slot == slot) return upvalue;
+
+        var created = new Upvalue(slot);
+        created.next = upvalue;
+        if (previous == null) {
+            openUpvalues = created;
+        }
+        else {
+            previous.next = created;
+        }
+        return created;
+    }
+
+    // Closes the open upvalues at or above a slot, moving their values off the stack.
+    //
+    private void closeUpvalues(int slot) {
+        while (openUpvalues != null && openUpvalues.slot >= slot) {
+            var upvalue = openUpvalues;
+            upvalue.value = stack[upvalue.slot];
+            upvalue.slot = -1;
+            openUpvalues = upvalue.next;
+            upvalue.next = null;
+        }
+    }
+
+    // Picks the first overload whose parameters accept the arguments.
+    //
+    private Closure select(List<Closure> overloads, int first, int count) {
+        for (var method : overloads) {
+            if (matches(method.function, first, count)) return method;
+        }
+        throw new VmError("No matching signature for function.");
+    }
+
+    private boolean matches(CompiledFunction function, int first, int count) {
+        var types = function.parameterTypes;
+        if (types.length != count) return false;
+
+        for (int i = 0; i < count; i++) {
+            if (!accepts(types[i], stack[first + i])) return false;
+        }
+        return true;
+    }
+
+    private static boolean accepts(String type, Object value) {
+        if ("any".equalsIgnoreCase(type)) return true;
+        if (type.equalsIgnoreCase(typeName(value))) return true;
+
+        return value instanceof VmInstance instance && instance.klass.isSubclassOf(type);
+    }
+
+    // Type names used for overloads; the same as Interpreter.type().
+    //
+    private static String typeName(Object value) {
+        if (value == null) return "Nil";
+        if (value instanceof Integer) return "Integer";
+        if (value instanceof String) return "String";
+        if (value instanceof Boolean) return "Boolean";
+        if (value instanceof Character) return "Char";
+        if (value instanceof Double) return "Double";
+        if (value instanceof PascalList) return "List";
+        if (value instanceof PascalStack) return "Stack";
+        if (value instanceof PascalEnum e) return e.enumName;
+        if (value instanceof VmInstance instance) return instance.klass.name;
+
+        return "Any";
+    }
+
+    // Type names used by except clauses.
+    //
+    private static String exceptionType(Object value) {
+        if (value instanceof VmInstance instance) return instance.klass.name;
+
+        return value.getClass().getSimpleName();
+    }
+
+    private void assertion(Assertion assertion, int first) {
+        switch (assertion) {
+            case ASSERT_TRUE:
+                if (!isTruthy(stack[first])) {
+                    throw new VmError("Assertion 'left = right' failed.");
+                }
+                break;
+
+            case ASSERT_EQUAL:
+                var left = stack[first];
+                var right = stack[first + 1];
+                if (!isEqual(left, right)) {
+                    throw new VmError("Assertion 'left = right' failed.  Expected '" + left + "' but got '" + right + "'.");
+                }
+                break;
+        }
+    }
+
+    private static Object subscript(Object target, Object index) {
+        if (target instanceof String s) {
+            return s.charAt((int) Double.parseDouble(index.toString()));
+        }
+        List<?> list;
+        if (target instanceof PascalList l) {
+            list = l.list;
+        }
+        else if (target instanceof PascalStack s) {
+            list = s.stack;
+        }
+        else {
+            throw new VmError("Subscript target should be an ordinal.");
+        }
+        try {
+            return list.get(Integer.parseInt(index.toString()));
+        }
+        catch (RuntimeException e) {
+            throw new VmError(e.getMessage());
+        }
+    }
+
+    private static void checkNumberOperands(Object left, Object right) {
+        if (left instanceof Integer && right instanceof Integer) return;
+        if (left instanceof Double && right instanceof Double) return;
+        if (left instanceof Character && right instanceof Character) return;
+
+        throw new VmError("Operands must be numbers.");
+    }
+
+    private static boolean isTruthy(Object object) {
+        if (object == null) return false;
+        if (object instanceof Boolean) return (boolean) object;
+        if (object instanceof Integer) return ((int) object != 0);
+        if (object instanceof PascalEnum e) return e.value != 0;
+
+        return true;
+    }
+
+    private static boolean isEqual(Object a, Object b) {
+        if (a == null && b == null) return true;
+        if (a == null) return false;
+        return a.equals(b);
+    }
+
+    private static String stringify(Object object) {
+        if (object == null) return "nil";
+
+        if (object instanceof Double) {
+            String text = object.toString();
+            if (text.endsWith(".0")) {
+                text = text.substring(0, text.length() - 2);
+            }
+            return text;
+        }
+        return object.toString();
+    }
+
+    private static Token token(CompiledFunction function, int ip) {
+        if (function == null) {
+            return new Token(TokenType.IDENTIFIER, "", null, 0, 0, "VM");
+        }
+        if (function.count == 0) {
+            return new Token(TokenType.IDENTIFIER, "", null, 0, 0, function.fileName);
+        }
+        return function.position(Math.max(ip - 1, 0));
+    }
+}
@@ -0,0 +1,44 @@
+package com.craftinginterpreters.pascal.vm;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Class at run time in the VM.  Methods keep their overloads in declaration order.
+ */
+public class VmClass {
+    public final String name;
+    VmClass superclass;
+    final Map<String, List<Closure>> methods = new HashMap<>();
+
+    VmClass(String name) {
+        this.name = name;
+    }
+
+    void addMethod(Closure method) {
+        methods.computeIfAbsent(method.function.name, k -> new ArrayList<>()).add(method);
+    }
+
+    // Finds the class that declares a method, looking in superclasses as well.  Returns null if there is none.
+    //
+    VmClass findOwner(String name) {
+        for (var klass = this; klass != null; klass = klass.superclass) {
+            if (klass.methods.containsKey(name)) return klass;
+        }
+        return null;
+    }
+
+    boolean isSubclassOf(String name) {
+        for (var klass = this; klass != null; klass = klass.superclass) {
+            if (klass.name.equalsIgnoreCase(name)) return true;
+        }
+        return false;
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
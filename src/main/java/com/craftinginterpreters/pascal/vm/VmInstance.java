@@ -0,0 +1,21 @@
+package com.craftinginterpreters.pascal.vm;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Instance of a VmClass.
+ */
+public class VmInstance {
+    public final VmClass klass;
+    public final Map<String, Object> fields = new HashMap<>();
+
+    VmInstance(VmClass klass) {
+        this.klass = klass;
+    }
+
+    @Override
+    public String toString() {
+        return klass.name + " instance";
+    }
+}
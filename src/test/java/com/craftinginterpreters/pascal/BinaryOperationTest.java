@@ -0,0 +1,82 @@
+package com.craftinginterpreters.pascal;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Tests BinaryOperation and UnaryOperation.
+ */
+public class BinaryOperationTest {
+    private final Interpreter interpreter = new Interpreter(new TestErrorHandler());
+
+    private BinaryOperation create(TokenType type) {
+        return BinaryOperation.create(new Token(type, "op", null, 1, 0, "test"), interpreter);
+    }
+
+    // An operation specialized to integers should still work when it later sees doubles and strings.
+    //
+    @Test
+    void testAddFallsBack() {
+        var uut = create(TokenType.PLUS);
+
+        assertEquals(3, uut.apply(1, 2));
+        assertEquals(5, uut.apply(2, 3));
+        assertEquals(4.0, uut.apply(1.5, 2.5));
+        assertEquals("A1", uut.apply("A", 1));
+        assertEquals(7, uut.apply(3, 4));
+    }
+
+    // Specialized comparisons should give the same answers as the generic ones, including for chars.
+    //
+    @Test
+    void testCompare() {
+        var uut = create(TokenType.GREATER);
+
+        assertEquals(true, uut.apply('b', 'a'));
+        assertEquals(true, uut.apply('a', 'a'));
+        assertEquals(false, uut.apply(1, 2));
+        assertEquals(true, uut.apply(2.5, 1.0));
+    }
+
+    // Specialized equality should match Object.equals().
+    //
+    @Test
+    void testEqual() {
+        var uut = create(TokenType.EQUAL);
+
+        assertEquals(true, uut.apply(1000, 1000));
+        assertEquals(false, uut.apply(1, 2));
+        assertEquals(false, uut.apply(1, 1.0));
+        assertEquals(true, uut.apply(Double.NaN, Double.NaN));
+        assertEquals(false, uut.apply(0.0, -0.0));
+        assertEquals(true, uut.apply(null, null));
+    }
+
+    // Type errors should still be reported once specialized.
+    //
+    @Test
+    void testTypeError() {
+        var uut = create(TokenType.MINUS);
+
+        assertEquals(1, uut.apply(3, 2));
+        var ex = assertThrows(RuntimeError.class, () -> uut.apply(3, "A"));
+
+        assertEquals("Operands must be numbers.", ex.getMessage());
+    }
+
+    // Negation should specialize and fall back in the same way.
+    //
+    @Test
+    void testNegate() {
+        var uut = new UnaryOperation(new Token(TokenType.MINUS, "-", null, 1, 0, "test"), interpreter);
+
+        assertEquals(-1, uut.apply(1));
+        assertEquals(-1.5, uut.apply(1.5));
+        assertEquals(-2, uut.apply(2));
+
+        var ex = assertThrows(RuntimeError.class, () -> uut.apply("A"));
+        assertEquals("Operand must be a number.", ex.getMessage());
+    }
+}
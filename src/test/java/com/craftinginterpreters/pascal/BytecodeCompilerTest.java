@@ -0,0 +1,327 @@
+package com.craftinginterpreters.pascal;
+
+import com.craftinginterpreters.pascal.vm.Program;
+import com.craftinginterpreters.pascal.vm.VM;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Tests BytecodeCompiler and the VM.
+ */
+public class BytecodeCompilerTest {
+    // Convenience method for parsing, resolving and compiling statements.
+    //
+    private Program compile(String source) {
+        var scanner = new Scanner(source);
+        var tokens = scanner.scanTokens();
+
+        var parser = new Parser(tokens, false);
+        var stmts = parser.parse();
+
+        var resolver = new Resolver(new Interpreter(new TestErrorHandler()));
+        resolver.resolve(stmts);
+
+        return new BytecodeCompiler().compile(stmts);
+    }
+
+    // Runs a program on the VM and returns the value of the global 'Abc'.
+    //
+    private Object run(Program program) {
+        var vm = new VM(new TestErrorHandler());
+        vm.run(program);
+
+        return vm.getGlobal("Abc");
+    }
+
+    private Object run(String source) {
+        return run(compile(source));
+    }
+
+    // Tests recursive functions.
+    //
+    @Test
+    void testFunction() {
+        var result = run("""
+            function Fib(N);
+            begin
+               if N < 2 then exit N;
+               exit Fib(N - 1) + Fib(N - 2);
+            end
+
+            var Abc := Fib(15);""");
+
+        assertEquals(610, result);
+    }
+
+    // Tests a nested function calling itself.
+    //
+    @Test
+    void testNestedRecursion() {
+        var result = run("""
+            function Outer();
+            begin
+               function Fib(N);
+               begin
+                  if N < 2 then exit N;
+                  exit Fib(N - 1) + Fib(N - 2);
+               end
+               exit Fib(15);
+            end
+
+            var Abc := Outer();""");
+
+        assertEquals(610, result);
+    }
+
+    // Tests loops, blocks and break.
+    //
+    @Test
+    void testWhileBreak() {
+        var result = run("""
+            var Abc := 0;
+            for var I := 0; I < 100; I := I + 1 do
+            begin
+               var J := I;
+               if J = 10 then break;
+               Abc := Abc + J;
+            end""");
+
+        assertEquals(45, result);
+    }
+
+    // Tests methods, overloads, implicit 'this' and super.
+    //
+    @Test
+    void testClasses() {
+        var result = run("""
+            class A;
+            begin
+               constructor Init();
+               begin
+                  this.Count := 1;
+               end
+
+               function Next();
+               begin
+                  Count := Count + 1;
+                  exit Count;
+               end
+
+               function Next(By : Integer);
+               begin
+                  Count := Count + By;
+                  exit Count;
+               end
+            end
+
+            class B (A);
+            begin
+               function Next();
+               begin
+                  exit super.Next() * 10;
+               end
+            end
+
+            var TheA := A();
+            var TheB := B();
+            var Abc := TheB.Next() + TheA.Next(5) + TheB.ClassName;""");
+
+        assertEquals("26B", result);
+    }
+
+    // Tests try/except, including a raise from a called function and break out of a handler.
+    //
+    @Test
+    void testTryExcept() {
+        var result = run("""
+            function Fail(Message);
+            begin
+               raise Message;
+            end
+
+            var Abc := '';
+            while True do
+            begin
+               try
+                  Fail('Hello');
+               except
+                  on e : Integer do Abc := 'Integer';
+                  on e : String do
+                  begin
+                     Abc := e;
+                     break;
+                  end
+               end
+            end""");
+
+        assertEquals("Hello", result);
+    }
+
+    // Tests the collection natives, maps and subscripts.
+    //
+    @Test
+    void testNatives() {
+        var result = run("""
+            var Items := List();
+            Items.Add('A');
+            Items.Add('B');
+            var Codes := ['A' : 1, 'B' : 2];
+            var Abc := Items[1] + Str(Codes.Get('B')) + 'Hello'[0] + Str(Items.Length);""");
+
+        assertEquals("B2H2", result);
+    }
+
+    // Runtime errors should be the same as the tree walker's.
+    //
+    @Test
+    void testRuntimeError() {
+        var ex = assertThrows(RuntimeError.class, () -> run("var Abc := 1 - 'A';"));
+
+        assertEquals("Operands must be numbers.", ex.getMessage());
+    }
+
+    // Tests nested functions reading and writing the locals of the functions around them, also after those have
+    // returned or left the block that declared them, and after being written and read back.
+    //
+    @Test
+    void testClosures() throws IOException {
+        var program = compile("""
+            function MakeCounter();
+            begin
+               var Count := 0;
+               function Next();
+               begin
+                  Count := Count + 1;
+                  exit Count;
+               end
+               exit Next;
+            end
+
+            function Outer(N);
+            begin
+               function Middle();
+               begin
+                  function Inner();
+                  begin
+                     exit N * 2;
+                  end
+                  exit Inner();
+               end
+               exit Middle();
+            end
+
+            var Get := nil;
+            begin
+               var X := 1;
+               function Read();
+               begin
+                  exit X;
+               end
+               Get := Read;
+               X := 5;
+            end
+
+            var Counter := MakeCounter();
+            Counter();
+            var Abc := Counter() + Outer(21) * 10 + Get() * 1000;""");
+
+        assertEquals(5422, run(program));
+
+        var bytes = new ByteArrayOutputStream();
+        program.write(new DataOutputStream(bytes));
+        var copy = Program.read(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+
+        assertEquals(5422, run(copy));
+    }
+
+    // A function inside a method should be able to read 'this'.
+    //
+    @Test
+    void testClosureThis() {
+        var result = run("""
+            class A;
+            begin
+               constructor Init();
+               begin
+                  this.Count := 7;
+               end
+
+               function Twice();
+               begin
+                  function Get();
+                  begin
+                     exit this.Count;
+                  end
+                  exit Get() * 2;
+               end
+            end
+
+            var Abc := A().Twice();""");
+
+        assertEquals(14, result);
+    }
+
+    // A program should run the same after being written and read back.
+    //
+    @Test
+    void testWriteRead() throws IOException {
+        var program = compile("""
+            type Color = (Red, Green, Blue);
+
+            function Name(C);
+            begin
+               if C = Green then exit 'Green ' + 1.5 + ' ' + 'xy'[0];
+               exit 'Other';
+            end
+
+            var Abc := Name(Green);""");
+
+        var bytes = new ByteArrayOutputStream();
+        program.write(new DataOutputStream(bytes));
+        var copy = Program.read(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+
+        assertEquals("Green 1.5 x", run(copy));
+    }
+
+    // A runtime error should point at the token of the failing instruction, also after the program is written and
+    // read back.
+    //
+    @Test
+    void testErrorPosition() throws IOException {
+        var program = compile("""
+            var Abc := 1;
+            var Def := Abc + True;""");
+
+        var ex = assertThrows(RuntimeError.class, () -> run(program));
+        assertEquals(2, ex.token.line);
+        assertEquals(15, ex.token.offset);
+        assertEquals(1, ex.token.lexeme.length());
+        assertEquals("test", ex.token.fileName);
+
+        var bytes = new ByteArrayOutputStream();
+        program.write(new DataOutputStream(bytes));
+        var copy = Program.read(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+
+        ex = assertThrows(RuntimeError.class, () -> run(copy));
+        assertEquals(2, ex.token.line);
+        assertEquals(15, ex.token.offset);
+        assertEquals("test", ex.token.fileName);
+    }
+
+    // Reading something that isn't a compiled program should fail.
+    //
+    @Test
+    void testReadBadMagic() {
+        var in = new DataInputStream(new ByteArrayInputStream(new byte[] { 1, 2, 3, 4 }));
+
+        assertThrows(IOException.class, () -> Program.read(in));
+    }
+}
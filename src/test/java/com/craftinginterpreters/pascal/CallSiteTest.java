@@ -0,0 +1,222 @@
+package com.craftinginterpreters.pascal;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests CallSite.
+ */
+public class CallSiteTest {
+    private final Interpreter interpreter = new Interpreter(new TestErrorHandler());
+
+    // Convenience method for parsing, resolving, type checking and running statements.  Returns the value of the
+    // global 'Abc'.
+    //
+    private Object run(String source) {
+        var scanner = new Scanner(source);
+        var tokens = scanner.scanTokens();
+
+        var parser = new Parser(tokens, false);
+        var stmts = parser.parse();
+
+        var resolver = new Resolver(interpreter);
+        resolver.resolve(stmts);
+        new TypeChecker().resolve(stmts);
+        interpreter.interpret(stmts);
+
+        return interpreter.globals.get(new Token(TokenType.IDENTIFIER, "Abc", "", 0, 0, "test"));
+    }
+
+    private PascalFunction makeFunction() {
+        run("""
+            function Same(X);
+            begin
+               exit X;
+            end
+
+            var Abc := 0;""");
+
+        return (PascalFunction) interpreter.globals.get(new Token(TokenType.IDENTIFIER, "Same", "", 0, 0, "test"));
+    }
+
+    // A cached lookup should only hit for the same argument types.
+    //
+    @Test
+    void testMonomorphic() {
+        var function = makeFunction();
+        var site = new CallSite();
+
+        assertNull(site.lookup(interpreter, function, List.of(1)));
+        site.addSelf(function, List.of("Integer"));
+
+        assertSame(function, site.lookup(interpreter, function, List.of(2)));
+        assertNull(site.lookup(interpreter, function, List.of("A")));
+    }
+
+    // Past four sets of types, the site should stop caching.
+    //
+    @Test
+    void testMegamorphic() {
+        var function = makeFunction();
+        var site = new CallSite();
+
+        for (var type : List.of("Integer", "String", "Double", "Boolean")) {
+            site.addSelf(function, List.of(type));
+        }
+        assertFalse(site.isMegamorphic());
+        assertSame(function, site.lookup(interpreter, function, List.of(true)));
+
+        site.addSelf(function, List.of("Char"));
+        assertTrue(site.isMegamorphic());
+        assertNull(site.lookup(interpreter, function, List.of(1)));
+    }
+
+    // An overload matched for some types should be served from the cache for the same types.
+    //
+    @Test
+    void testOverloadCached() {
+        run("""
+            class A;
+            begin
+               function Show(X : Integer);
+               begin
+                  exit 'I';
+               end
+
+               function Show(X : String);
+               begin
+                  exit 'S';
+               end
+            end
+
+            var Abc := 0;""");
+
+        var klass = (PascalClass) interpreter.globals.get(new Token(TokenType.IDENTIFIER, "A", "", 0, 0, "test"));
+        var function = klass.findMethod("Show");
+        var overload = function.match(List.of("String"));
+        var site = new CallSite();
+
+        site.addOverload(function, List.of("String"), overload);
+        site.addSelf(function, List.of("Integer"));
+
+        assertSame(overload, site.lookup(interpreter, function, List.of("A")));
+        assertSame(function, site.lookup(interpreter, function, List.of(1)));
+        assertNull(site.lookup(interpreter, function, List.of(true)));
+    }
+
+    // One call site should pick the right overload as the argument types change.
+    //
+    @Test
+    void testPolymorphicOverloads() {
+        var result = run("""
+            class A;
+            begin
+               function Show(X : Integer);
+               begin
+                  exit 'I';
+               end
+
+               function Show(X : String);
+               begin
+                  exit 'S';
+               end
+            end
+
+            var TheA := A();
+            var Values := List();
+            Values.Add(1);
+            Values.Add('BB');
+            Values.Add(2);
+            Values.Add('CC');
+
+            var Abc := '';
+            for var I := 0; I < 4; I := I + 1 do
+            begin
+               Abc := Abc + TheA.Show(Values[I]);
+            end""");
+
+        assertEquals("ISIS", result);
+    }
+
+    // If the TypeChecker guessed the argument types wrong, the call should still pick the right overload.
+    //
+    @Test
+    void testCheckedTargetFallsBack() {
+        var result = run("""
+            class A;
+            begin
+               function Show(X : Integer);
+               begin
+                  exit 'Int';
+               end
+
+               function Show(X : String);
+               begin
+                  exit 'Str';
+               end
+            end
+
+            var TheA : A := A();
+            var X : Integer := 1;
+
+            function Call(X);
+            begin
+               exit TheA.Show(X);
+            end
+
+            var Abc := Call('BB') + Call(2);""");
+
+        assertEquals("StrInt", result);
+    }
+
+    // Method calls on an instance should pick overloads, and a field should still win over a method of the same name.
+    //
+    @Test
+    void testInvoke() {
+        var result = run("""
+            function Other();
+            begin
+               exit 100;
+            end
+
+            class A;
+            begin
+               constructor Init();
+               begin
+                  this.Count := 0;
+               end
+
+               function Add();
+               begin
+                  Count := Count + 1;
+                  exit this;
+               end
+
+               function Add(By : Integer);
+               begin
+                  Count := Count + By;
+                  exit this;
+               end
+
+               function Name();
+               begin
+                  exit 10;
+               end
+            end
+
+            var TheA := A();
+            TheA.Add().Add(5).Add();
+            var Abc := TheA.Count + TheA.Name();
+            TheA.Name := Other;
+            Abc := Abc + TheA.Name();""");
+
+        assertEquals(117, result);
+    }
+}
@@ -0,0 +1,297 @@
+package com.craftinginterpreters.pascal;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Tests ClosureInterpreter.
+ */
+public class ClosureInterpreterTest {
+    // Convenience method for parsing, resolving and running statements.  Returns the value of the global 'Abc'.
+    //
+    private Object run(String source) {
+        var interpreter = new ClosureInterpreter(new TestErrorHandler());
+
+        var scanner = new Scanner(source);
+        var tokens = scanner.scanTokens();
+
+        var parser = new Parser(tokens, false);
+        var stmts = parser.parse();
+
+        var resolver = new Resolver(interpreter);
+        resolver.resolve(stmts);
+        interpreter.interpret(stmts);
+
+        return interpreter.globals.get(new Token(TokenType.IDENTIFIER, "Abc", "", 0, 0, "test"));
+    }
+
+    // Tests recursive functions.
+    //
+    @Test
+    void testFunction() {
+        var result = run("""
+            function Fib(N);
+            begin
+               if N < 2 then exit N;
+               exit Fib(N - 1) + Fib(N - 2);
+            end
+
+            var Abc := Fib(15);""");
+
+        assertEquals(610, result);
+    }
+
+    // Tests loops, blocks and break.
+    //
+    @Test
+    void testWhileBreak() {
+        var result = run("""
+            var Abc := 0;
+            for var I := 0; I < 100; I := I + 1 do
+            begin
+               if I = 10 then break;
+               Abc := Abc + I;
+            end""");
+
+        assertEquals(45, result);
+    }
+
+    // Tests methods, implicit 'this' and super.
+    //
+    @Test
+    void testClasses() {
+        var result = run("""
+            class A;
+            begin
+               constructor Init();
+               begin
+                  this.Count := 1;
+               end
+
+               function Next();
+               begin
+                  Count := Count + 1;
+                  exit Count;
+               end
+            end
+
+            class B (A);
+            begin
+               function Next();
+               begin
+                  exit super.Next() * 10;
+               end
+            end
+
+            var TheB := B();
+            var Abc := TheB.Next();""");
+
+        assertEquals(20, result);
+    }
+
+    // Tests try/except.
+    //
+    @Test
+    void testTryExcept() {
+        var result = run("""
+            var Abc := 'None';
+            try
+               raise 'Hello';
+            except
+               on e : String do Abc := e;
+            end""");
+
+        assertEquals("Hello", result);
+    }
+
+    // Runtime errors should be the same as the tree walker's.
+    //
+    @Test
+    void testRuntimeError() {
+        var ex = assertThrows(RuntimeError.class, () -> run("var Abc := 1 - 'A';"));
+
+        assertEquals("Operands must be numbers.", ex.getMessage());
+    }
+
+    // Typed locals are kept unboxed, and should still read the same from untyped code and natives.
+    //
+    @Test
+    void testTypedLocals() {
+        var result = run("""
+            function Sum(N : Integer);
+            var
+               I, Total : Integer;
+               Half : Double;
+               Items := List();
+            begin
+               Total := 0;
+               Half := 0.0;
+               I := 0;
+               while I < N do
+               begin
+                  Total := Total + I * 2;
+                  Half := Half + 0.5;
+                  I := I + 1;
+               end
+               Items.Add(Total);
+               exit Str(Items[0]) + ' ' + Half + ' ' + (-I);
+            end
+
+            var Abc := Sum(1000);""");
+
+        assertEquals("999000 500 -1000", result);
+    }
+
+    // A typed local that hasn't been assigned, or holds the wrong type, should fail the same way as untyped code.
+    //
+    @Test
+    void testTypedLocalFallback() {
+        var ex = assertThrows(RuntimeError.class, () -> run("""
+            function Next();
+            var I : Integer;
+            begin
+               exit I + 1;
+            end
+
+            var Abc := Next();"""));
+
+        assertEquals("Operands must be two numbers, or two strings.", ex.getMessage());
+
+        var result = run("""
+            function Twice();
+            var I : Integer := 1;
+            begin
+               I := 'AB';
+               exit I + I;
+            end
+
+            var Abc := Twice();""");
+
+        assertEquals("ABAB", result);
+    }
+
+    // Exit should leave nested loops and try blocks, and break should only leave the innermost loop.
+    //
+    @Test
+    void testExitFromNestedLoops() {
+        var result = run("""
+            function Find(Target);
+            begin
+               var I := 0;
+               var J := 0;
+               while True do
+               begin
+                  try
+                     J := 0;
+                     while True do
+                     begin
+                        if J = 3 then break;
+                        if I * 3 + J = Target then exit Str(I) + Str(J);
+                        J := J + 1;
+                     end
+                  except
+                     on e : String do exit e;
+                  end
+                  I := I + 1;
+               end
+            end
+
+            var Abc := Find(7) + Find(0);""");
+
+        assertEquals("2100", result);
+    }
+
+    // Method calls on an instance should pick overloads, and a field should still win over a method of the same name.
+    //
+    @Test
+    void testInvoke() {
+        var result = run("""
+            function Other();
+            begin
+               exit 100;
+            end
+
+            class A;
+            begin
+               constructor Init();
+               begin
+                  this.Count := 0;
+               end
+
+               function Add();
+               begin
+                  Count := Count + 1;
+                  exit this;
+               end
+
+               function Add(By : Integer);
+               begin
+                  Count := Count + By;
+                  exit this;
+               end
+
+               function Name();
+               begin
+                  exit 10;
+               end
+            end
+
+            var TheA := A();
+            TheA.Add().Add(5).Add();
+            var Abc := TheA.Count + TheA.Name();
+            TheA.Name := Other;
+            Abc := Abc + TheA.Name();""");
+
+        assertEquals(117, result);
+    }
+
+    // Collections declared with a primitive element type should behave like any other.
+    //
+    @Test
+    void testTypedCollections() {
+        var result = run("""
+            var Items : List of Integer := List();
+            Items.Add(1);
+            Items.Add(2);
+            var Values : Stack of Double := Stack();
+            Values.Push(1.5);
+            var Abc := Str(Items[0] + Items[1]) + Str(Values.Pop());
+            Items.Add('AB');
+            Abc := Abc + Items[2];""");
+
+        assertEquals("31.5AB", result);
+    }
+
+    // Strings a loop only appends to should be built in place, and put back however the loop ends.  A string a
+    // function can read must stay a string.
+    //
+    @Test
+    void testAccumulate() {
+        var result = run("""
+            function Build(N);
+            begin
+               var S : String := 'AB';
+               for var I := 0; I < N; I := I + 1 do
+               begin
+                  S := S + I + ',';
+                  if I = 3 then break;
+               end
+
+               var T : String := 'xy';
+               function Show();
+               begin
+                  exit T;
+               end
+               for var I := 0; I < 2; I := I + 1 do
+                  T := T + Show();
+
+               exit S + T;
+            end
+
+            var Abc := Build(10) + Build(1);""");
+
+        assertEquals("AB0,1,2,3,xyxyxyxyAB0,xyxyxyxy", result);
+    }
+}
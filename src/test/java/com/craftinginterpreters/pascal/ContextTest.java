@@ -0,0 +1,151 @@
+package com.craftinginterpreters.pascal;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests Context.
+ */
+public class ContextTest {
+    // Builds a program in a context of its own.
+    //
+    private Context check(String source) {
+        var context = new Context();
+        var previous = context.enter();
+        try {
+            var tokens = new Scanner(source).scanTokens();
+            var statements = new Parser(tokens, false).parse();
+            new TypeChecker().resolve(statements);
+        }
+        finally {
+            Context.leave(previous);
+        }
+        return context;
+    }
+
+    // Programs built at the same time in separate contexts should each only see their own types and errors.
+    //
+    @Test
+    void testIsolation() throws Exception {
+        var current = Context.current();
+
+        var pool = Executors.newFixedThreadPool(2);
+        try {
+            var first = pool.submit(() -> check("var Abc : String := 'AB';"));
+            var second = pool.submit(() -> check("var Abc : Integer := 1; %"));
+
+            assertEquals("String", first.get().lookup.types.get("Abc"));
+            assertFalse(first.get().hadError);
+
+            assertEquals("Integer", second.get().lookup.types.get("Abc"));
+            assertTrue(second.get().hadError);
+            assertEquals("[line 1] Error: Unexpected character: %", second.get().lastError);
+        }
+        finally {
+            pool.shutdown();
+        }
+        assertSame(current, Context.current());
+    }
+
+    // A thread should keep its context, and one that hasn't been given one should get its own.
+    //
+    @Test
+    void testCurrent() throws Exception {
+        var current = Context.current();
+        assertSame(current, Context.current());
+
+        var pool = Executors.newSingleThreadExecutor();
+        try {
+            assertNotSame(current, pool.submit(Context::current).get());
+        }
+        finally {
+            pool.shutdown();
+        }
+    }
+
+    // Shapes should grow from the root of the context they're made in, so no program keeps another's alive.
+    //
+    @Test
+    void testShapes() {
+        var first = new Context();
+        var second = new Context();
+        assertNotSame(first.shapes, second.shapes);
+
+        var previous = first.enter();
+        try {
+            var shape = Shape.of(null, List.of("X", "Y"));
+            assertSame(first.shapes.with("X").with("Y"), shape);
+        }
+        finally {
+            Context.leave(previous);
+        }
+        assertNotSame(first.shapes.with("X"), second.shapes.with("X"));
+    }
+
+    // Programs using the same unit should pass its tests when run at the same time, each in its own context.
+    //
+    @Test
+    void testRunFileParallel(@TempDir Path directory) throws Exception {
+        Files.writeString(directory.resolve("Point.pas"), """
+                class Point;
+                var
+                   X : Integer;
+                   Y : Integer;
+                begin
+                   constructor Init(X, Y);
+                   begin
+                      this.X := X;
+                      this.Y := Y;
+                   end
+
+                   function Sum() : Integer;
+                   begin
+                      exit X + Y;
+                   end
+                end
+
+                test 'Sum';
+                begin
+                   var Total := 0;
+                   for var I := 0; I < 1000; I := I + 1 do
+                   begin
+                      Total := Total + Point(I, 1).Sum();
+                   end
+                   AssertEqual(500500, Total);
+                end
+                """);
+        var program = directory.resolve("Main.pas");
+        Files.writeString(program, "uses Point;");
+
+        var pool = Executors.newFixedThreadPool(16);
+        try {
+            List<Callable<Integer>> runs = new ArrayList<>();
+            for (int i = 0; i < 16; i++) {
+                runs.add(() -> {
+                    var context = new Context();
+                    context.units.directory(directory);
+                    return context.runFile(program.toString());
+                });
+            }
+            for (var result : pool.invokeAll(runs)) {
+                assertEquals(0, result.get());
+            }
+        }
+        finally {
+            pool.shutdown();
+        }
+    }
+}
@@ -123,4 +123,58 @@ public class EnvironmentTest {
 
         assertEquals(2, functionEnv.get(token));
     }
+
+    // Values defined in a frame laid out by the Resolver should be reachable by slot, and still by name.
+    //
+    @Test
+    void testSlots() {
+        var globals = new Environment();
+        var env = new Environment(globals, new String[] { "a", "b" });
+        var inner = new Environment(env);
+
+        env.define("a", 1);
+        env.define("b", 2);
+
+        assertEquals(2, inner.getAt(1, 1));
+        assertEquals(1, inner.get(new Token(TokenType.IDENTIFIER, "a", null, 0, 0, "test")));
+
+        inner.assignAt(1, 0, 3);
+        assertEquals(3, env.getAt(0, "a"));
+    }
+
+    // Defining a name outside of the layout should still work, and redefining a name should fail.
+    //
+    @Test
+    void testDefineOutsideLayout() {
+        var globals = new Environment();
+        var env = new Environment(globals, new String[] { "a" });
+
+        env.define("a", 1);
+        env.define("b", 2);
+        env.define("c", 3);
+
+        assertEquals(3, env.getAt(0, 2));
+        assertThrows(RuntimeException.class, () -> env.define("b", 4));
+    }
+
+    // A global's slot can be reserved before it's defined, and reads as undefined until then.
+    //
+    @Test
+    void testReserveGlobal() {
+        var globals = new Environment();
+        var token = new Token(TokenType.IDENTIFIER, "test", null, 0, 0, "test");
+
+        var index = globals.reserve("test");
+        assertEquals(index, globals.reserve("test"));
+
+        var ex = assertThrows(RuntimeError.class, () -> globals.getGlobal(index, token));
+        assertEquals("Undefined variable 'test'.", ex.getMessage());
+        assertThrows(RuntimeError.class, () -> globals.get(token));
+
+        globals.define("test", 1);
+        assertEquals(1, globals.getGlobal(index, token));
+
+        globals.assignGlobal(index, token, 2);
+        assertEquals(2, globals.get(token));
+    }
 }
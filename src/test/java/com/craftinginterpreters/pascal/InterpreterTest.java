@@ -3,6 +3,8 @@ package com.craftinginterpreters.pascal;
 import org.junit.jupiter.api.Disabled;
 import org.junit.jupiter.api.Test;
 
+import com.craftinginterpreters.pascal.nativefunction.PascalList;
+
 import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -2242,4 +2244,225 @@ public class InterpreterTest {
         });
         assertEquals("Expected 'do'.", ex.getMessage());
     }
-}
\ No newline at end of file
+
+    // Locals and parameters of recursive calls should each get their own frame.
+    //
+    @Test
+    void testRecursionLocals() {
+        var interpreter = new Interpreter(new TestErrorHandler());
+
+        var stmts = parseStmts("""
+            function Fib(N : Integer) : Integer;
+            var
+               A, B : Integer;
+            begin
+               if N < 2 then exit N;
+               A := Fib(N - 1);
+               B := Fib(N - 2);
+               exit A + B;
+            end
+
+            var Abc := Fib(10);""");
+
+        var resolver = new Resolver(interpreter);
+        resolver.resolve(stmts);
+        interpreter.interpret(stmts);
+
+        var result =  interpreter.globals.get(new Token(TokenType.IDENTIFIER, "Abc", "", 0, 0, "test"));
+
+        assertEquals(55, result);
+    }
+
+    // Each except handler should get a fresh scope for its variable.
+    //
+    @Test
+    void testTryExceptTwice() {
+        var interpreter = new Interpreter(new TestErrorHandler());
+
+        var stmts = parseStmts("""
+            var Abc := 0;
+            procedure Test();
+            begin
+               try
+                  raise 'Hello';
+               except
+                  on e : String do Abc := Abc + 1;
+               end
+               try
+                  raise 'Again';
+               except
+                  on e : String do Abc := Abc + 1;
+               end
+            end
+
+            Test();""");
+
+        var resolver = new Resolver(interpreter);
+        resolver.resolve(stmts);
+        interpreter.interpret(stmts);
+
+        var result =  interpreter.globals.get(new Token(TokenType.IDENTIFIER, "Abc", "", 0, 0, "test"));
+
+        assertEquals(2, result);
+    }
+
+    // Bare names of fields and methods in methods should be resolved to members of 'this', including ones set later
+    // in the class and ones inherited.
+    //
+    @Test
+    void testImplicitMembers() {
+        var interpreter = new Interpreter(new TestErrorHandler());
+
+        var stmts = parseStmts("""
+            class A;
+            begin
+               function Get();
+               begin
+                  exit Count;
+               end
+
+               constructor Init();
+               begin
+                  this.Count := 1;
+               end
+            end
+
+            class B (A);
+            begin
+               function Bump();
+               begin
+                  Count := Count + Get();
+                  exit Count;
+               end
+            end
+
+            var TheB := B();
+            var Abc := TheB.Bump();""");
+
+        var resolver = new Resolver(interpreter);
+        resolver.resolve(stmts);
+        interpreter.interpret(stmts);
+
+        var get = ((Stmt.Class) stmts.get(0)).methods.get(0);
+        var count = ((Stmt.Return) get.body.get(0)).value;
+        assertNotNull(count.self);
+
+        var result = interpreter.globals.get(new Token(TokenType.IDENTIFIER, "Abc", "", 0, 0, "test"));
+        assertEquals(2, result);
+    }
+
+    // Collection operations should run as intrinsics, while a class's own methods of the same names still run.
+    //
+    @Test
+    void testIntrinsics() {
+        var interpreter = new Interpreter(new TestErrorHandler());
+
+        var stmts = parseStmts("""
+            class Bag;
+            begin
+               function Add(Value);
+               begin
+                  exit 'Bag';
+               end
+            end
+
+            var Items := List();
+            Items.Add('AB');
+            Items.add('CD');
+
+            var Codes := Map();
+            Codes.Put('AB', 1);
+
+            var Values := Stack();
+            Values.Push(2);
+            Values.Push(3);
+
+            var Numbers := Array(2);
+            Numbers.Set(1, 4);
+
+            var Abc := Items.Get(1) + Str(Codes.Get('AB')) + Str(Codes.Contains('XY')) + Str(Values.Pop())
+               + Str(Values.Length) + Str(Items.Length) + Str(Numbers.Get(1)) + Str(Numbers.Length) + Bag().Add(1);""");
+
+        var resolver = new Resolver(interpreter);
+        resolver.resolve(stmts);
+        interpreter.interpret(stmts);
+
+        var result = interpreter.globals.get(new Token(TokenType.IDENTIFIER, "Abc", "", 0, 0, "test"));
+        assertEquals("CD1false31242.0Bag", result);
+    }
+
+    // A loop that only appends to a local string should hold it in a builder, and a native StringBuilder should
+    // build strings the same way.
+    //
+    @Test
+    void testStringBuilder() {
+        var interpreter = new Interpreter(new TestErrorHandler());
+
+        var stmts = parseStmts("""
+            var Abc := '';
+            begin
+               var S : String := 'AB';
+               var I := 0;
+               while I < 3 do
+               begin
+                  S := S + I;
+                  I := I + 1;
+               end
+
+               var Builder := StringBuilder();
+               Builder.Append(S).Append(nil);
+               Abc := Builder.ToString() + Str(Builder.Length);
+            end""");
+
+        var resolver = new Resolver(interpreter);
+        resolver.resolve(stmts);
+        interpreter.interpret(stmts);
+
+        var loop = (Stmt.While) ((Stmt.Block) stmts.get(1)).statements.get(2);
+        assertEquals(1, loop.accumulated.size());
+
+        var append = (Expr.Call) ((Stmt.Expression) ((Stmt.Block) stmts.get(1)).statements.get(4)).expression;
+        assertEquals(Intrinsic.APPEND, append.intrinsic);
+
+        var result = interpreter.globals.get(new Token(TokenType.IDENTIFIER, "Abc", "", 0, 0, "test"));
+        assertEquals("AB012nil8", result);
+    }
+
+    // A collection assigned to a field or variable declared with a primitive element type should store its elements
+    // unboxed, in both engines, not only when it initializes a variable.
+    //
+    @Test
+    void testTypedFieldAssign() {
+        for (var interpreter : List.of(new Interpreter(new TestErrorHandler()), new ClosureInterpreter(new TestErrorHandler()))) {
+            var stmts = parseStmts("""
+                class Bag;
+                var
+                   Items : List of Integer;
+                   More : List of Integer;
+                begin
+                   constructor Init();
+                   begin
+                      Items := List();
+                      this.More := List();
+                   end
+                end
+
+                var Abc := Bag();
+                Abc.Items.Add(1);
+                var Other : List of Integer;
+                Other := List();""");
+
+            new Resolver(interpreter).resolve(stmts);
+            new TypeChecker().resolve(stmts);
+            interpreter.interpret(stmts);
+
+            var bag = (PascalInstance) interpreter.globals.get(new Token(TokenType.IDENTIFIER, "Abc", "", 0, 0, "test"));
+            for (var name : List.of("Items", "More")) {
+                var list = (PascalList) bag.get(new Token(TokenType.IDENTIFIER, name, "", 0, 0, "test"));
+                assertEquals("IntList", list.list.getClass().getSimpleName());
+            }
+            var other = (PascalList) interpreter.globals.get(new Token(TokenType.IDENTIFIER, "Other", "", 0, 0, "test"));
+            assertEquals("IntList", other.list.getClass().getSimpleName());
+        }
+    }
+}
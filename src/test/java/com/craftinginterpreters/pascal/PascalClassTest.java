@@ -3,8 +3,11 @@ package com.craftinginterpreters.pascal;
 import org.junit.jupiter.api.Test;
 
 import java.util.HashMap;
+import java.util.Map;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
 
 /**
  * Tests PascalClass.
@@ -17,4 +20,28 @@ public class PascalClassTest {
 
         assertEquals("Test", uut.toString());
     }
+
+    // Methods should be found through every superclass, with overrides replacing the inherited method.
+    //
+    @Test
+    void testInheritedMethods() {
+        var stmts = new Parser(new Scanner("""
+            function Init(A, B); begin end
+            function Name(); begin end
+            function Name(); begin end""").scanTokens(), false).parse();
+
+        var init = new PascalFunction((Stmt.Function) stmts.get(0), null, true, Context.current().lookup);
+        var name = new PascalFunction((Stmt.Function) stmts.get(1), null, false, Context.current().lookup);
+        var override = new PascalFunction((Stmt.Function) stmts.get(2), null, false, Context.current().lookup);
+
+        var base = new PascalClass("Base", null, new HashMap<>(Map.of("Init", init, "Name", name)));
+        var middle = new PascalClass("Middle", base, new HashMap<>());
+        var uut = new PascalClass("Test", middle, new HashMap<>(Map.of("Name", override)));
+
+        assertSame(init, uut.findMethod("Init"));
+        assertSame(override, uut.findMethod("Name"));
+        assertSame(name, middle.findMethod("Name"));
+        assertNull(uut.findMethod("Other"));
+        assertEquals(2, uut.arity());
+    }
 }
@@ -5,7 +5,9 @@ import org.junit.jupiter.api.Test;
 import java.util.ArrayList;
 import java.util.List;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
 
 /**
  * Tests PascalFunction.
@@ -26,7 +28,7 @@ public class PascalFunctionTest {
         var parser = new Parser(tokens, false);
         var stmts = parser.parse();
 
-        return new PascalFunction((Stmt.Function) stmts.get(0), new Environment(), false);
+        return new PascalFunction((Stmt.Function) stmts.get(0), new Environment(), false, Context.current().lookup);
     }
 
     // Tests creating a new Function.
@@ -69,7 +71,7 @@ public class PascalFunctionTest {
         var resolver = new Resolver(interpreter);
         resolver.resolve(stmts);
 
-        var function = new PascalFunction((Stmt.Function) stmts.get(0), interpreter.globals, false);
+        var function = new PascalFunction((Stmt.Function) stmts.get(0), interpreter.globals, false, Context.current().lookup);
 
         interpreter.globals.define("fib", function);
 
@@ -78,7 +80,48 @@ public class PascalFunctionTest {
 
         function.call(interpreter, args);
     }
-}
 
+    // A method should keep its receiver in the first slot of its own frame, whether it's bound or invoked.
+    //
+    @Test
+    void testMethodFrame() {
+        var code = """
+           class Base;
+           begin
+               function Name();
+               begin
+                   exit 'Base';
+               end
+           end
+
+           class Point(Base);
+           begin
+               constructor Init(X);
+               begin
+                   this.X := X;
+               end
+
+               function Name();
+               begin
+                   exit super.Name() + X;
+               end
+           end""";
+
+        var stmts = new Parser(new Scanner("test", code).scanTokens(), false).parse();
+
+        var interpreter = new Interpreter();
+        new Resolver(interpreter).resolve(stmts);
+        interpreter.interpret(stmts);
 
+        var name = ((Stmt.Class) stmts.get(1)).methods.get(1);
+        assertArrayEquals(new String[] { "this" }, name.locals);
 
+        var klass = (PascalClass) interpreter.globals.get(new Token(TokenType.IDENTIFIER, "Point", "", 0, 0, "test"));
+        var instance = (PascalInstance) klass.call(interpreter, List.of(1));
+        var method = klass.findMethod("Name");
+
+        assertSame(instance, method.bind(instance).getParent());
+        assertEquals("Base1", method.bind(instance).call(interpreter, List.of()));
+        assertEquals("Base1", method.invoke(interpreter, instance, List.of()));
+    }
+}
@@ -3,8 +3,10 @@ package com.craftinginterpreters.pascal;
 import org.junit.jupiter.api.Test;
 
 import java.util.HashMap;
+import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 
 /**
@@ -46,7 +48,60 @@ public class PascalInstanceTest {
         });
         assertEquals("Undefined property 'ABC'.", ex.getMessage());
     }
-}
 
+    // A declared field that hasn't been set should still be undefined.
+    //
+    @Test
+    void testDeclaredFieldUnset() {
+        var klass = new PascalClass("Bagel", null, new HashMap<>(), List.of("ABC"));
+        var uut = new PascalInstance(klass);
+
+        var token = new Token(TokenType.STRING, "ABC", null, 1, 0, "test");
+
+        var ex = assertThrows(RuntimeError.class, () -> uut.get(token, new FieldCache()));
+        assertEquals("Undefined property 'ABC'.", ex.getMessage());
 
+        uut.set(token, 123, new FieldCache());
+        assertEquals(123, uut.get(token));
+    }
 
+    // Instances that add the same fields in the same order should share a shape, and so a cache.
+    //
+    @Test
+    void testSharedShape() {
+        var klass = new PascalClass("Bagel", null, new HashMap<>());
+        var first = new PascalInstance(klass);
+        var second = new PascalInstance(klass);
+
+        var a = new Token(TokenType.STRING, "A", null, 1, 0, "test");
+        var b = new Token(TokenType.STRING, "B", null, 1, 0, "test");
+        var setA = new FieldCache();
+        var setB = new FieldCache();
+        var getB = new FieldCache();
+
+        first.set(a, 1, setA);
+        first.set(b, 2, setB);
+        assertEquals(2, first.get(b, getB));
+
+        var shape = getB.shape;
+        second.set(a, 3, setA);
+        second.set(b, 4, setB);
+        assertEquals(4, second.get(b, getB));
+        assertSame(shape, getB.shape);
+
+        assertEquals(1, first.get(a));
+        assertEquals(3, second.get(a));
+    }
+
+    // A subclass's instances should start with the superclass's fields, then its own.
+    //
+    @Test
+    void testSubclassShape() {
+        var base = new PascalClass("Base", null, new HashMap<>(), List.of("A"));
+        var klass = new PascalClass("Bagel", base, new HashMap<>(), List.of("A", "B"));
+
+        assertEquals(0, klass.shape.indexOf("A"));
+        assertEquals(1, klass.shape.indexOf("B"));
+        assertEquals(2, klass.shape.size());
+    }
+}
@@ -2,11 +2,13 @@ package com.craftinginterpreters.pascal;
 
 import org.junit.jupiter.api.Test;
 
+import java.nio.CharBuffer;
 import java.nio.charset.Charset;
 import java.nio.file.Files;
 import java.nio.file.Paths;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.assertNull;
 
@@ -106,8 +108,8 @@ public class ScannerTest {
 
         scanner.scanTokens();
 
-        assertTrue(Pascal.hadError);
-        assertEquals("[line 1] Error: Unterminated string.", Pascal.lastError);
+        assertTrue(Context.current().hadError);
+        assertEquals("[line 1] Error: Unterminated string.", Context.current().lastError);
     }
 
     // Tests an integer number.
@@ -159,8 +161,8 @@ public class ScannerTest {
         var scanner = new Scanner("#F");
         scanner.scanTokens();
 
-        assertTrue(Pascal.hadError);
-        assertEquals("[line 1] Error: Invalid character: F", Pascal.lastError);
+        assertTrue(Context.current().hadError);
+        assertEquals("[line 1] Error: Invalid character: F", Context.current().lastError);
     }
 
     // If a period is encountered while scanning numbers, it should scan for additional numbers for a decimal
@@ -229,8 +231,8 @@ public class ScannerTest {
         var scanner = new Scanner("%");
         scanner.scanTokens();
 
-        assertTrue(Pascal.hadError);
-        assertEquals("[line 1] Error: Unexpected character: %", Pascal.lastError);
+        assertTrue(Context.current().hadError);
+        assertEquals("[line 1] Error: Unexpected character: %", Context.current().lastError);
     }
 
     @Test
@@ -244,4 +246,43 @@ public class ScannerTest {
             System.out.println("[" + token.line + "] " + token);
         }
     }
+
+    // Keywords should be found whatever their case, and keep the lexeme as written.  Each spelling of a name should
+    // be made into a string only once.
+    //
+    @Test
+    void scanKeywordCaseTest() {
+        var scanner = new Scanner("Begin BEGIN begin Beginning Abc Abc abc");
+        var tokens = scanner.scanTokens();
+
+        assertEquals(TokenType.BEGIN, tokens.get(0).type);
+        assertEquals(TokenType.BEGIN, tokens.get(1).type);
+        assertEquals("Begin", tokens.get(0).lexeme);
+        assertEquals("BEGIN", tokens.get(1).lexeme);
+        assertEquals(TokenType.IDENTIFIER, tokens.get(3).type);
+
+        assertSame(tokens.get(4).lexeme, tokens.get(5).lexeme);
+        assertEquals("abc", tokens.get(6).lexeme);
+    }
+
+    // Should scan a CharBuffer, and a file loaded through a memory mapping, the same as a string.
+    //
+    @Test
+    void scanBufferTest() throws Exception {
+        var tokens = new Scanner("test", CharBuffer.wrap("var Abc := 123;")).scanTokens();
+
+        assertEquals(TokenType.VAR, tokens.get(0).type);
+        assertEquals("Abc", tokens.get(1).lexeme);
+        assertEquals(":=", tokens.get(2).lexeme);
+        assertEquals(123, tokens.get(3).literal);
+
+        var path = Paths.get("src/test/resources/Scanner.pas");
+        var loaded = new Scanner("test", Scanner.load(path)).scanTokens();
+        var read = new Scanner(Files.readString(path, Charset.defaultCharset())).scanTokens();
+
+        assertEquals(read.size(), loaded.size());
+        for (int i = 0; i < read.size(); i++) {
+            assertEquals(read.get(i).toString(), loaded.get(i).toString());
+        }
+    }
 }
@@ -13,15 +13,31 @@ public class SourceCodeTest {
     //
     @Test
     void testSourceCode() {
-        SourceCode.INSTANCE.addLine("Test.pas", 1, "var Abc := 1;");
-        SourceCode.INSTANCE.addLine("Test.pas", 2, "WriteLn(Abc);");
+        Context.current().sourceCode.addLine("Test.pas", 1, "var Abc := 1;");
+        Context.current().sourceCode.addLine("Test.pas", 2, "WriteLn(Abc);");
 
-        SourceCode.INSTANCE.addLine("Scanner.pas", 1, "// This is a comment");
+        Context.current().sourceCode.addLine("Scanner.pas", 1, "// This is a comment");
 
-        assertEquals("var Abc := 1;", SourceCode.INSTANCE.getLine("Test.pas", 1));
-        assertEquals("WriteLn(Abc);", SourceCode.INSTANCE.getLine("Test.pas", 2));
-        assertEquals("", SourceCode.INSTANCE.getLine("Test.pas", 3));
+        assertEquals("var Abc := 1;", Context.current().sourceCode.getLine("Test.pas", 1));
+        assertEquals("WriteLn(Abc);", Context.current().sourceCode.getLine("Test.pas", 2));
+        assertEquals("", Context.current().sourceCode.getLine("Test.pas", 3));
 
-        assertEquals("", SourceCode.INSTANCE.getLine("Test2.pas", 1));
+        assertEquals("", Context.current().sourceCode.getLine("Test2.pas", 1));
+    }
+
+    // Lines of a whole file should be found by number, including a last line with no end-of-line, until the code is
+    // released.
+    //
+    @Test
+    void testAddFile() {
+        Context.current().sourceCode.addFile("Index.pas", "var Abc := 1;\r\n\nWriteLn(Abc);");
+
+        assertEquals("var Abc := 1;\r", Context.current().sourceCode.getLine("Index.pas", 1));
+        assertEquals("", Context.current().sourceCode.getLine("Index.pas", 2));
+        assertEquals("WriteLn(Abc);", Context.current().sourceCode.getLine("Index.pas", 3));
+        assertEquals("", Context.current().sourceCode.getLine("Index.pas", 4));
+
+        Context.current().sourceCode.clear();
+        assertEquals("", Context.current().sourceCode.getLine("Index.pas", 1));
     }
 }
@@ -0,0 +1,55 @@
+package com.craftinginterpreters.pascal;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests TokenBuffer.
+ */
+public class TokenBufferTest {
+    // Tokens should be made from the source on demand, once each, with their literals from the side table.
+    //
+    @Test
+    void testGet() {
+        var uut = new TokenBuffer("test", "Abc := 12;");
+        uut.add(TokenType.IDENTIFIER, 0, 3, 1, 0, null);
+        uut.add(TokenType.ASSIGN, 4, 2, 1, 4, null);
+        uut.add(TokenType.INTEGER, 7, 2, 1, 7, 12);
+        uut.add(TokenType.SEMICOLON, 9, 1, 1, 9, null);
+
+        assertEquals(4, uut.size());
+        assertEquals(TokenType.INTEGER, uut.type(2));
+        assertTrue(uut.isLexeme(0, "ABC"));
+        assertFalse(uut.isLexeme(0, "AB"));
+
+        var token = uut.get(2);
+        assertEquals("12", token.lexeme);
+        assertEquals(12, token.literal);
+        assertEquals(7, token.offset);
+        assertEquals("test", token.fileName);
+        assertSame(token, uut.get(2));
+
+        assertEquals(":=", uut.get(1).lexeme);
+        assertNull(uut.get(3).literal);
+    }
+
+    // A list of tokens should be read through the same methods.
+    //
+    @Test
+    void testOf() {
+        var token = new Token(TokenType.IDENTIFIER, "Abc", null, 1, 0, "test");
+        var uut = TokenBuffer.of(List.of(token, new Token(TokenType.EOF, "", null, 1, 3, "test")));
+
+        assertEquals(TokenType.EOF, uut.type(1));
+        assertTrue(uut.isLexeme(0, "abc"));
+        assertSame(token, uut.get(0));
+        assertSame(uut, TokenBuffer.of(uut));
+    }
+}
@@ -657,4 +657,82 @@ public class TypeCheckerTest {
 
         interpreter.interpret(stmts);
     }
+
+    // Should choose the overload for calls whose argument types are known.
+    //
+    @Test
+    void testChooseOverload() {
+        var stmts = parseStmts("""
+            class A;
+            begin
+               function Show(X : Integer);
+               begin
+                  exit 'I';
+               end
+
+               function Show(X : String);
+               begin
+                  exit 'S';
+               end
+            end
+
+            var TheA : A := A();
+            var Abc := TheA.Show('BB');
+            var Abd := TheA.Show(Abc);""");
+
+        var checker = new TypeChecker();
+        checker.resolve(stmts);
+
+        var klass = (Stmt.Class) stmts.get(0);
+        var known = (Expr.Call) ((Stmt.Var) stmts.get(2)).initializer;
+        var unknown = (Expr.Call) ((Stmt.Var) stmts.get(3)).initializer;
+
+        assertSame(klass.methods.get(1), known.target);
+        assertArrayEquals(new String[] { "String" }, known.targetTypes);
+        assertNull(unknown.target);
+    }
+
+    // Statements checked after others, as REPL lines are, should be checked against what the earlier ones declared,
+    // and still be checked properly after a check fails part way.
+    //
+    @Test
+    void testResolveAdded() {
+        var checker = new TypeChecker();
+        checker.resolveAdded(parseStmts("""
+            class ReplBase;
+            begin
+            end
+
+            class ReplDerived (ReplBase);
+            begin
+            end"""));
+        checker.resolveAdded(parseStmts("var ReplFirst : ReplBase := ReplDerived();"));
+
+        var ex = assertThrows(RuntimeError.class, () -> checker.resolveAdded(parseStmts("""
+            function ReplFails();
+            begin
+               var X : String := 1;
+            end""")));
+        assertEquals("Type mismatch!", ex.getMessage());
+
+        checker.resolveAdded(parseStmts("var ReplLater : Integer := 1;"));
+        assertEquals("Integer", checker.lookup.types.get("ReplLater"));
+
+        var fresh = new TypeChecker();
+        assertThrows(RuntimeError.class, () -> fresh.resolve(parseStmts("var ReplSecond : ReplBase := ReplDerived();")));
+    }
+
+    // A global declared by an earlier batch of statements can't be declared again by a later one.
+    //
+    @Test
+    void testResolveAddedRedeclared() {
+        var checker = new TypeChecker();
+        checker.resolveAdded(parseStmts("var ReplTwice : Integer := 1;"));
+
+        var ex = assertThrows(RuntimeError.class,
+                () -> checker.resolveAdded(parseStmts("var ReplTwice : Integer := 7;")));
+        assertEquals("Already a variable with this name.", ex.getMessage());
+
+        checker.resolveAdded(parseStmts("ReplTwice := 7;"));
+    }
 }
@@ -0,0 +1,100 @@
+package com.craftinginterpreters.pascal;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests UnitCache.
+ */
+public class UnitCacheTest {
+    private static final String SOURCE = """
+            uses Utils;
+
+            class Point;
+            begin
+               constructor Init(X);
+               begin
+                  this.X := X;
+               end
+            end
+
+            var Abc := 'Abc';
+
+            begin
+               var P := Point(3);
+               var I := 0;
+               while I < P.X do
+               begin
+                  case I of
+                     0, 1 : Abc := Abc + 'x';
+                  else
+                     Abc := Abc + #65;
+                  end
+                  I := I + 1;
+               end
+               try
+                  raise 'Failed';
+               except
+                  on E : String do Abc := Abc + E + 2.5;
+               end
+            end""";
+
+    // A unit read back from the cache should write out exactly as the parsed unit did, keeping where it used other
+    // units, and nodes the parser shared should still be shared.
+    //
+    @Test
+    void testRoundTrip(@TempDir Path directory) throws IOException {
+        var cache = new UnitCache(directory);
+        var key = UnitCache.key("Cached.pas", SOURCE);
+
+        var parsed = new UnitLoader.Unit("Cached");
+        parsed.statements.addAll(new Parser(new Scanner("Cached.pas", SOURCE).scanTokens(), parsed).parse());
+        assertTrue(parsed.errors.isEmpty());
+        cache.write(key, parsed);
+
+        var read = new UnitLoader.Unit("Cached");
+        assertTrue(cache.read(key, read));
+        assertEquals(List.of("Utils"), read.uses);
+        assertEquals(List.of(0), read.positions);
+        assertEquals(parsed.statements.size(), read.statements.size());
+
+        cache.write("copy", read);
+        assertArrayEquals(Files.readAllBytes(directory.resolve(key + ".pu")),
+                Files.readAllBytes(directory.resolve("copy.pu")));
+
+        var block = (Stmt.Block) read.statements.get(read.statements.size() - 1);
+        var loop = (Stmt.While) block.statements.get(2);
+        var caseStmt = (Stmt.If) ((Stmt.Block) loop.body).statements.get(0);
+        var first = (Expr.Binary) ((Expr.Logical) caseStmt.condition).left;
+        var second = (Expr.Binary) ((Expr.Logical) caseStmt.condition).right;
+        assertSame(first.left, second.left);
+        assertEquals("Cached.pas", first.operator.fileName);
+    }
+
+    // Changing the source or the file name should change the key, and a key that was never written should miss.
+    //
+    @Test
+    void testMiss(@TempDir Path directory) {
+        var cache = new UnitCache(directory);
+
+        assertNotEquals(UnitCache.key("Cached.pas", SOURCE), UnitCache.key("Cached.pas", SOURCE + " "));
+        assertNotEquals(UnitCache.key("Cached.pas", SOURCE), UnitCache.key("Other.pas", SOURCE));
+        assertEquals(UnitCache.key("Cached.pas", SOURCE), UnitCache.key("Cached.pas", new StringBuilder(SOURCE)));
+
+        var unit = new UnitLoader.Unit("Cached");
+        assertFalse(cache.read(UnitCache.key("Cached.pas", SOURCE), unit));
+        assertTrue(unit.statements.isEmpty());
+    }
+}
@@ -0,0 +1,99 @@
+package com.craftinginterpreters.pascal;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests UnitLoader.
+ */
+public class UnitLoaderTest {
+    private final Context context = new Context();
+
+    // Writes a unit's file.
+    //
+    private static void write(Path directory, String name, String source) throws IOException {
+        Files.writeString(directory.resolve(name + ".pas"), source);
+    }
+
+    // Includes a unit in the test's context.
+    //
+    private List<Stmt> include(Path directory, String name) throws IOException {
+        context.units.directory(directory);
+        var previous = context.enter();
+        try {
+            return context.units.include(name);
+        }
+        finally {
+            Context.leave(previous);
+        }
+    }
+
+    // Gets the names of the variables statements declare, in order.
+    //
+    private static List<String> names(List<Stmt> statements) {
+        return statements.stream().map(stmt -> ((Stmt.Var) stmt).name.lexeme).toList();
+    }
+
+    // A unit used by two others should be included once, before both of them.
+    //
+    @Test
+    void testDiamond(@TempDir Path directory) throws IOException {
+        write(directory, "Shared", "var S := 1;");
+        write(directory, "Left", "uses Shared;\nvar L := 2;");
+        write(directory, "Right", "uses Shared;\nvar R := 3;");
+        write(directory, "Top", "var T1 := 0;\nuses Left;\nuses Right;\nvar T2 := 4;");
+
+        assertEquals(List.of("T1", "S", "L", "R", "T2"), names(include(directory, "Top")));
+        assertEquals(List.of(), include(directory, "Shared"));
+        assertFalse(context.hadError);
+    }
+
+    // Units that use each other should each be included once, rather than forever.
+    //
+    @Test
+    void testCycle(@TempDir Path directory) throws IOException {
+        write(directory, "First", "uses Second;\nvar F := 1;");
+        write(directory, "Second", "uses First;\nvar S := 2;");
+
+        assertEquals(List.of("S", "F"), names(include(directory, "First")));
+        assertFalse(context.hadError);
+    }
+
+    // A unit that can't be read should fail the program that includes it.
+    //
+    @Test
+    void testMissing(@TempDir Path directory) {
+        assertThrows(NoSuchFileException.class, () -> include(directory, "Missing"));
+    }
+
+    // A unit that can't be read should also fail the units that use it.
+    //
+    @Test
+    void testMissingUsed(@TempDir Path directory) throws IOException {
+        write(directory, "Uses", "uses Missing;\nvar U := 1;");
+
+        assertThrows(NoSuchFileException.class, () -> include(directory, "Uses"));
+    }
+
+    // Errors parsing a unit should be reported to the context that included it.
+    //
+    @Test
+    void testParseErrors(@TempDir Path directory) throws IOException {
+        write(directory, "Broken", "var B := 1;\nvar := 2;");
+
+        include(directory, "Broken");
+        assertTrue(context.hadError);
+        assertEquals("[line 2] Error at 'var': Expect variable name.", context.lastError);
+    }
+}
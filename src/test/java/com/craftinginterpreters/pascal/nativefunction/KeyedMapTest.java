@@ -0,0 +1,82 @@
+package com.craftinginterpreters.pascal.nativefunction;
+
+import com.craftinginterpreters.pascal.PascalEnum;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests KeyedMap.
+ */
+public class KeyedMapTest {
+    // Integer keys should survive the table growing, and keep the order they were added in.
+    //
+    @Test
+    void testIntKeys() {
+        var uut = new KeyedMap();
+        for (int i = 0; i < 100; i++) {
+            uut.put(i * 7 - 50, "V" + i);
+        }
+        uut.put(-50, null);
+
+        assertInstanceOf(KeyedMap.IntStore.class, KeyedMap.storeFor(1));
+        assertEquals(100, uut.size());
+        assertEquals("V99", uut.get(99 * 7 - 50));
+        assertNull(uut.get(-50));
+        assertTrue(uut.containsKey(-50));
+        assertFalse(uut.containsKey(1));
+        assertFalse(uut.containsKey("A"));
+        assertEquals(-43, uut.keySet().stream().skip(1).findFirst().get());
+    }
+
+    // String keys should be found by value.
+    //
+    @Test
+    void testStringKeys() {
+        var uut = new KeyedMap();
+        uut.put("Begin", 1);
+        uut.put("End", 2);
+        uut.put(new String("Begin"), 3);
+
+        assertEquals(3, uut.get("Begin"));
+        assertEquals(2, uut.size());
+        assertEquals("{Begin=3, End=2}", uut.toString());
+    }
+
+    // Enum keys should be found by ordinal, including values that aren't the same object.
+    //
+    @Test
+    void testEnumKeys() {
+        var uut = new KeyedMap();
+        uut.put(new PascalEnum("Color", "Blue", 2), "B");
+        uut.put(new PascalEnum("Color", "Red", 0), "R");
+
+        assertEquals("B", uut.get(new PascalEnum("Color", "Blue", 2)));
+        assertNull(uut.get(new PascalEnum("Shape", "Circle", 2)));
+        assertEquals("{Red=R, Blue=B}", uut.toString());
+    }
+
+    // A key of another kind should move the entries to an ordinary map.
+    //
+    @Test
+    void testFallBack() {
+        var entries = new HashMap<>();
+        entries.put(1, "A");
+        entries.put(2, "B");
+
+        var uut = new KeyedMap(entries);
+        uut.put("C", 3);
+        uut.put(new PascalEnum("Color", "Red", 0), 4);
+
+        assertEquals(4, uut.size());
+        assertEquals("B", uut.get(2));
+        assertEquals(3, uut.get("C"));
+        assertEquals(4, uut.get(new PascalEnum("Color", "Red", 0)));
+    }
+}
@@ -0,0 +1,48 @@
+package com.craftinginterpreters.pascal.nativefunction;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Tests NativeFunctionInvoker.
+ */
+public class NativeFunctionInvokerTest {
+    private NativeFunctionInvoker create(String name, Class<?>... types) throws NoSuchMethodException {
+        return new NativeFunctionInvoker(NativeFunctions.class.getMethod(name, types));
+    }
+
+    // Arguments should be unboxed into primitive parameters, and primitive results boxed.
+    //
+    @Test
+    void testCall() throws NoSuchMethodException {
+        var copy = create("Copy", String.class, int.class, int.class);
+        var length = create("Length", String.class);
+
+        assertEquals(3, copy.arity());
+        assertEquals("BC", copy.call(null, List.of("ABCD", 1, 3)));
+        assertEquals(4, length.call(null, List.of("ABCD")));
+    }
+
+    // A void method should return nil.
+    //
+    @Test
+    void testVoid() throws NoSuchMethodException {
+        var write = create("Write", Object.class);
+
+        assertNull(write.call(null, List.of("")));
+    }
+
+    // Exceptions thrown by the method should be passed on as they are.
+    //
+    @Test
+    void testException() throws NoSuchMethodException {
+        var copy = create("Copy", String.class, int.class, int.class);
+
+        assertThrows(StringIndexOutOfBoundsException.class, () -> copy.call(null, List.of("AB", 1, 5)));
+    }
+}
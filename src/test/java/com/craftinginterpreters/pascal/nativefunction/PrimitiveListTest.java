@@ -0,0 +1,83 @@
+package com.craftinginterpreters.pascal.nativefunction;
+
+import com.craftinginterpreters.pascal.Intrinsic;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Tests PrimitiveList.
+ */
+public class PrimitiveListTest {
+    // Values should come back as they went in, including nil.
+    //
+    @Test
+    void testAddGet() {
+        var uut = PrimitiveList.of("Integer");
+        for (int i = 0; i < 20; i++) {
+            uut.add(i);
+        }
+        uut.set(3, null);
+
+        assertEquals(20, uut.size());
+        assertEquals(19, uut.get(19));
+        assertNull(uut.get(3));
+
+        uut.set(3, 7);
+        assertEquals(7, uut.get(3));
+        assertEquals(19, uut.remove(19));
+        assertEquals(19, uut.size());
+    }
+
+    // Reading past the end should fail the way an ordinary list does.
+    //
+    @Test
+    void testOutOfBounds() {
+        var uut = PrimitiveList.of("Double");
+        uut.add(1.5);
+
+        var ex = assertThrows(IndexOutOfBoundsException.class, () -> uut.get(1));
+        assertEquals("Index 1 out of bounds for length 1", ex.getMessage());
+    }
+
+    // Only the primitive types should get a primitive list, and only if every element fits.
+    //
+    @Test
+    void testOf() {
+        assertInstanceOf(PrimitiveList.CharList.class, PrimitiveList.of("char"));
+        assertInstanceOf(PrimitiveList.BooleanList.class, PrimitiveList.of("Boolean", List.of(true, false)));
+        assertNull(PrimitiveList.of("String"));
+        assertNull(PrimitiveList.of("Integer", List.of(1, "A")));
+    }
+
+    // A specialized collection given a value of another type should move to an ordinary list and keep working.
+    //
+    @Test
+    void testFallBack() {
+        var uut = new PascalList();
+        uut.specialize("Integer");
+        uut.intrinsic(Intrinsic.ADD, List.of(1));
+        assertInstanceOf(PrimitiveList.IntList.class, uut.list);
+
+        uut.intrinsic(Intrinsic.ADD, List.of("AB"));
+        assertEquals("[1, AB]", uut.toString());
+
+        var stack = new PascalStack();
+        stack.specialize("Double");
+        stack.intrinsic(Intrinsic.PUSH, List.of(1.5));
+        stack.intrinsic(Intrinsic.PUSH, List.of(2.5));
+        assertEquals(2.5, stack.intrinsic(Intrinsic.POP, List.of()));
+        assertEquals(1.5, stack.intrinsic(Intrinsic.PEEK, List.of()));
+
+        var array = new PascalArray(2);
+        array.specialize("Integer");
+        assertNull(array.intrinsic(Intrinsic.GET, List.of(0)));
+        array.intrinsic(Intrinsic.SET, List.of(1, 5));
+        assertEquals("[null, 5]", array.toString());
+    }
+}